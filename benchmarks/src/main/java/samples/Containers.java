@@ -0,0 +1,53 @@
+package samples;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Larger sample program: values from bye and from InputStream.read flow through
+ * collections and into the standard library, which is what makes slices big.
+ */
+public class Containers {
+    public static String bye(String nm) {
+        return "bye " + nm;
+    }
+
+    static void print() {
+        System.out.println(bye("a"));
+    }
+
+    static void list() {
+        List<String> l = new ArrayList<>();
+        l.add(bye("b"));
+        System.out.println(l);
+    }
+
+    static void map() {
+        Map<String, String> m = new HashMap<>();
+        m.put("k", bye("c"));
+        System.out.println(m.get("k").length());
+    }
+
+    static void builder() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(bye("d"));
+        System.err.println(sb);
+    }
+
+    static void read(InputStream in) throws IOException {
+        Set<Integer> seen = new HashSet<>();
+        int c;
+        while ((c = in.read()) != -1) {
+            seen.add(c);
+        }
+        System.out.println(seen.size());
+    }
+
+    public static void main(String[] args) throws Exception {
+        print();
+        list();
+        map();
+        builder();
+        read(new BufferedInputStream(new ByteArrayInputStream(new byte[16])));
+    }
+}
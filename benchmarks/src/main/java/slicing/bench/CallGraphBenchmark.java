@@ -0,0 +1,49 @@
+package slicing.bench;
+
+import com.ibm.wala.ipa.callgraph.*;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import org.openjdk.jmh.annotations.*;
+import slicing.SimpleSlicer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Call graph and pointer analysis construction for each of the builders the
+ * drivers support. Every invocation starts from a fresh AnalysisCache, as a
+ * driver run would, so IR construction is part of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CallGraphBenchmark {
+
+    @Param({"example", "containers"})
+    public SampleJars.Sample sample;
+
+    @Param({"0cfa", "vanilla-1cfa", "container-1cfa"})
+    public String analysis;
+
+    private AnalysisScope scope;
+    private ClassHierarchy cha;
+    private AnalysisOptions options;
+
+    @Setup
+    public void setup() throws Exception {
+        String appJar = SampleJars.write(sample);
+        scope = AnalysisScopeReader.makeJavaBinaryAnalysisScope(appJar, SimpleSlicer.getExclusionsFile());
+        cha = ClassHierarchy.make(scope);
+        options = new AnalysisOptions(scope, Util.makeMainEntrypoints(scope, cha));
+    }
+
+    @Benchmark
+    public CallGraph makeCallGraph() throws Exception {
+        CallGraphBuilder builder =
+                SimpleSlicer.makeCallGraphBuilder(analysis, options, new AnalysisCache(), cha, scope);
+        return builder.makeCallGraph(options, null);
+    }
+}
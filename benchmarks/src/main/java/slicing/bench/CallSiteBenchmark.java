@@ -0,0 +1,59 @@
+package slicing.bench;
+
+import com.ibm.wala.ipa.slicer.Statement;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import slicing.CallIndex;
+import slicing.JarAnalysis;
+import slicing.SimpleSlicer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Seed discovery over a finished call graph: building the reverse call index and
+ * using it to find the return sites the three drivers slice from.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CallSiteBenchmark {
+
+    @Param({"example", "containers"})
+    public SampleJars.Sample sample;
+
+    @Param({"0cfa", "container-1cfa"})
+    public String analysis;
+
+    private JarAnalysis jar;
+
+    @Setup
+    public void setup() throws Exception {
+        String appJar = SampleJars.write(sample);
+        jar = JarAnalysis.build(appJar, analysis, SimpleSlicer.getExclusionsFile());
+    }
+
+    @Benchmark
+    public CallIndex buildIndex() {
+        return new CallIndex(jar.getCallGraph());
+    }
+
+    @Benchmark
+    public List<Statement> callerSeeds() {
+        return jar.findCallerSeeds(sample.getMain(), sample.getCallee());
+    }
+
+    @Benchmark
+    public List<Statement> calleeSeeds() {
+        return jar.findCalleeSeeds(sample.getCallee());
+    }
+
+    @Benchmark
+    public void sourceSeeds(Blackhole bh) throws IOException {
+        bh.consume(jar.findSourceSeeds());
+    }
+}
@@ -0,0 +1,38 @@
+package slicing.bench;
+
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import org.openjdk.jmh.annotations.*;
+import slicing.SimpleSlicer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ClassHierarchy.make over a prepared scope. Dominated by loading the primordial
+ * (JDK) classes, so the sample hardly matters here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClassHierarchyBenchmark {
+
+    @Param({"example", "containers"})
+    public SampleJars.Sample sample;
+
+    private AnalysisScope scope;
+
+    @Setup
+    public void setup() throws Exception {
+        String appJar = SampleJars.write(sample);
+        scope = AnalysisScopeReader.makeJavaBinaryAnalysisScope(appJar, SimpleSlicer.getExclusionsFile());
+    }
+
+    @Benchmark
+    public ClassHierarchy makeClassHierarchy() throws Exception {
+        return ClassHierarchy.make(scope);
+    }
+}
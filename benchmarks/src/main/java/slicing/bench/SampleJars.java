@@ -0,0 +1,65 @@
+package slicing.bench;
+
+import java.io.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * The sample programs the benchmarks analyze. They are compiled into this module
+ * and written out to a temporary jar on demand, so the benchmark jar is
+ * self-contained.
+ */
+public class SampleJars {
+
+    /**
+     * Samples by name, each with the callee used for slicing
+     */
+    public enum Sample {
+        example("samples.Example"),
+        containers("samples.Containers");
+
+        private final String className;
+
+        Sample(String className) {
+            this.className = className;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getCallee() {
+            return className + ".bye(Ljava/lang/String;)Ljava/lang/String;";
+        }
+
+        public String getMain() {
+            return className + ".main([Ljava/lang/String;)V";
+        }
+    }
+
+    /**
+     * Write a sample's class file into a fresh jar
+     * @param sample
+     * @return path to the jar
+     * @throws IOException
+     */
+    public static String write(Sample sample) throws IOException {
+        File jar = File.createTempFile(sample.name(), ".jar");
+        jar.deleteOnExit();
+        String entry = sample.getClassName().replace('.', '/') + ".class";
+        try (InputStream in = SampleJars.class.getClassLoader().getResourceAsStream(entry);
+             JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            if (in == null) {
+                throw new FileNotFoundException(entry);
+            }
+            out.putNextEntry(new JarEntry(entry));
+            byte[] data = new byte[4096];
+            int read;
+            while ((read = in.read(data)) != -1) {
+                out.write(data, 0, read);
+            }
+            out.closeEntry();
+        }
+        return jar.getAbsolutePath();
+    }
+}
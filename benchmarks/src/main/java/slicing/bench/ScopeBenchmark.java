@@ -0,0 +1,38 @@
+package slicing.bench;
+
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import org.openjdk.jmh.annotations.*;
+import slicing.SimpleSlicer;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analysis scope creation: reading primordial.txt, the exclusions and the target jar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScopeBenchmark {
+
+    @Param({"example", "containers"})
+    public SampleJars.Sample sample;
+
+    private String appJar;
+    private File exclusions;
+
+    @Setup
+    public void setup() throws Exception {
+        appJar = SampleJars.write(sample);
+        exclusions = SimpleSlicer.getExclusionsFile();
+    }
+
+    @Benchmark
+    public AnalysisScope makeScope() throws Exception {
+        return AnalysisScopeReader.makeJavaBinaryAnalysisScope(appJar, exclusions);
+    }
+}
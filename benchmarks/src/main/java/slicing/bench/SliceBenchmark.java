@@ -0,0 +1,62 @@
+package slicing.bench;
+
+import com.ibm.wala.ipa.slicer.SDG;
+import com.ibm.wala.ipa.slicer.Slicer;
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import slicing.JarAnalysis;
+import slicing.MultiSeedSlicer;
+import slicing.SimpleSlicer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forward slicing from the return sites of every call to the sample's callee.
+ * Each invocation builds a new SDG, as the drivers do, so the lazily built PDGs
+ * are part of the cost. perSeed matches the drivers' default mode, multiSeed
+ * the shared-SDG mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SliceBenchmark {
+
+    @Param({"example", "containers"})
+    public SampleJars.Sample sample;
+
+    @Param({"0cfa", "container-1cfa"})
+    public String analysis;
+
+    private JarAnalysis jar;
+    private List<Statement> seeds;
+
+    @Setup
+    public void setup() throws Exception {
+        String appJar = SampleJars.write(sample);
+        jar = JarAnalysis.build(appJar, analysis, SimpleSlicer.getExclusionsFile());
+        seeds = jar.findCalleeSeeds(sample.getCallee());
+    }
+
+    @Benchmark
+    public void perSeed(Blackhole bh) throws Exception {
+        for (Statement seed : seeds) {
+            SDG sdg = new SDG(jar.getCallGraph(), jar.getPointerAnalysis(),
+                    DataDependenceOptions.FULL, ControlDependenceOptions.FULL);
+            bh.consume(Slicer.computeForwardSlice(sdg, seed));
+        }
+    }
+
+    @Benchmark
+    public void multiSeed(Blackhole bh) throws Exception {
+        MultiSeedSlicer slicer = new MultiSeedSlicer(jar.getCallGraph(), jar.getPointerAnalysis(),
+                DataDependenceOptions.FULL, ControlDependenceOptions.FULL);
+        bh.consume(slicer.computeForwardSlice(seeds));
+    }
+}
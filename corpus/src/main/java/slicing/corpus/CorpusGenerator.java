@@ -0,0 +1,348 @@
+package slicing.corpus;
+
+import slicing.DriverOptions;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Writes synthetic application jars whose size and shape can be tuned, so the
+ * analyses can be measured on more than the README's Example.
+ *
+ * The program in package gen is a stack of layers below Main. The implementation
+ * classes are spread evenly over the layers. In every layer, groups of classes
+ * implement a common interface, and a factory method picks one of them with a
+ * switch on a value the analysis cannot know. Each call through it is a virtual
+ * call with that many targets. A class's run method passes its string through
+ * container round trips, and maybe an InputStream.read source. It then calls run
+ * on a number of groups in the next layer. Classes in the last layer return
+ * Sink.bye(v), so every leaf is a return site for the callee drivers and every
+ * source feeds one.
+ *
+ * Interfaces, factories, Main and Sink are extra classes on top of the count.
+ * The same parameters always give the same program.
+ */
+public class CorpusGenerator {
+
+    public static final String PACKAGE = "gen";
+    public static final String MAIN = PACKAGE + ".Main.main([Ljava/lang/String;)V";
+    public static final String CALLEE = PACKAGE + ".Sink.bye(Ljava/lang/String;)Ljava/lang/String;";
+
+    private int classes = 100;
+    private int depth = 5;
+    private int fanOut = 2;
+    private int dispatchWidth = 3;
+    private int containers = 1;
+    private int sources = 4;
+
+    /**
+     * Generator configured by the --classes, --depth, --fan-out, --dispatch-width,
+     * --containers and --sources flags, with defaults for the rest
+     * @param driverOptions
+     * @return
+     */
+    public static CorpusGenerator fromOptions(DriverOptions driverOptions) {
+        CorpusGenerator generator = new CorpusGenerator();
+        generator.setClasses(driverOptions.getInt("classes", generator.classes));
+        generator.setDepth(driverOptions.getInt("depth", generator.depth));
+        generator.setFanOut(driverOptions.getInt("fan-out", generator.fanOut));
+        generator.setDispatchWidth(driverOptions.getInt("dispatch-width", generator.dispatchWidth));
+        generator.setContainers(driverOptions.getInt("containers", generator.containers));
+        generator.setSources(driverOptions.getInt("sources", generator.sources));
+        return generator;
+    }
+
+    // implementation classes, at least one per layer
+    public void setClasses(int classes) {
+        this.classes = atLeast("classes", classes, 1);
+    }
+
+    // layers below Main, the longest call chain from main to Sink.bye
+    public void setDepth(int depth) {
+        this.depth = atLeast("depth", depth, 1);
+    }
+
+    // calls from every class into the next layer
+    public void setFanOut(int fanOut) {
+        this.fanOut = atLeast("fan-out", fanOut, 1);
+    }
+
+    // implementations behind one interface, so targets of one virtual call
+    public void setDispatchWidth(int dispatchWidth) {
+        this.dispatchWidth = atLeast("dispatch-width", dispatchWidth, 1);
+    }
+
+    // ArrayList, HashMap and HashSet round trips per run method, in turn
+    public void setContainers(int containers) {
+        this.containers = atLeast("containers", containers, 0);
+    }
+
+    // classes whose run method calls InputStream.read, at most all of them
+    public void setSources(int sources) {
+        this.sources = atLeast("sources", sources, 0);
+    }
+
+    public int getClasses() {
+        return classes;
+    }
+
+    public int getDepth() {
+        return Math.min(depth, classes);
+    }
+
+    /**
+     * Parameters in flag form, e.g. for file names and reports
+     * @return
+     */
+    public String describe() {
+        return "--classes=" + classes + " --depth=" + depth + " --fan-out=" + fanOut
+                + " --dispatch-width=" + dispatchWidth + " --containers=" + containers + " --sources=" + sources;
+    }
+
+    /**
+     * Java sources of the program
+     * @return source text by class name, without the package
+     */
+    public Map<String, String> generateSources() {
+        Map<String, String> files = new TreeMap<>();
+        int layers = getDepth();
+        for (int layer = 0; layer < layers; layer++) {
+            int first = firstClass(layer);
+            int size = firstClass(layer + 1) - first;
+            int groups = groups(layer);
+            StringBuilder factory = header("");
+            factory.append("public class Factory").append(layer).append(" {\n");
+            for (int g = 0; g < groups; g++) {
+                String type = "L" + layer + "G" + g;
+                files.put(type, header("").append("public interface ").append(type)
+                        .append(" {\n    String run(String s) throws IOException;\n}\n").toString());
+
+                int lo = g * dispatchWidth;
+                int hi = Math.min(size, lo + dispatchWidth);
+                factory.append("    public static ").append(type).append(" g").append(g).append("(int i) {\n");
+                if (hi - lo == 1) {
+                    factory.append("        return new C").append(first + lo).append("();\n");
+                } else {
+                    factory.append("        switch (Math.abs(i % ").append(hi - lo).append(")) {\n");
+                    for (int k = lo; k < hi; k++) {
+                        factory.append(k < hi - 1 ? "            case " + (k - lo) + ":" : "            default:")
+                                .append(" return new C").append(first + k).append("();\n");
+                    }
+                    factory.append("        }\n");
+                }
+                factory.append("    }\n");
+                for (int k = lo; k < hi; k++) {
+                    files.put("C" + (first + k), implementation(layer, first + k, k, type));
+                }
+            }
+            factory.append("}\n");
+            files.put("Factory" + layer, factory.toString());
+        }
+
+        StringBuilder main = header("");
+        main.append("public class Main {\n")
+                .append("    public static void main(String[] args) throws IOException {\n")
+                .append("        String v = args.length > 0 ? args[0] : \"seed\";\n");
+        for (int g = 0; g < groups(0); g++) {
+            main.append("        v = Factory0.g").append(g).append("(v.length() + ").append(g).append(").run(v);\n");
+        }
+        main.append("        System.out.println(Sink.bye(v));\n    }\n}\n");
+        files.put("Main", main.toString());
+        files.put("Sink", header("").append("public class Sink {\n")
+                .append("    public static String bye(String s) {\n        return \"bye \" + s;\n    }\n}\n").toString());
+        return files;
+    }
+
+    /**
+     * Compile the program and write its classes into a jar
+     * @param jar
+     * @return number of classes in the jar
+     * @throws IOException
+     */
+    public int write(File jar) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("no system Java compiler, run the generator on a JDK rather than a JRE");
+        }
+        File work = Files.createTempDirectory("corpus").toFile();
+        try {
+            File src = new File(work, "src/" + PACKAGE);
+            File out = new File(work, "classes");
+            if (!src.mkdirs() || !out.mkdirs()) {
+                throw new IOException("cannot create " + work);
+            }
+            List<File> files = new ArrayList<>();
+            for (Map.Entry<String, String> e : generateSources().entrySet()) {
+                File file = new File(src, e.getKey() + ".java");
+                try (Writer w = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                    w.write(e.getValue());
+                }
+                files.add(file);
+            }
+            // the slicer's class file reader stops at Java 8, so pin the bytecode version
+            try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+                boolean ok = compiler.getTask(null, fileManager, null,
+                        Arrays.asList("-d", out.getPath(), "-source", "1.8", "-target", "1.8", "-nowarn", "-Xlint:-options"),
+                        null, fileManager.getJavaFileObjectsFromFiles(files)).call();
+                if (!ok) {
+                    throw new IOException("generated program did not compile");
+                }
+            }
+
+            File dir = jar.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("cannot create " + dir);
+            }
+            int count = 0;
+            File[] compiled = new File(out, PACKAGE).listFiles();
+            Arrays.sort(compiled);
+            try (JarOutputStream jarOut = new JarOutputStream(new FileOutputStream(jar))) {
+                for (File c : compiled) {
+                    jarOut.putNextEntry(new JarEntry(PACKAGE + "/" + c.getName()));
+                    jarOut.write(Files.readAllBytes(c.toPath()));
+                    jarOut.closeEntry();
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            delete(work);
+        }
+    }
+
+    // one implementation class; k is its index within the layer
+    private String implementation(int layer, int index, int k, String type) {
+        StringBuilder c = header("import java.util.*;\n");
+        c.append("public class C").append(index).append(" implements ").append(type).append(" {\n")
+                .append("    public String run(String s) throws IOException {\n")
+                .append("        String v = s;\n");
+        for (int i = 0; i < containers; i++) {
+            switch (i % 3) {
+                case 0:
+                    c.append("        List<String> list").append(i).append(" = new ArrayList<String>();\n")
+                            .append("        list").append(i).append(".add(v);\n")
+                            .append("        v = list").append(i).append(".get(0);\n");
+                    break;
+                case 1:
+                    c.append("        Map<String, String> map").append(i).append(" = new HashMap<String, String>();\n")
+                            .append("        map").append(i).append(".put(\"k\", v);\n")
+                            .append("        v = map").append(i).append(".get(\"k\");\n");
+                    break;
+                default:
+                    c.append("        Set<String> set").append(i).append(" = new HashSet<String>();\n")
+                            .append("        set").append(i).append(".add(v);\n")
+                            .append("        v = set").append(i).append(".iterator().next();\n");
+                    break;
+            }
+        }
+        if (isSource(index)) {
+            c.append("        InputStream in = new ByteArrayInputStream(v.getBytes());\n")
+                    .append("        v = v + in.read();\n");
+        }
+        if (layer == getDepth() - 1) {
+            c.append("        return Sink.bye(v);\n");
+        } else {
+            // round robin over the next layer's groups, so every group is reached
+            int next = groups(layer + 1);
+            for (int j = 0; j < fanOut; j++) {
+                int g = (k * fanOut + j) % next;
+                c.append("        v = Factory").append(layer + 1).append(".g").append(g)
+                        .append("(v.length() + ").append(j).append(").run(v);\n");
+            }
+            c.append("        return v;\n");
+        }
+        c.append("    }\n}\n");
+        return c.toString();
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static StringBuilder header(String imports) {
+        return new StringBuilder("package " + PACKAGE + ";\n\nimport java.io.*;\n" + imports + "\n");
+    }
+
+    // first implementation class of a layer, or the class count past the last one
+    private int firstClass(int layer) {
+        return (int) ((long) layer * classes / getDepth());
+    }
+
+    private int groups(int layer) {
+        int size = firstClass(layer + 1) - firstClass(layer);
+        return (size + dispatchWidth - 1) / dispatchWidth;
+    }
+
+    // sources spread evenly over the classes
+    private boolean isSource(int index) {
+        int n = Math.min(sources, classes);
+        return (long) index * n / classes != (long) (index + 1) * n / classes;
+    }
+
+    private static int atLeast(String name, int value, int min) {
+        if (value < min) {
+            throw new IllegalArgumentException("--" + name + " must be at least " + min + ", got " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Help message
+     */
+    public static void help() {
+        System.out.println(
+                "Usage:java -cp corpus.jar slicing.corpus.CorpusGenerator <output-jar> [--classes=N] [--depth=N]\n" +
+                "    [--fan-out=N] [--dispatch-width=N] [--containers=N] [--sources=N] [--print]\n" +
+                "Optional flags:\n" +
+                "  --classes=N  implementation classes, spread evenly over the layers (default: 100)\n" +
+                "  --depth=N  layers below Main, the call depth from main to Sink.bye (default: 5)\n" +
+                "  --fan-out=N  calls from every class into the next layer (default: 2)\n" +
+                "  --dispatch-width=N  implementations behind each interface, the targets of one call (default: 3)\n" +
+                "  --containers=N  ArrayList, HashMap and HashSet round trips in every method (default: 1)\n" +
+                "  --sources=N  classes that call InputStream.read (default: 4)\n" +
+                "  --print  print the generated sources instead of writing a jar\n" +
+                "Slice with callee " + CALLEE + " from " + MAIN + ",\n" +
+                "or from the InputStream.read sources with SliceFromSources."
+        );
+    }
+
+    /**
+     * Write one synthetic jar
+     * @param args
+     */
+    public static void main(String[] args) {
+        DriverOptions driverOptions = DriverOptions.parse(args);
+        if (driverOptions.getPositional().size() != 1 || driverOptions.has("help")) {
+            help();
+            System.exit(1);
+        }
+        CorpusGenerator generator = fromOptions(driverOptions);
+        try {
+            if (driverOptions.has("print")) {
+                for (Map.Entry<String, String> e : generator.generateSources().entrySet()) {
+                    System.out.println("// " + e.getKey() + ".java");
+                    System.out.println(e.getValue());
+                }
+                return;
+            }
+            File jar = new File(driverOptions.getPositional().get(0));
+            int count = generator.write(jar);
+            System.out.println("Wrote " + count + " classes to " + jar + " (" + generator.describe() + ")");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package slicing.corpus;
+
+import slicing.DriverOptions;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Draws ScalingSweep results as SVG line charts, one for time and one for
+ * memory, so the curves can be looked at offline in any browser.
+ *
+ * Both axes are logarithmic, so a straight line of slope k means the cost grows
+ * with the k-th power of the class count. Each line is one driver with one
+ * analysis: the color is the analysis and the dash pattern is the driver. Only
+ * runs that finished within their budget are drawn. A line stops where its
+ * runs timed out.
+ */
+public class ScalingPlot {
+
+    private static final int WIDTH = 820;
+    private static final int HEIGHT = 480;
+    private static final int LEFT = 70;
+    private static final int RIGHT = 300;
+    private static final int TOP = 40;
+    private static final int BOTTOM = 50;
+    private static final Map<String, String> COLORS = new HashMap<>();
+    private static final Map<String, String> DASHES = new HashMap<>();
+
+    static {
+        COLORS.put("0cfa", "#1f77b4");
+        COLORS.put("vanilla-1cfa", "#d62728");
+        COLORS.put("container-1cfa", "#2ca02c");
+        DASHES.put("SimpleSlicer", "");
+        DASHES.put("SimpleSlicerUsingCallee", "8,4");
+        DASHES.put("SliceFromSources", "2,4");
+    }
+
+    /**
+     * One column of sweep.csv against the class count, for each driver and analysis
+     * @param rows rows of sweep.csv, the header first
+     * @param column
+     * @return series by "driver analysis", points sorted by class count
+     */
+    public static Map<String, TreeMap<Integer, Double>> series(List<String> rows, String column) {
+        List<String> header = Arrays.asList(rows.get(0).split(","));
+        int index = header.indexOf(column);
+        if (index < 0) {
+            throw new IllegalArgumentException("no column " + column + " in " + header);
+        }
+        Map<String, TreeMap<Integer, Double>> series = new TreeMap<>();
+        for (String row : rows.subList(1, rows.size())) {
+            String[] cells = row.split(",", -1);
+            if (cells.length != header.size() || !cells[3].equals("ok") || cells[index].isEmpty()) {
+                continue;
+            }
+            double value = Double.parseDouble(cells[index]);
+            if (value <= 0) {
+                // nothing to draw on a log scale
+                continue;
+            }
+            String key = cells[1] + " " + cells[2];
+            if (!series.containsKey(key)) {
+                series.put(key, new TreeMap<Integer, Double>());
+            }
+            series.get(key).put(Integer.parseInt(cells[0]), value);
+        }
+        return series;
+    }
+
+    /**
+     * Log-log line chart of some series
+     * @param title
+     * @param yLabel
+     * @param series
+     * @return SVG document
+     */
+    public static String chart(String title, String yLabel, Map<String, TreeMap<Integer, Double>> series) {
+        double minX = Double.MAX_VALUE, maxX = 0, minY = Double.MAX_VALUE, maxY = 0;
+        SortedSet<Integer> sizes = new TreeSet<>();
+        for (TreeMap<Integer, Double> points : series.values()) {
+            for (Map.Entry<Integer, Double> p : points.entrySet()) {
+                sizes.add(p.getKey());
+                minX = Math.min(minX, p.getKey());
+                maxX = Math.max(maxX, p.getKey());
+                minY = Math.min(minY, p.getValue());
+                maxY = Math.max(maxY, p.getValue());
+            }
+        }
+        StringBuilder svg = new StringBuilder();
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(WIDTH).append("\" height=\"")
+                .append(HEIGHT).append("\" font-family=\"sans-serif\" font-size=\"12\">\n")
+                .append("<rect width=\"100%\" height=\"100%\" fill=\"white\"/>\n")
+                .append(text(LEFT, TOP / 2 + 6, "start", 15, title));
+        if (series.isEmpty()) {
+            return svg.append(text(LEFT, TOP + 40, "start", 12, "no finished runs"))
+                    .append("</svg>\n").toString();
+        }
+        // decade bounds on y, and some room on x when there is only one size
+        minY = Math.pow(10, Math.floor(Math.log10(minY)));
+        maxY = Math.pow(10, Math.ceil(Math.log10(maxY)));
+        if (minY == maxY) {
+            maxY *= 10;
+        }
+        if (minX == maxX) {
+            minX /= 2;
+            maxX *= 2;
+        }
+        Axis x = new Axis(minX, maxX, LEFT, WIDTH - RIGHT);
+        Axis y = new Axis(minY, maxY, HEIGHT - BOTTOM, TOP);
+
+        svg.append("<g stroke=\"#dddddd\">\n");
+        for (int size : sizes) {
+            svg.append(line(x.at(size), TOP, x.at(size), HEIGHT - BOTTOM));
+        }
+        List<Double> yTicks = new ArrayList<>();
+        for (double decade = minY; decade < maxY * 1.001; decade *= 10) {
+            for (int m : new int[]{1, 2, 5}) {
+                if (decade * m <= maxY * 1.001) {
+                    yTicks.add(decade * m);
+                }
+            }
+        }
+        for (double tick : yTicks) {
+            svg.append(line(LEFT, y.at(tick), WIDTH - RIGHT, y.at(tick)));
+        }
+        svg.append("</g>\n<g stroke=\"black\">\n")
+                .append(line(LEFT, HEIGHT - BOTTOM, WIDTH - RIGHT, HEIGHT - BOTTOM))
+                .append(line(LEFT, TOP, LEFT, HEIGHT - BOTTOM))
+                .append("</g>\n");
+        for (int size : sizes) {
+            svg.append(text(x.at(size), HEIGHT - BOTTOM + 16, "middle", 11, String.valueOf(size)));
+        }
+        for (double tick : yTicks) {
+            svg.append(text(LEFT - 6, y.at(tick) + 4, "end", 11, format(tick)));
+        }
+        svg.append(text((LEFT + WIDTH - RIGHT) / 2, HEIGHT - 12, "middle", 12, "application classes"))
+                .append("<text x=\"16\" y=\"").append((TOP + HEIGHT - BOTTOM) / 2)
+                .append("\" text-anchor=\"middle\" transform=\"rotate(-90 16 ").append((TOP + HEIGHT - BOTTOM) / 2)
+                .append(")\">").append(yLabel).append("</text>\n");
+
+        int legend = 0;
+        for (Map.Entry<String, TreeMap<Integer, Double>> e : series.entrySet()) {
+            String[] key = e.getKey().split(" ");
+            String style = "stroke=\"" + color(key[1]) + "\" stroke-width=\"2\" fill=\"none\""
+                    + (dash(key[0]).isEmpty() ? "" : " stroke-dasharray=\"" + dash(key[0]) + "\"");
+            StringBuilder points = new StringBuilder();
+            for (Map.Entry<Integer, Double> p : e.getValue().entrySet()) {
+                points.append(x.at(p.getKey())).append(",").append(y.at(p.getValue())).append(" ");
+                svg.append("<circle cx=\"").append(x.at(p.getKey())).append("\" cy=\"").append(y.at(p.getValue()))
+                        .append("\" r=\"3\" fill=\"").append(color(key[1])).append("\"/>\n");
+            }
+            svg.append("<polyline ").append(style).append(" points=\"").append(points.toString().trim()).append("\"/>\n");
+
+            int ly = TOP + 10 + legend * 20;
+            svg.append("<line x1=\"").append(WIDTH - RIGHT + 16).append("\" y1=\"").append(ly)
+                    .append("\" x2=\"").append(WIDTH - RIGHT + 46).append("\" y2=\"").append(ly).append("\" ")
+                    .append(style).append("/>\n")
+                    .append(text(WIDTH - RIGHT + 52, ly + 4, "start", 11, key[0] + " " + key[1]));
+            legend++;
+        }
+        return svg.append("</svg>\n").toString();
+    }
+
+    // logarithmic mapping from values to pixels
+    private static class Axis {
+        private final double min;
+        private final double max;
+        private final int from;
+        private final int to;
+
+        Axis(double min, double max, int from, int to) {
+            this.min = Math.log(min);
+            this.max = Math.log(max);
+            this.from = from;
+            this.to = to;
+        }
+
+        int at(double value) {
+            return (int) Math.round(from + (to - from) * (Math.log(value) - min) / (max - min));
+        }
+    }
+
+    private static String color(String analysis) {
+        return COLORS.containsKey(analysis) ? COLORS.get(analysis) : "black";
+    }
+
+    private static String dash(String driver) {
+        return DASHES.containsKey(driver) ? DASHES.get(driver) : "";
+    }
+
+    private static String line(int x1, int y1, int x2, int y2) {
+        return "<line x1=\"" + x1 + "\" y1=\"" + y1 + "\" x2=\"" + x2 + "\" y2=\"" + y2 + "\"/>\n";
+    }
+
+    private static String text(int x, int y, String anchor, int size, String s) {
+        return "<text x=\"" + x + "\" y=\"" + y + "\" text-anchor=\"" + anchor + "\" font-size=\"" + size + "\">"
+                + s + "</text>\n";
+    }
+
+    private static String format(double value) {
+        return value >= 1 ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    /**
+     * Help message
+     */
+    public static void help() {
+        System.out.println(
+                "Usage:java -cp corpus.jar slicing.corpus.ScalingPlot <sweep.csv> [--out=DIR]\n" +
+                "Optional flags:\n" +
+                "  --out=DIR  where time.svg and memory.svg go (default: the directory of sweep.csv)\n"
+        );
+    }
+
+    /**
+     * Write the time and memory charts of a sweep
+     * @param args
+     */
+    public static void main(String[] args) {
+        DriverOptions driverOptions = DriverOptions.parse(args);
+        if (driverOptions.getPositional().size() != 1 || driverOptions.has("help")) {
+            help();
+            System.exit(1);
+        }
+        File csv = new File(driverOptions.getPositional().get(0));
+        File dir = driverOptions.has("out")
+                ? new File(driverOptions.getString("out", null)) : csv.getAbsoluteFile().getParentFile();
+        try {
+            List<String> rows = Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8);
+            File time = new File(dir, "time.svg");
+            File memory = new File(dir, "memory.svg");
+            Files.write(time.toPath(), chart("Slicing time", "total ms",
+                    series(rows, "total_ms")).getBytes(StandardCharsets.UTF_8));
+            Files.write(memory.toPath(), chart("Peak heap", "MB",
+                    series(rows, "peak_heap_mb")).getBytes(StandardCharsets.UTF_8));
+            System.out.println("Wrote " + time + " and " + memory);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
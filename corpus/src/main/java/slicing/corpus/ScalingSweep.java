@@ -0,0 +1,210 @@
+package slicing.corpus;
+
+import slicing.DriverOptions;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the three drivers with each analysis over synthetic jars of growing size
+ * and collects their run reports into one CSV file for ScalingPlot.
+ *
+ * Every run is a fresh JVM on this JVM's class path with --report, so one run's
+ * heap and JIT state cannot leak into the next. Time is the report's total over
+ * all phases, and memory is the largest peak heap of any phase. A run that goes
+ * past the timeout is killed. Larger jars are then skipped for that driver and
+ * analysis, since they would only time out as well.
+ */
+public class ScalingSweep {
+
+    private static final List<String> ANALYSES = Arrays.asList("0cfa", "vanilla-1cfa", "container-1cfa");
+    private static final List<String> DRIVERS = Arrays.asList("SimpleSlicer", "SimpleSlicerUsingCallee", "SliceFromSources");
+    public static final String HEADER = "classes,driver,analysis,status,total_ms,peak_heap_mb,cg_nodes,sdg_statements,slice_statements";
+
+    private final File dir;
+    private final CorpusGenerator generator;
+    private final String heap;
+    private final long timeoutMs;
+
+    /**
+     * @param dir where jars, reports, logs and sweep.csv go
+     * @param generator shape of the jars, the class count is set for each size
+     * @param heap -Xmx of every run
+     * @param timeoutMs
+     */
+    public ScalingSweep(File dir, CorpusGenerator generator, String heap, long timeoutMs) {
+        this.dir = dir;
+        this.generator = generator;
+        this.heap = heap;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Run every driver and analysis on every size, appending a row to sweep.csv after each run
+     * @param sizes class counts, in increasing order
+     * @param drivers
+     * @param analyses
+     * @return the CSV file
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public File run(List<Integer> sizes, List<String> drivers, List<String> analyses)
+            throws IOException, InterruptedException {
+        for (String sub : Arrays.asList("jars", "reports", "logs")) {
+            File d = new File(dir, sub);
+            if (!d.isDirectory() && !d.mkdirs()) {
+                throw new IOException("cannot create " + d);
+            }
+        }
+        File csv = new File(dir, "sweep.csv");
+        Set<String> timedOut = new HashSet<>();
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(csv), StandardCharsets.UTF_8))) {
+            out.println(HEADER);
+            for (int size : sizes) {
+                generator.setClasses(size);
+                File jar = new File(dir, "jars/corpus-" + size + ".jar");
+                int count = generator.write(jar);
+                System.out.println("Generated " + jar + " with " + count + " classes (" + generator.describe() + ")");
+                for (String driver : drivers) {
+                    for (String analysis : analyses) {
+                        String key = driver + " " + analysis;
+                        String row = timedOut.contains(key)
+                                ? size + "," + driver + "," + analysis + ",skipped,,,,,"
+                                : measure(jar, size, driver, analysis);
+                        if (row.contains(",timeout,")) {
+                            timedOut.add(key);
+                        }
+                        System.out.println("  " + row);
+                        out.println(row);
+                        out.flush();
+                    }
+                }
+            }
+        }
+        return csv;
+    }
+
+    // one driver run in its own JVM, as a CSV row
+    private String measure(File jar, int size, String driver, String analysis)
+            throws IOException, InterruptedException {
+        String name = size + "-" + driver + "-" + analysis;
+        File report = new File(dir, "reports/" + name + ".json");
+        File log = new File(dir, "logs/" + name + ".log");
+        report.delete();
+
+        List<String> command = new ArrayList<>(Arrays.asList(
+                new File(System.getProperty("java.home"), "bin/java").getPath(), "-Xmx" + heap,
+                "-cp", System.getProperty("java.class.path"), "slicing." + driver, jar.getPath()));
+        if (driver.equals("SimpleSlicer")) {
+            command.add(CorpusGenerator.MAIN);
+        }
+        if (!driver.equals("SliceFromSources")) {
+            command.add(CorpusGenerator.CALLEE);
+        }
+        command.add(analysis);
+        command.add("--report=" + report.getPath());
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        String status = null;
+        while (status == null) {
+            try {
+                process.exitValue();
+                status = report.isFile() ? "ok" : "failed";
+            } catch (IllegalThreadStateException running) {
+                if (System.currentTimeMillis() > deadline) {
+                    process.destroy();
+                    process.waitFor();
+                    status = "timeout";
+                } else {
+                    Thread.sleep(100);
+                }
+            }
+        }
+        String prefix = size + "," + driver + "," + analysis + ",";
+        if (!status.equals("ok")) {
+            return prefix + status + ",,,,,";
+        }
+
+        String json = new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8);
+        long peak = 0;
+        Matcher m = Pattern.compile("\"peak_heap_bytes\": (\\d+)").matcher(json);
+        while (m.find()) {
+            peak = Math.max(peak, Long.parseLong(m.group(1)));
+        }
+        return prefix + (json.contains("\"truncated\": true") ? "truncated" : "ok")
+                + "," + number(json, "total_ms") + "," + (peak >> 20) + "," + number(json, "cg_nodes")
+                + "," + number(json, "sdg_statements") + "," + number(json, "slice_statements");
+    }
+
+    // a top-level or count field of the report, empty if it is missing
+    private static String number(String json, String field) {
+        Matcher m = Pattern.compile("\"" + field + "\": (\\d+)").matcher(json);
+        return m.find() ? m.group(1) : "";
+    }
+
+    /**
+     * Help message
+     */
+    public static void help() {
+        System.out.println(
+                "Usage:java -cp corpus.jar slicing.corpus.ScalingSweep [--out=DIR] [--sizes=N,N,...]\n" +
+                "    [--drivers=D,D] [--analyses=A,B] [--heap=SIZE] [--timeout=SECONDS] [generator flags]\n" +
+                "Optional flags:\n" +
+                "  --out=DIR  jars, reports, logs and sweep.csv (default: sweep)\n" +
+                "  --sizes=N,N,...  class counts of the generated jars (default: 25,50,100,200,400,800)\n" +
+                "  --drivers=D,D  any of SimpleSlicer, SimpleSlicerUsingCallee, SliceFromSources (default: all three)\n" +
+                "  --analyses=A,B  any of 0cfa, vanilla-1cfa, container-1cfa (default: all three)\n" +
+                "  --heap=SIZE  -Xmx of every run (default: 4g)\n" +
+                "  --timeout=SECONDS  kill a run after this long and skip larger jars for it (default: 600)\n" +
+                "  --depth, --fan-out, --dispatch-width, --containers, --sources  shape of the jars,\n" +
+                "      see CorpusGenerator\n" +
+                "Plot the results with slicing.corpus.ScalingPlot DIR/sweep.csv."
+        );
+    }
+
+    /**
+     * Run the sweep
+     * @param args
+     */
+    public static void main(String[] args) {
+        DriverOptions driverOptions = DriverOptions.parse(args);
+        if (!driverOptions.getPositional().isEmpty() || driverOptions.has("help")) {
+            help();
+            System.exit(1);
+        }
+        List<Integer> sizes = new ArrayList<>();
+        for (String size : driverOptions.getString("sizes", "25,50,100,200,400,800").split(",")) {
+            sizes.add(Integer.parseInt(size.trim()));
+        }
+        Collections.sort(sizes);
+        List<String> drivers = driverOptions.has("drivers")
+                ? Arrays.asList(driverOptions.getString("drivers", null).split(",")) : DRIVERS;
+        for (String driver : drivers) {
+            if (!DRIVERS.contains(driver)) {
+                throw new IllegalArgumentException("Unknown driver " + driver);
+            }
+        }
+        List<String> analyses = driverOptions.has("analyses")
+                ? Arrays.asList(driverOptions.getString("analyses", null).split(",")) : ANALYSES;
+        for (String analysis : analyses) {
+            if (!ANALYSES.contains(analysis)) {
+                throw new IllegalArgumentException("Unknown analysis " + analysis);
+            }
+        }
+
+        ScalingSweep sweep = new ScalingSweep(new File(driverOptions.getString("out", "sweep")),
+                CorpusGenerator.fromOptions(driverOptions), driverOptions.getString("heap", "4g"),
+                driverOptions.getInt("timeout", 600) * 1000L);
+        try {
+            File csv = sweep.run(sizes, drivers, analyses);
+            System.out.println("Results in " + csv);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package slicing;
+
+import com.ibm.wala.classLoader.CallSiteReference;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.*;
+import com.ibm.wala.ipa.callgraph.impl.DefaultContextSelector;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.callgraph.propagation.SSAPropagationCallGraphBuilder;
+import com.ibm.wala.ipa.callgraph.propagation.cfa.ZeroXCFABuilder;
+import com.ibm.wala.ipa.callgraph.propagation.cfa.ZeroXInstanceKeys;
+import com.ibm.wala.ipa.callgraph.propagation.cfa.nCFAContextSelector;
+import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.intset.IntSet;
+
+import java.util.*;
+
+/**
+ * Adaptive analysis (adaptive-1cfa): a 0-CFA pass first, then a second call graph
+ * that is precise only where the 0-CFA slice goes.
+ *
+ * The methods with statements in the 0-CFA forward slice are refined: calls to them
+ * get one level of call string context (1-CFA). Everything else stays
+ * context-insensitive. Objects are abstracted by type throughout. Naming them by
+ * allocation site (as vanilla-1cfa does) multiplies the heap statements in the SDG,
+ * and slices grow rather than shrink.
+ */
+public class AdaptivePrecision {
+
+    public static final String ANALYSIS = "adaptive-1cfa";
+
+    /**
+     * Methods a forward slice from the seeds passes through
+     * @param cg
+     * @param pa
+     * @param seeds
+     * @param dataOptions
+     * @param controlOptions
+     * @return
+     * @throws CancelException
+     */
+    public static Set<IMethod> findSliceMethods(CallGraph cg,
+                                                PointerAnalysis pa,
+                                                List<Statement> seeds,
+                                                DataDependenceOptions dataOptions,
+                                                ControlDependenceOptions controlOptions) throws CancelException {
+        MultiSeedSlice slice = new MultiSeedSlicer(cg, pa, dataOptions, controlOptions).computeForwardSlice(seeds);
+        Set<IMethod> methods = new HashSet<>();
+        for (Statement s : slice.getStatements()) {
+            methods.add(s.getNode().getMethod());
+        }
+        return methods;
+    }
+
+    /**
+     * Call graph builder that is 1-CFA for calls to the refined methods and 0-CFA
+     * elsewhere. Like the Util factories, this installs the default
+     * method target selectors in options.
+     * @param refined
+     * @param options
+     * @param cache
+     * @param cha
+     * @param scope
+     * @return
+     */
+    public static SSAPropagationCallGraphBuilder makeRefinedBuilder(Set<IMethod> refined,
+                                                                    AnalysisOptions options,
+                                                                    AnalysisCache cache,
+                                                                    IClassHierarchy cha,
+                                                                    AnalysisScope scope) {
+        Util.addDefaultSelectors(options, cha);
+        Util.addDefaultBypassLogic(options, scope, Util.class.getClassLoader(), cha);
+        // call strings on top of the default contexts, as Util.makeNCFABuilder does
+        ContextSelector contexts =
+                new RefinedContextSelector(refined, new nCFAContextSelector(1, new DefaultContextSelector(options, cha)));
+        // one object per type everywhere, as in 0-CFA and WALA's n-CFA builders
+        return ZeroXCFABuilder.make(cha, options, cache, contexts, null, ZeroXInstanceKeys.NONE);
+    }
+
+    // refined context for calls to refined methods, no opinion (the default) otherwise
+    private static class RefinedContextSelector implements ContextSelector {
+        private final Set<IMethod> refined;
+        private final ContextSelector selector;
+
+        RefinedContextSelector(Set<IMethod> refined, ContextSelector selector) {
+            this.refined = refined;
+            this.selector = selector;
+        }
+
+        @Override
+        public Context getCalleeTarget(CGNode caller, CallSiteReference site, IMethod callee, InstanceKey[] receiver) {
+            return refined.contains(callee) ? selector.getCalleeTarget(caller, site, callee, receiver) : null;
+        }
+
+        @Override
+        public IntSet getRelevantParameters(CGNode caller, CallSiteReference site) {
+            return selector.getRelevantParameters(caller, site);
+        }
+    }
+}
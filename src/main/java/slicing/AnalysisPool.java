@@ -0,0 +1,225 @@
+package slicing;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Keeps JarAnalysis instances warm between queries. Entries are whole-jar analysis
+ * state and are evicted least recently used first once the used heap exceeds the
+ * heap budget. The most recently used entry is never evicted, so a single jar
+ * larger than the budget still gets served.
+ *
+ * An analysis keeps growing after it is built: SDGs, slicers and reachability
+ * indexes are added as queries ask for them. So callers hand an analysis back
+ * with release once a query is done with it. The pool then reads the heap left
+ * live by the JVM's last collection, charges the growth since the last reading to
+ * that entry, and evicts until the heap is within the budget. Only a build forces
+ * a collection, to measure what the new analysis holds; queries never do, so a
+ * warm query costs no full GC. The per-entry charges are estimates for stats;
+ * eviction goes by the heap readings, which also count anything the estimates miss.
+ * Between collections an eviction lowers the reading by the evicted entry's charge.
+ *
+ * Analyses are built outside the pool's lock, so a slow build only blocks
+ * requests for the same jar and analysis.
+ */
+public class AnalysisPool {
+
+    private final long heapBudgetBytes;
+    private final File exclusions;
+    // access ordered, eldest entry is the least recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // builds in progress, so concurrent requests for one key share a build
+    private final Map<String, FutureTask<JarAnalysis>> building = new HashMap<>();
+    // used heap at the last reading
+    private long lastUsed = -1;
+
+    private static class Entry {
+        final JarAnalysis analysis;
+        long bytes;
+        final long jarModified;
+        final long jarLength;
+
+        Entry(JarAnalysis analysis, long bytes, File jar) {
+            this.analysis = analysis;
+            this.bytes = bytes;
+            this.jarModified = jar.lastModified();
+            this.jarLength = jar.length();
+        }
+
+        boolean isStale(File jar) {
+            return jar.lastModified() != jarModified || jar.length() != jarLength;
+        }
+    }
+
+    public AnalysisPool(long heapBudgetBytes, File exclusions) {
+        this.heapBudgetBytes = heapBudgetBytes;
+        this.exclusions = exclusions;
+    }
+
+    /**
+     * Get the analysis for a jar, building it (and evicting others) if needed. Hand
+     * it back with release when the query is done.
+     * @param appJar
+     * @param analysis
+     * @return
+     * @throws Exception
+     */
+    public JarAnalysis get(final String appJar, final String analysis) throws Exception {
+        String key = key(appJar, analysis);
+        File jar = new File(appJar);
+        FutureTask<JarAnalysis> task;
+        boolean owner = false;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && !entry.isStale(jar)) {
+                return entry.analysis;
+            }
+            if (entry != null) {
+                // jar changed on disk since we analyzed it
+                entries.remove(key);
+            }
+            task = building.get(key);
+            if (task == null) {
+                task = new FutureTask<>(new Callable<JarAnalysis>() {
+                    @Override
+                    public JarAnalysis call() throws Exception {
+                        return JarAnalysis.build(appJar, analysis, exclusions);
+                    }
+                });
+                building.put(key, task);
+                owner = true;
+            }
+        }
+
+        if (!owner) {
+            return await(task);
+        }
+        // a build takes seconds, a collection on either side of it is cheap by comparison
+        long before = collectedHeap();
+        task.run();
+        synchronized (this) {
+            building.remove(key);
+            JarAnalysis built = await(task);
+            long used = collectedHeap();
+            entries.put(key, new Entry(built, Math.max(0, used - before), jar));
+            lastUsed = used;
+            evict();
+            return built;
+        }
+    }
+
+    /**
+     * Hand back an analysis after a query: charge the heap it grew by to its entry
+     * and evict others if the heap is over budget
+     * @param analysis
+     */
+    public synchronized void release(JarAnalysis analysis) {
+        Entry entry = entries.get(key(analysis.getAppJar(), analysis.getAnalysis()));
+        long used = liveHeap();
+        if (entry != null && entry.analysis == analysis && lastUsed >= 0) {
+            entry.bytes += Math.max(0, used - lastUsed);
+        }
+        lastUsed = used;
+        evict();
+    }
+
+    /**
+     * Drop all analyses for a jar
+     * @param appJar
+     * @return number of entries removed
+     */
+    public synchronized int evict(String appJar) {
+        int removed = 0;
+        for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            if (it.next().getValue().analysis.getAppJar().equals(appJar)) {
+                it.remove();
+                removed++;
+            }
+        }
+        lastUsed = -1;
+        return removed;
+    }
+
+    // drop every analysis, e.g. to free the heap after an OutOfMemoryError
+    public synchronized void clear() {
+        entries.clear();
+        lastUsed = -1;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // estimated bytes held by all entries
+    public synchronized long footprint() {
+        long total = 0;
+        for (Entry e : entries.values()) {
+            total += e.bytes;
+        }
+        return total;
+    }
+
+    public synchronized List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            lines.add(e.getKey() + " ~" + (e.getValue().bytes >> 20) + " MB");
+        }
+        return lines;
+    }
+
+    // least recently used first while the heap is over budget, without collecting to re-measure
+    private void evict() {
+        while (entries.size() > 1 && lastUsed > heapBudgetBytes) {
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            Map.Entry<String, Entry> e = eldest.next();
+            System.err.println("Evicting " + e.getKey());
+            eldest.remove();
+            lastUsed -= e.getValue().bytes;
+        }
+    }
+
+    private static JarAnalysis await(FutureTask<JarAnalysis> task) throws Exception {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    private static String key(String appJar, String analysis) {
+        return new File(appJar).getAbsolutePath() + " " + analysis;
+    }
+
+    // used heap after a forced collection, only for builds
+    private static long collectedHeap() {
+        System.gc();
+        return liveHeap();
+    }
+
+    // heap left after the JVM's last collection of each pool, the current usage of pools never collected
+    private static long liveHeap() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP) {
+                continue;
+            }
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage == null || usage.getCommitted() == 0) {
+                usage = pool.getUsage();
+            }
+            used += usage.getUsed();
+        }
+        return used;
+    }
+}
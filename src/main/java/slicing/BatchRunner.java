@@ -0,0 +1,486 @@
+package slicing;
+
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a manifest of slicing jobs in one JVM, instead of one driver process per
+ * jar and analysis.
+ *
+ * Each manifest line names a driver followed by the positional arguments that
+ * driver's main takes, e.g.
+ *   SimpleSlicerUsingCallee example.jar Example.bye(Ljava/lang/String;)Ljava/lang/String; 0cfa
+ * Jobs on the same jar + analysis form a group that shares one JarAnalysis (class
+ * hierarchy, call graph, pointer analysis and SDG), and run one after another in
+ * manifest order. Groups run concurrently on --jobs threads. Each thread drops its
+ * group's analysis when the group is done, so at most --jobs analyses are in
+ * memory. Peak heap is JVM-wide, so it is left out of the reports while groups run
+ * concurrently. The exclusions file is written once for the whole batch.
+ *
+ * Slices are computed in multi-seed mode, or per seed for a line that ends with
+ * --slice-mode=per-seed. Both share the group's SDG. Parallel mode is rejected, as
+ * groups already run concurrently. A job that fails is reported in the
+ * summary and does not stop the batch. With budgets (--cg-time-budget,
+ * --slice-time-budget, --slice-statement-budget) a pathological jar yields partial
+ * results marked truncated in the summary instead of stalling the batch.
+ *
+ * Jobs are not run through SlicingSession, which builds a call graph for every
+ * query. A group's call graph and SDG are built once and then shared by all of its jobs.
+ */
+public class BatchRunner {
+
+    private static final List<String> ANALYSIS_NAMES = Arrays.asList("0cfa", "vanilla-1cfa", "container-1cfa");
+    private static final List<String> SLICE_MODES = Arrays.asList("per-seed", "multi-seed");
+    private static final String DEFAULT_SLICE_MODE = "multi-seed";
+
+    /**
+     * One manifest line
+     */
+    public static class Job {
+        private final int line;
+        private final String driver;
+        private final String[] args;
+        // null unless the line sets --slice-mode
+        private final String sliceMode;
+
+        Job(int line, String driver, String[] args, String sliceMode) {
+            this.line = line;
+            this.driver = driver;
+            this.args = args;
+            this.sliceMode = sliceMode;
+        }
+
+        public String getDriver() {
+            return driver;
+        }
+
+        public String getJar() {
+            return args[0];
+        }
+
+        public String getAnalysis() {
+            return args[args.length - 1];
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public String getSliceMode() {
+            return sliceMode == null ? DEFAULT_SLICE_MODE : sliceMode;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(driver);
+            for (String a : args) {
+                sb.append(' ').append(a);
+            }
+            if (sliceMode != null) {
+                sb.append(" --slice-mode=").append(sliceMode);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Outcome of one job
+     */
+    public static class Result {
+        private final Job job;
+        private final RunMetrics metrics;
+        private String error;
+        private boolean truncated;
+        private boolean sharedAnalysis;
+
+        Result(Job job) {
+            this.job = job;
+            this.metrics = new RunMetrics(job.getDriver());
+            metrics.setAttribute("jar", job.getJar());
+            metrics.setAttribute("analysis", job.getAnalysis());
+            metrics.setAttribute("slice-mode", job.getSliceMode());
+        }
+
+        public Job getJob() {
+            return job;
+        }
+
+        public RunMetrics getMetrics() {
+            return metrics;
+        }
+
+        // null if the job succeeded
+        public String getError() {
+            return error;
+        }
+
+        // the job's slices are partial because a budget ran out
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        // the job reused an analysis built by an earlier job of its group
+        public boolean isSharedAnalysis() {
+            return sharedAnalysis;
+        }
+    }
+
+    private final File exclusions;
+    private final int jobs;
+    private final PrimordialSnapshot snapshot;
+    private final Budget budget;
+
+    /**
+     * @param exclusions
+     * @param jobs groups run concurrently
+     * @param snapshot JDK snapshot shared by all jobs, null for none
+     * @param budget limits for each group's call graph and each job's slice
+     */
+    public BatchRunner(File exclusions, int jobs, PrimordialSnapshot snapshot, Budget budget) {
+        this.exclusions = exclusions;
+        this.jobs = jobs;
+        this.snapshot = snapshot;
+        this.budget = budget;
+    }
+
+    /**
+     * Parse a manifest, one job per line. Blank lines and lines starting with # are
+     * skipped. The only flag a line may carry is --slice-mode.
+     * @param manifest
+     * @return
+     * @throws IOException
+     */
+    public static List<Job> readManifest(File manifest) throws IOException {
+        List<Job> result = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), StandardCharsets.UTF_8))) {
+            String line;
+            int number = 0;
+            while ((line = in.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                List<String> positional = new ArrayList<>();
+                String sliceMode = null;
+                for (String part : line.split("\\s+")) {
+                    if (part.startsWith("--slice-mode=")) {
+                        sliceMode = part.substring("--slice-mode=".length());
+                        if (!SLICE_MODES.contains(sliceMode)) {
+                            throw new IOException(manifest + ":" + number + ": unsupported slice mode " + sliceMode
+                                    + ", expected one of " + SLICE_MODES);
+                        }
+                    } else if (part.startsWith("--")) {
+                        throw new IOException(manifest + ":" + number + ": unsupported flag " + part);
+                    } else {
+                        positional.add(part);
+                    }
+                }
+                String[] parts = positional.toArray(new String[positional.size()]);
+                String[] args = Arrays.copyOfRange(parts, 1, parts.length);
+                int expected;
+                switch (parts[0]) {
+                    case "SimpleSlicer":
+                        expected = 4;
+                        break;
+                    case "SimpleSlicerUsingCallee":
+                        expected = 3;
+                        break;
+                    case "SliceFromSources":
+                        expected = 2;
+                        break;
+                    default:
+                        throw new IOException(manifest + ":" + number + ": unknown driver " + parts[0]);
+                }
+                if (args.length != expected) {
+                    throw new IOException(manifest + ":" + number + ": " + parts[0] + " expects " + expected + " arguments");
+                }
+                Job job = new Job(number, parts[0], args, sliceMode);
+                if (!ANALYSIS_NAMES.contains(job.getAnalysis())) {
+                    throw new IOException(manifest + ":" + number + ": unsupported analysis " + job.getAnalysis());
+                }
+                result.add(job);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Run all jobs, returning results in manifest order
+     * @param manifestJobs
+     * @return
+     * @throws InterruptedException
+     */
+    public List<Result> run(List<Job> manifestJobs) throws InterruptedException {
+        // group by jar + analysis, keeping manifest order within and across groups
+        Map<String, List<Job>> groups = new LinkedHashMap<>();
+        for (Job job : manifestJobs) {
+            String key = new File(job.getJar()).getAbsolutePath() + " " + job.getAnalysis();
+            List<Job> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+            }
+            group.add(job);
+        }
+
+        final Map<Job, Result> results = Collections.synchronizedMap(new HashMap<Job, Result>());
+        // with groups running side by side, no job's peak heap can be told apart from the others'
+        final boolean concurrent = jobs > 1 && groups.size() > 1;
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (final List<Job> group : groups.values()) {
+                futures.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        runGroup(group, results, concurrent);
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (java.util.concurrent.ExecutionException e) {
+                    // runGroup records failures per job, anything else is a bug
+                    e.getCause().printStackTrace();
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        List<Result> ordered = new ArrayList<>();
+        for (Job job : manifestJobs) {
+            ordered.add(results.get(job));
+        }
+        return ordered;
+    }
+
+    private void runGroup(List<Job> group, Map<Job, Result> results, boolean concurrent) {
+        JarAnalysis analysis = null;
+        Throwable buildError = null;
+        for (Job job : group) {
+            Result result = new Result(job);
+            results.put(job, result);
+            RunMetrics metrics = result.getMetrics();
+            if (concurrent) {
+                metrics.setMeasureHeap(false);
+                metrics.setAttribute("peak-heap", "not measured, groups ran concurrently");
+            }
+            result.sharedAnalysis = analysis != null || buildError != null;
+            try {
+                if (!result.sharedAnalysis) {
+                    // the first job of a group pays for the analysis, the rest reuse it
+                    System.err.println("Analyzing " + job.getJar() + " with " + job.getAnalysis());
+                    metrics.begin("analysis");
+                    try {
+                        analysis = JarAnalysis.build(job.getJar(), job.getAnalysis(), exclusions, snapshot, budget);
+                    } catch (Throwable e) {
+                        buildError = e;
+                    }
+                    if (analysis != null && analysis.getTruncation() != null) {
+                        metrics.markTruncated(analysis.getTruncation());
+                    }
+                    metrics.end();
+                    if (analysis != null) {
+                        metrics.countAnalysis(analysis.getClassHierarchy(), analysis.getCallGraph(),
+                                analysis.getPointerAnalysis());
+                    }
+                }
+                if (buildError != null) {
+                    throw buildError;
+                }
+                metrics.setAttribute("shared-analysis", result.sharedAnalysis);
+                if (analysis.getTruncation() != null) {
+                    // every job of the group slices over the same partial call graph
+                    metrics.setAttribute("call-graph-truncated", analysis.getTruncation());
+                }
+
+                metrics.begin("seeds");
+                List<Statement> seeds = findSeeds(analysis, job);
+                metrics.begin("slice");
+                MultiSeedSlicer slicer = analysis.getSlicer(DataDependenceOptions.FULL, ControlDependenceOptions.FULL);
+                Budget.Monitor sliceMonitor = budget.startSlice();
+                SliceSet slices;
+                if (job.getSliceMode().equals("per-seed")) {
+                    // one tabulation pass per seed over the group's SDG
+                    slices = new SliceSet(seeds);
+                    for (int i = 0; i < seeds.size(); i++) {
+                        Budget.Monitor solve = sliceMonitor.startSolve();
+                        slices.add(i, MultiSeedSlicer.computeForwardSlice(slicer.getSDG(), seeds.get(i), solve));
+                        if (solve.getTruncation() != null) {
+                            slices.markTruncated(i);
+                        }
+                    }
+                } else {
+                    Budget.Monitor solve = sliceMonitor.startSolve();
+                    slices = slicer.computeForwardSlice(seeds, solve).toSliceSet();
+                    if (solve.getTruncation() != null) {
+                        // one pass for all seeds, any of them may be cut short
+                        for (int i = 0; i < seeds.size(); i++) {
+                            slices.markTruncated(i);
+                        }
+                    }
+                }
+                metrics.recordBudget(sliceMonitor);
+                metrics.end();
+                metrics.count("seeds", seeds.size());
+                metrics.count("sdg_statements", RunMetrics.countBuiltStatements(slicer.getSDG()));
+                metrics.count("slice_statements", slices.size());
+                // their slice_sizes are only what was reached before the budget ran out
+                metrics.count("truncated_seeds", slices.getTruncatedCount());
+                metrics.setSliceSizes(slices.getSliceSizes());
+                result.truncated = metrics.isTruncated() || analysis.getTruncation() != null;
+                System.err.println("Done with line " + job.getLine() + ": " + slices.size() + " statements"
+                        + (result.truncated ? " (truncated)" : ""));
+            } catch (Throwable e) {
+                // WALA reports missing methods through Assertions.UNREACHABLE (an Error),
+                // which should fail the job, not the batch
+                result.error = String.valueOf(e.getMessage()).replace('\n', ' ');
+                System.err.println("Failed line " + job.getLine() + ": " + result.error);
+            }
+        }
+    }
+
+    private static List<Statement> findSeeds(JarAnalysis analysis, Job job) throws IOException {
+        switch (job.getDriver()) {
+            case "SimpleSlicer":
+                return analysis.findCallerSeeds(job.args[1], job.args[2]);
+            case "SimpleSlicerUsingCallee":
+                return analysis.findCalleeSeeds(job.args[1]);
+            default:
+                return analysis.findSourceSeeds();
+        }
+    }
+
+    /**
+     * Summary of all results as a JSON object, with each job's run report inline
+     * @param manifest
+     * @param results
+     * @param totalMs
+     * @return
+     */
+    public static String toJson(File manifest, List<Result> results, long totalMs) {
+        int failed = 0;
+        int truncated = 0;
+        for (Result r : results) {
+            if (r.getError() != null) {
+                failed++;
+            }
+            if (r.isTruncated()) {
+                truncated++;
+            }
+        }
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"manifest\": ").append(RunMetrics.quote(manifest.getPath())).append(",\n");
+        json.append("  \"jobs\": ").append(results.size()).append(",\n");
+        json.append("  \"failed\": ").append(failed).append(",\n");
+        json.append("  \"truncated\": ").append(truncated).append(",\n");
+        json.append("  \"total_ms\": ").append(totalMs).append(",\n");
+        json.append("  \"results\": [");
+        String sep = "";
+        for (Result r : results) {
+            json.append(sep).append("\n    {\"line\": ").append(r.getJob().getLine())
+                    .append(", \"job\": ").append(RunMetrics.quote(r.getJob().toString()))
+                    .append(", \"status\": ").append(RunMetrics.quote(r.getError() == null ? "ok" : "error"));
+            if (r.getError() != null) {
+                json.append(", \"error\": ").append(RunMetrics.quote(r.getError()));
+            }
+            if (r.isTruncated()) {
+                json.append(", \"truncated\": true");
+            }
+            json.append(", \"report\": ").append(r.getMetrics().toJson().trim().replace("\n", "\n    "))
+                    .append("}");
+            sep = ",";
+        }
+        json.append(results.isEmpty() ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    /**
+     * Help message
+     */
+    public static void help() {
+        System.out.println(
+                "Usage:java -cp slicer.jar slicing.BatchRunner <manifest> [--summary=FILE] [--jobs=N] [--primordial-snapshot=DIR]\n" +
+                "    [--cg-time-budget=SECONDS] [--slice-time-budget=SECONDS] [--slice-statement-budget=N]\n" +
+                "Each manifest line is a driver name followed by that driver's positional arguments:\n" +
+                "  SimpleSlicer <target-jar-path> <caller-sig> <callee-sig> <analysis>\n" +
+                "  SimpleSlicerUsingCallee <target-jar-path> <callee-sig> <analysis>\n" +
+                "  SliceFromSources <target-jar-path> <analysis>\n" +
+                "and optionally --slice-mode=multi-seed|per-seed (default: multi-seed)\n" +
+                "Analysis must be one of: 0cfa, vanilla-1cfa, container-1cfa\n" +
+                "Blank lines and lines starting with # are ignored.\n" +
+                "Optional flags:\n" +
+                "  --summary=FILE  write per-job results and timings as JSON (default: batch-summary.json)\n" +
+                "  --jobs=N  jars (or analyses) processed concurrently (default: 1), peak heap is only\n" +
+                "      reported when groups run one at a time\n" +
+                "  --primordial-snapshot=DIR  read JDK classes from a snapshot in DIR, built on first use\n" +
+                "  --cg-time-budget=SECONDS  stop each call graph after SECONDS and slice over the partial graph\n" +
+                "  --slice-time-budget=SECONDS  stop each job's slice after SECONDS and keep the partial result\n" +
+                "  --slice-statement-budget=N  stop each job's slice once it reaches N statements\n"
+        );
+    }
+
+    /**
+     * Run a manifest of jobs
+     * @param args
+     */
+    public static void main(String[] args) {
+        DriverOptions driverOptions = DriverOptions.parse(args);
+        if (driverOptions.getPositional().size() != 1 || driverOptions.has("help")) {
+            help();
+            System.exit(1);
+        }
+        File manifest = new File(driverOptions.getPositional().get(0));
+        File summary = new File(driverOptions.getString("summary", "batch-summary.json"));
+        int jobs = driverOptions.getInt("jobs", 1);
+        if (jobs < 1) {
+            throw new IllegalArgumentException("--jobs must be at least 1");
+        }
+
+        try {
+            final long startTime = System.currentTimeMillis();
+            List<Job> manifestJobs = readManifest(manifest);
+            PrimordialSnapshot snapshot = driverOptions.has("primordial-snapshot")
+                    ? new PrimordialSnapshot(new File(driverOptions.getString("primordial-snapshot", null))) : null;
+            if (snapshot != null) {
+                snapshot.setLog(System.err);
+            }
+            BatchRunner runner = new BatchRunner(SimpleSlicer.getExclusionsFile(), jobs, snapshot,
+                    Budget.fromOptions(driverOptions));
+            List<Result> results = runner.run(manifestJobs);
+            if (snapshot != null) {
+                snapshot.close();
+            }
+            long totalMs = System.currentTimeMillis() - startTime;
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(summary), StandardCharsets.UTF_8)) {
+                out.write(toJson(manifest, results, totalMs));
+            }
+            int failed = 0;
+            for (Result r : results) {
+                if (r.getError() != null) {
+                    failed++;
+                }
+            }
+            System.out.println("Ran " + results.size() + " jobs (" + failed + " failed) in " + totalMs + " ms, summary in " + summary);
+            if (failed > 0) {
+                System.exit(2);
+            }
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
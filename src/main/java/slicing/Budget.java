@@ -0,0 +1,211 @@
+package slicing;
+
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.CallGraphBuilder;
+import com.ibm.wala.ipa.callgraph.CallGraphBuilderCancelException;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.MonitorUtil.IProgressMonitor;
+
+/**
+ * Wall-clock and size limits for the expensive phases of a run, enforced through
+ * WALA's IProgressMonitor.
+ *
+ * WALA polls the monitor from its fixed-point loops: the pointer analysis solver
+ * while the call graph is built, and the tabulation solver while slicing. When a
+ * budget runs out the monitor reports itself canceled and WALA stops with what it
+ * has so far, the partial call graph and pointer analysis or the statements
+ * reached so far. The run carries on with those partial results, marked truncated,
+ * instead of failing or hanging.
+ *
+ * Budgets, 0 meaning unlimited:
+ *  - call graph time: wall-clock limit for each call graph build
+ *  - slice time: wall-clock limit for the whole slice phase, over all seeds
+ *  - slice statements: statements one tabulation pass may reach, i.e. per seed in
+ *    per-seed and parallel mode and for all seeds together in multi-seed mode
+ */
+public class Budget {
+
+    private final long callGraphMs;
+    private final long sliceMs;
+    private final long sliceStatements;
+
+    public Budget(long callGraphMs, long sliceMs, long sliceStatements) {
+        if (callGraphMs < 0 || sliceMs < 0 || sliceStatements < 0) {
+            throw new IllegalArgumentException("budgets must not be negative");
+        }
+        this.callGraphMs = callGraphMs;
+        this.sliceMs = sliceMs;
+        this.sliceStatements = sliceStatements;
+    }
+
+    /**
+     * No limits at all
+     * @return
+     */
+    public static Budget unlimited() {
+        return new Budget(0, 0, 0);
+    }
+
+    /**
+     * Budgets from driver flags (--cg-time-budget=SECONDS, --slice-time-budget=SECONDS, --slice-statement-budget=N)
+     * @param driverOptions
+     * @return
+     */
+    public static Budget fromOptions(DriverOptions driverOptions) {
+        return new Budget(millis(driverOptions, "cg-time-budget"), millis(driverOptions, "slice-time-budget"),
+                driverOptions.getInt("slice-statement-budget", 0));
+    }
+
+    private static long millis(DriverOptions driverOptions, String name) {
+        String value = driverOptions.getString(name, "0");
+        try {
+            return Math.round(Double.parseDouble(value) * 1000);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " expects a number of seconds but got " + value);
+        }
+    }
+
+    // monitor for one call graph build
+    public Monitor startCallGraph() {
+        return new Monitor(null, callGraphMs, 0);
+    }
+
+    // monitor for a whole slice phase, see Monitor.startSolve for each tabulation pass
+    public Monitor startSlice() {
+        return new Monitor(null, sliceMs, sliceStatements);
+    }
+
+    /**
+     * Build a call graph within a monitor's budget. If the budget runs out, the
+     * partial call graph is returned and builder.getPointerAnalysis() is the
+     * matching partial pointer analysis.
+     * @param builder
+     * @param options
+     * @param monitor
+     * @return
+     * @throws CancelException
+     */
+    public static CallGraph makeCallGraph(CallGraphBuilder builder, AnalysisOptions options, Monitor monitor)
+            throws CancelException {
+        if (monitor.isUnlimited()) {
+            return builder.makeCallGraph(options, null);
+        }
+        try {
+            return builder.makeCallGraph(options, monitor);
+        } catch (CallGraphBuilderCancelException e) {
+            monitor.stopped();
+            return e.getPartialCallGraph();
+        }
+    }
+
+    /**
+     * Progress monitor that cancels once its time or statement budget is used up.
+     * A phase monitor hands out one child per tabulation pass. Children share the
+     * phase's deadline, count statements on their own and report truncation back
+     * to the phase.
+     */
+    public static class Monitor implements IProgressMonitor {
+        private final Monitor parent;
+        private final long start = System.nanoTime();
+        private final long timeLimitMs;
+        private final long statementLimit;
+        private long statements;
+        private volatile String cancelMessage;
+        // set when WALA actually stopped early because of this monitor
+        private volatile String truncation;
+
+        private Monitor(Monitor parent, long timeLimitMs, long statementLimit) {
+            this.parent = parent;
+            this.timeLimitMs = timeLimitMs;
+            this.statementLimit = statementLimit;
+        }
+
+        /**
+         * Monitor for one tabulation pass of this phase
+         * @return
+         */
+        public Monitor startSolve() {
+            return new Monitor(this, 0, statementLimit);
+        }
+
+        public boolean isUnlimited() {
+            return timeLimitMs == 0 && statementLimit == 0 && (parent == null || parent.isUnlimited());
+        }
+
+        // the solver reached a statement it had not reached before
+        public void reached() {
+            statements++;
+            if (statementLimit > 0 && statements > statementLimit) {
+                cancel("statement budget of " + statementLimit + " exceeded");
+            }
+        }
+
+        /**
+         * Record that the work under this monitor stopped before it was complete
+         */
+        public synchronized void stopped() {
+            if (truncation == null) {
+                truncation = String.valueOf(getCancelMessage());
+            }
+            if (parent != null) {
+                synchronized (parent) {
+                    if (parent.truncation == null) {
+                        parent.truncation = truncation;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Why the work under this monitor is incomplete, null if it finished within budget
+         * @return
+         */
+        public String getTruncation() {
+            return truncation;
+        }
+
+        @Override
+        public boolean isCanceled() {
+            if (cancelMessage == null && timeLimitMs > 0 && System.nanoTime() - start > timeLimitMs * 1000000) {
+                cancel("time budget of " + timeLimitMs + " ms exceeded");
+            }
+            return cancelMessage != null || (parent != null && parent.isCanceled());
+        }
+
+        @Override
+        public String getCancelMessage() {
+            if (cancelMessage == null && parent != null) {
+                return parent.getCancelMessage();
+            }
+            return cancelMessage;
+        }
+
+        @Override
+        public void cancel() {
+            cancel("canceled");
+        }
+
+        private synchronized void cancel(String message) {
+            if (cancelMessage == null) {
+                cancelMessage = message;
+            }
+        }
+
+        @Override
+        public void beginTask(String task, int totalWork) {
+        }
+
+        @Override
+        public void subTask(String subTask) {
+        }
+
+        @Override
+        public void done() {
+        }
+
+        @Override
+        public void worked(int units) {
+        }
+    }
+}
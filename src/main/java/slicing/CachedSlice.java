@@ -0,0 +1,44 @@
+package slicing;
+
+import java.util.List;
+
+/**
+ * Slice read back from the on-disk cache. Statements and seeds are kept in the
+ * textual form they were printed in, since the WALA objects behind them only
+ * exist while the analysis is loaded.
+ */
+public class CachedSlice {
+
+    private final List<String> seeds;
+    private final int[] sliceSizes;
+    private final List<String> statements;
+
+    public CachedSlice(List<String> seeds, int[] sliceSizes, List<String> statements) {
+        this.seeds = seeds;
+        this.sliceSizes = sliceSizes;
+        this.statements = statements;
+    }
+
+    public List<String> getSeeds() {
+        return seeds;
+    }
+
+    public int[] getSliceSizes() {
+        return sliceSizes;
+    }
+
+    public List<String> getStatements() {
+        return statements;
+    }
+
+    /**
+     * Print the size of each seed's slice to stdout (up to limit # of seeds),
+     * mirrors MultiSeedSlice.dumpSeedSummary
+     * @param limit
+     */
+    public void dumpSeedSummary(int limit) {
+        for (int i = 0; i < limit && i < seeds.size(); i++) {
+            System.out.println("Seed " + i + " reaches " + sliceSizes[i] + " statements: " + seeds.get(i));
+        }
+    }
+}
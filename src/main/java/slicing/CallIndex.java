@@ -0,0 +1,125 @@
+package slicing;
+
+import com.ibm.wala.classLoader.CallSiteReference;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.slicer.NormalStatement;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.util.debug.Assertions;
+import com.ibm.wala.util.intset.IntSet;
+
+import java.util.*;
+
+/**
+ * Reverse index over a call graph, built in one pass right after call graph
+ * construction. Maps a method to its call graph nodes, to the nodes that call it
+ * and to the call sites that target it, so that looking up callers no longer scans
+ * the whole call graph once per method.
+ *
+ * Call sites are indexed both by declared target (what the bytecode names) and by
+ * resolved target (what the call graph says the site may dispatch to).
+ */
+public class CallIndex {
+
+    private final CallGraph cg;
+    private final Map<MethodReference, List<CGNode>> nodes = new HashMap<>();
+    private final Map<MethodReference, Set<CGNode>> callers = new HashMap<>();
+    private final Map<MethodReference, Map<CGNode, Set<CallSiteReference>>> declaredSites = new HashMap<>();
+    private final Map<MethodReference, Map<CGNode, Set<CallSiteReference>>> resolvedSites = new HashMap<>();
+
+    public CallIndex(CallGraph cg) {
+        this.cg = cg;
+        for (CGNode n : cg) {
+            get(nodes, n.getMethod().getReference(), new ArrayList<CGNode>()).add(n);
+            for (Iterator<CallSiteReference> sites = n.iterateCallSites(); sites.hasNext(); ) {
+                CallSiteReference site = sites.next();
+                addSite(declaredSites, site.getDeclaredTarget(), n, site);
+                for (CGNode target : cg.getPossibleTargets(n, site)) {
+                    MethodReference targetRef = target.getMethod().getReference();
+                    addSite(resolvedSites, targetRef, n, site);
+                    get(callers, targetRef, new LinkedHashSet<CGNode>()).add(n);
+                }
+            }
+        }
+    }
+
+    private static <K, V> V get(Map<K, V> map, K key, V empty) {
+        V value = map.get(key);
+        if (value == null) {
+            value = empty;
+            map.put(key, value);
+        }
+        return value;
+    }
+
+    private static void addSite(Map<MethodReference, Map<CGNode, Set<CallSiteReference>>> index,
+                                MethodReference target, CGNode caller, CallSiteReference site) {
+        Map<CGNode, Set<CallSiteReference>> byCaller = get(index, target, new LinkedHashMap<CGNode, Set<CallSiteReference>>());
+        get(byCaller, caller, new LinkedHashSet<CallSiteReference>()).add(site);
+    }
+
+    public CallGraph getCallGraph() {
+        return cg;
+    }
+
+    // call graph nodes for a method (one per context), in call graph order
+    public List<CGNode> getNodes(MethodReference method) {
+        List<CGNode> result = nodes.get(method);
+        return result == null ? Collections.<CGNode>emptyList() : result;
+    }
+
+    // nodes with a call graph edge into any node for method
+    public Set<CGNode> getCallers(MethodReference method) {
+        Set<CGNode> result = callers.get(method);
+        return result == null ? Collections.<CGNode>emptySet() : result;
+    }
+
+    /**
+     * Calls in caller whose declared target is method, in instruction order
+     * @param caller
+     * @param method
+     * @return
+     */
+    public List<Statement> getCallsByDeclaredTarget(CGNode caller, MethodReference method) {
+        return toStatements(caller, sites(declaredSites, method, caller));
+    }
+
+    /**
+     * Calls in caller that may dispatch to method, in instruction order
+     * @param caller
+     * @param method
+     * @return
+     */
+    public List<Statement> getCallsByResolvedTarget(CGNode caller, MethodReference method) {
+        return toStatements(caller, sites(resolvedSites, method, caller));
+    }
+
+    private static Set<CallSiteReference> sites(Map<MethodReference, Map<CGNode, Set<CallSiteReference>>> index,
+                                                MethodReference method, CGNode caller) {
+        Map<CGNode, Set<CallSiteReference>> byCaller = index.get(method);
+        Set<CallSiteReference> result = byCaller == null ? null : byCaller.get(caller);
+        return result == null ? Collections.<CallSiteReference>emptySet() : result;
+    }
+
+    private static List<Statement> toStatements(CGNode caller, Set<CallSiteReference> sites) {
+        List<Statement> statements = new ArrayList<>();
+        if (sites.isEmpty()) {
+            return statements;
+        }
+        IR ir = caller.getIR();
+        int[] indices = new int[sites.size()];
+        int i = 0;
+        for (CallSiteReference site : sites) {
+            IntSet siteIndices = ir.getCallInstructionIndices(site);
+            Assertions.productionAssertion(siteIndices.size() == 1, "expected 1 but got " + siteIndices.size());
+            indices[i++] = siteIndices.intIterator().next();
+        }
+        Arrays.sort(indices);
+        for (int index : indices) {
+            statements.add(new NormalStatement(caller, index));
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,249 @@
+package slicing;
+
+import com.ibm.wala.classLoader.CallSiteReference;
+import com.ibm.wala.classLoader.IBytecodeMethod;
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.AnalysisOptions;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.MethodTargetSelector;
+import com.ibm.wala.ipa.callgraph.impl.DefaultEntrypoint;
+import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.shrikeCT.InvalidClassFileException;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.util.debug.Assertions;
+
+import java.util.*;
+
+/**
+ * The part of an application that matters for a slice, found with class hierarchy
+ * reasoning alone, before any call graph is built.
+ *
+ * Starting from the application methods that hold the slicing criteria, the region
+ * holds
+ *  - backward: application methods that may (transitively) call them, i.e. the
+ *    paths from the entrypoints to the criteria
+ *  - forward: application methods they may (transitively) call, where the slice
+ *    from a call's return value goes
+ * Call targets come from the bytecode call sites, resolved against the class
+ * hierarchy (every possible override for virtual calls).
+ *
+ * Restricting a call graph builder to the region keeps only the entrypoints that
+ * lead to the criteria and drops calls from methods on those paths into
+ * application code outside the region. Library calls are always kept. A slice over
+ * the reduced call graph misses flows that leave the region through the heap, or
+ * through return values into calls that were dropped.
+ */
+public class CallRegion {
+
+    private final IClassHierarchy cha;
+    private final Set<IMethod> criteria;
+    private final Set<IMethod> backward;
+    private final Set<IMethod> forward;
+    private final Map<IMethod, Set<IMethod>> callers;
+    private final int applicationMethods;
+
+    private CallRegion(IClassHierarchy cha, Set<IMethod> criteria, Map<IMethod, Set<IMethod>> callees) {
+        this.cha = cha;
+        this.criteria = criteria;
+        this.callers = invert(callees);
+        this.backward = reach(criteria, callers);
+        this.forward = reach(criteria, callees);
+        this.applicationMethods = callees.size();
+    }
+
+    /**
+     * Region around the given application methods
+     * @param cha
+     * @param methods methods holding the slicing criteria
+     * @return
+     */
+    public static CallRegion aroundCallers(IClassHierarchy cha, Collection<MethodReference> methods) {
+        Set<IMethod> criteria = new HashSet<>();
+        for (MethodReference method : methods) {
+            IMethod m = cha.resolveMethod(method);
+            if (m == null) {
+                Assertions.UNREACHABLE("failed to find method " + method);
+            }
+            criteria.add(m);
+        }
+        return new CallRegion(cha, criteria, applicationCallees(cha));
+    }
+
+    /**
+     * Region around the application methods that may call any of the given methods
+     * @param cha
+     * @param methods methods whose return values are the slicing criteria
+     * @return
+     */
+    public static CallRegion aroundCallees(IClassHierarchy cha, Collection<MethodReference> methods) {
+        Set<IMethod> targets = new HashSet<>();
+        for (MethodReference method : methods) {
+            IMethod m = cha.resolveMethod(method);
+            if (m != null) {
+                targets.add(m);
+            }
+        }
+        Map<IMethod, Set<IMethod>> callees = applicationCallees(cha);
+        Set<IMethod> criteria = new HashSet<>();
+        for (Map.Entry<IMethod, Set<IMethod>> e : callees.entrySet()) {
+            if (!Collections.disjoint(e.getValue(), targets)) {
+                criteria.add(e.getKey());
+            }
+        }
+        return new CallRegion(cha, criteria, callees);
+    }
+
+    // possible targets of every call site in every concrete application method
+    private static Map<IMethod, Set<IMethod>> applicationCallees(IClassHierarchy cha) {
+        Map<IMethod, Set<IMethod>> callees = new HashMap<>();
+        for (IClass klass : cha) {
+            if (!isApplication(klass)) {
+                continue;
+            }
+            for (IMethod m : klass.getDeclaredMethods()) {
+                Set<IMethod> targets = new HashSet<>();
+                callees.put(m, targets);
+                if (!(m instanceof IBytecodeMethod) || m.isAbstract() || m.isNative()) {
+                    continue;
+                }
+                try {
+                    for (CallSiteReference site : ((IBytecodeMethod) m).getCallSites()) {
+                        targets.addAll(possibleTargets(cha, site));
+                    }
+                } catch (InvalidClassFileException e) {
+                    Assertions.UNREACHABLE("failed to read call sites of " + m + ": " + e.getMessage());
+                }
+            }
+        }
+        return callees;
+    }
+
+    private static Set<IMethod> possibleTargets(IClassHierarchy cha, CallSiteReference site) {
+        if (site.isDispatch()) {
+            return cha.getPossibleTargets(site.getDeclaredTarget());
+        }
+        IMethod target = cha.resolveMethod(site.getDeclaredTarget());
+        return target == null ? Collections.<IMethod>emptySet() : Collections.singleton(target);
+    }
+
+    private static Map<IMethod, Set<IMethod>> invert(Map<IMethod, Set<IMethod>> callees) {
+        Map<IMethod, Set<IMethod>> callers = new HashMap<>();
+        for (Map.Entry<IMethod, Set<IMethod>> e : callees.entrySet()) {
+            for (IMethod callee : e.getValue()) {
+                Set<IMethod> s = callers.get(callee);
+                if (s == null) {
+                    s = new HashSet<>();
+                    callers.put(callee, s);
+                }
+                s.add(e.getKey());
+            }
+        }
+        return callers;
+    }
+
+    // application methods reachable from start (inclusive) along edges
+    private static Set<IMethod> reach(Set<IMethod> start, Map<IMethod, Set<IMethod>> edges) {
+        Set<IMethod> reached = new HashSet<>(start);
+        Deque<IMethod> worklist = new ArrayDeque<>(start);
+        while (!worklist.isEmpty()) {
+            Set<IMethod> next = edges.get(worklist.pop());
+            if (next == null) {
+                continue;
+            }
+            for (IMethod m : next) {
+                if (isApplication(m.getDeclaringClass()) && reached.add(m)) {
+                    worklist.push(m);
+                }
+            }
+        }
+        return reached;
+    }
+
+    private static boolean isApplication(IClass klass) {
+        return klass.getClassLoader().getReference().equals(ClassLoaderReference.Application);
+    }
+
+    public Set<IMethod> getCriteria() {
+        return Collections.unmodifiableSet(criteria);
+    }
+
+    // application methods on a path to the criteria or reachable from them
+    public boolean contains(IMethod m) {
+        return backward.contains(m) || forward.contains(m);
+    }
+
+    public int size() {
+        Set<IMethod> all = new HashSet<>(backward);
+        all.addAll(forward);
+        return all.size();
+    }
+
+    /**
+     * Entrypoints that lead to the criteria. Keeps the given entrypoints that are in
+     * the region, and falls back to the region methods nobody in the application
+     * calls when none are.
+     * @param entrypoints
+     * @return
+     */
+    public List<Entrypoint> restrictEntrypoints(Iterable<? extends Entrypoint> entrypoints) {
+        List<Entrypoint> result = new ArrayList<>();
+        for (Entrypoint e : entrypoints) {
+            if (backward.contains(e.getMethod())) {
+                result.add(e);
+            }
+        }
+        if (result.isEmpty()) {
+            for (IMethod m : backward) {
+                Set<IMethod> s = callers.get(m);
+                if (!m.isAbstract() && (s == null || s.isEmpty())) {
+                    result.add(new DefaultEntrypoint(m, cha));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Whether a call should be left out of the call graph: calls from application
+     * methods on a path to the criteria into application code outside the region
+     * @param caller
+     * @param target
+     * @return
+     */
+    public boolean prunes(IMethod caller, IMethod target) {
+        return isApplication(caller.getDeclaringClass())
+                && !forward.contains(caller)
+                && isApplication(target.getDeclaringClass())
+                && !contains(target);
+    }
+
+    /**
+     * Restrict call graph construction to the region. Must be called after the
+     * builder has been made, since the Util factories install their own selectors.
+     * @param options
+     */
+    public void restrict(AnalysisOptions options) {
+        options.setEntrypoints(restrictEntrypoints(options.getEntrypoints()));
+        final MethodTargetSelector parent = options.getMethodTargetSelector();
+        options.setSelector(new MethodTargetSelector() {
+            @Override
+            public IMethod getCalleeTarget(CGNode caller, CallSiteReference site, IClass receiver) {
+                IMethod target = parent.getCalleeTarget(caller, site, receiver);
+                if (target != null && prunes(caller.getMethod(), target)) {
+                    return null;
+                }
+                return target;
+            }
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "Region of " + size() + " out of " + applicationMethods + " application methods ("
+                + criteria.size() + " holding criteria, " + backward.size() + " on paths to them, "
+                + forward.size() + " reachable from them)";
+    }
+}
@@ -0,0 +1,125 @@
+package slicing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line arguments for the slicing drivers. Positional arguments keep their
+ * original meaning, anything of the form --name or --name=value is an optional flag.
+ */
+public class DriverOptions {
+
+    private final List<String> positional = new ArrayList<>();
+    private final Map<String, String> flags = new HashMap<>();
+
+    /**
+     * Split raw arguments into positional arguments and flags
+     * @param args
+     * @return
+     */
+    public static DriverOptions parse(String[] args) {
+        DriverOptions options = new DriverOptions();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int eq = arg.indexOf('=');
+                if (eq < 0) {
+                    options.flags.put(arg.substring(2), "true");
+                } else {
+                    options.flags.put(arg.substring(2, eq), arg.substring(eq + 1));
+                }
+            } else {
+                options.positional.add(arg);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Options with no flags set
+     * @return
+     */
+    public static DriverOptions empty() {
+        return new DriverOptions();
+    }
+
+    public List<String> getPositional() {
+        return positional;
+    }
+
+    public boolean has(String name) {
+        return flags.containsKey(name);
+    }
+
+    public String getString(String name, String defaultValue) {
+        String value = flags.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = flags.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " expects an integer but got " + value);
+        }
+    }
+
+    /**
+     * Enum constant named by a flag, case-insensitive
+     * @param name
+     * @param type
+     * @param defaultValue
+     * @return
+     */
+    public <E extends Enum<E>> E getEnum(String name, Class<E> type, E defaultValue) {
+        String value = flags.get(name);
+        return value == null ? defaultValue : parseEnum(name, type, value);
+    }
+
+    /**
+     * Enum constants named by a comma-separated flag, case-insensitive
+     * @param name
+     * @param type
+     * @param defaultValues
+     * @return
+     */
+    public <E extends Enum<E>> List<E> getEnumList(String name, Class<E> type, List<E> defaultValues) {
+        String value = flags.get(name);
+        if (value == null) {
+            return defaultValues;
+        }
+        List<E> values = new ArrayList<>();
+        for (String v : value.split(",")) {
+            values.add(parseEnum(name, type, v));
+        }
+        return values;
+    }
+
+    private static <E extends Enum<E>> E parseEnum(String name, Class<E> type, String value) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            List<String> names = new ArrayList<>();
+            for (E constant : type.getEnumConstants()) {
+                names.add(constant.name());
+            }
+            throw new IllegalArgumentException("--" + name + " expects one of " + names + " but got " + value);
+        }
+    }
+
+    /**
+     * Set (or override) a flag, mainly for callers that build options programmatically
+     * @param name
+     * @param value
+     * @return
+     */
+    public DriverOptions set(String name, String value) {
+        flags.put(name, value);
+        return this;
+    }
+}
@@ -0,0 +1,354 @@
+package slicing;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.ipa.callgraph.*;
+import com.ibm.wala.ipa.callgraph.impl.AbstractRootMethod;
+import com.ibm.wala.ipa.callgraph.propagation.AbstractFieldPointerKey;
+import com.ibm.wala.ipa.callgraph.propagation.AbstractLocalPointerKey;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.callgraph.propagation.PointerKey;
+import com.ibm.wala.ipa.callgraph.propagation.StaticFieldKey;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.types.TypeReference;
+import com.ibm.wala.util.strings.StringStuff;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Measures what each package costs the call graph build and whether it matters
+ * to the slices, and suggests exclusions from that.
+ *
+ * The jar is analyzed with the current exclusions. The following are attributed to
+ * package prefixes (the first --depth segments of the package name):
+ *  - call graph nodes, by the declaring class of the node's method
+ *  - pointer keys: locals and return values by their node, instance fields and
+ *    array contents by the concrete type of the object, static fields by their
+ *    declaring class
+ *  - solver time, estimated by splitting the measured call graph time in
+ *    proportion to the points-to facts (the sum of points-to set sizes) each
+ *    package's pointer keys hold
+ * Slices are then computed from the seeds (the return sites of --callee, or of
+ * the taint sources), and their statements are counted per package. Call graph,
+ * seeds and slices come from a multi-seed SlicingSession.
+ *
+ * Packages with no application classes, no statement in any slice and no
+ * criteria (the callee or taint sources the seeds call) are suggested for
+ * exclusion, most expensive first. They are appended to a copy of
+ * the current exclusions file. Excluding a package changes the call graph, so
+ * slices should be checked again by profiling with --exclusions set to the
+ * suggested file.
+ */
+public class ExclusionProfiler {
+
+    // the class hierarchy can't be built without java/lang, so it is never suggested
+    private static final String ESSENTIAL = "java/lang";
+
+    /**
+     * Cost and relevance of one package prefix
+     */
+    public static class PackageCost {
+        private final String prefix;
+        // whether the prefix was cut at --depth, so that subpackages are counted in it
+        private final boolean subpackages;
+        private long nodes;
+        private long pointerKeys;
+        private long facts;
+        private long estimatedMs;
+        private long sliceStatements;
+        private boolean application;
+        private boolean criteria;
+
+        PackageCost(String prefix, boolean subpackages) {
+            this.prefix = prefix;
+            this.subpackages = subpackages;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+
+        public long getPointerKeys() {
+            return pointerKeys;
+        }
+
+        public long getFacts() {
+            return facts;
+        }
+
+        public long getEstimatedMs() {
+            return estimatedMs;
+        }
+
+        public long getSliceStatements() {
+            return sliceStatements;
+        }
+
+        // has classes loaded by the application loader
+        public boolean isApplication() {
+            return application;
+        }
+
+        // declares the callee or a taint source the seeds are calls to
+        public boolean hasCriteria() {
+            return criteria;
+        }
+
+        // suggested for exclusion: library code no slice goes through
+        public boolean isExcludable() {
+            return !application && !criteria && sliceStatements == 0
+                    && !prefix.equals(ESSENTIAL) && !ESSENTIAL.startsWith(prefix + "/") && !prefix.startsWith("(");
+        }
+
+        // exclusions file line matching the classes counted here
+        public String toExclusion() {
+            return prefix.replace("/", "\\/") + (subpackages ? "\\/.*" : "\\/[^\\/]*");
+        }
+    }
+
+    private final int depth;
+    private final Map<String, PackageCost> packages = new HashMap<>();
+    private long callGraphMs;
+
+    public ExclusionProfiler(int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth must be at least 1, got " + depth);
+        }
+        this.depth = depth;
+    }
+
+    /**
+     * Build the call graph, slice from the seeds and attribute everything to packages
+     * @param appJar
+     * @param analysis
+     * @param exclusions
+     * @param srcCallee callee whose return sites are the seeds, null for the taint sources in catalog
+     * @param catalog
+     * @return packages, most expensive first
+     * @throws Exception
+     */
+    public List<PackageCost> profile(String appJar, String analysis, File exclusions, String srcCallee,
+                                     SourceCatalog catalog) throws Exception {
+        SlicingSession session = new SlicingSession(appJar, analysis, srcCallee != null
+                ? SlicingSession.Criteria.callee(srcCallee) : SlicingSession.Criteria.sources(catalog));
+        session.setExclusions(exclusions);
+        session.setSliceMode("multi-seed");
+        ClassHierarchy cha = session.getClassHierarchy();
+
+        CallGraph cg = session.getCallGraph();
+        PointerAnalysis<InstanceKey> pa = session.getPointerAnalysis();
+        for (RunMetrics.Phase phase : session.getMetrics().getPhases()) {
+            if (phase.getName().equals("call-graph")) {
+                callGraphMs = phase.getWallMs();
+            }
+        }
+        System.out.println("Call graph of " + cg.getNumberOfNodes() + " nodes in " + callGraphMs + " ms");
+
+        for (CGNode n : cg) {
+            if (n.getMethod() instanceof AbstractRootMethod) {
+                // WALA's synthetic roots, not part of any package
+                continue;
+            }
+            packageOf(n.getMethod().getDeclaringClass()).nodes++;
+        }
+        long totalFacts = 0;
+        for (PointerKey key : pa.getPointerKeys()) {
+            PackageCost cost = packageOf(key);
+            if (cost == null) {
+                continue;
+            }
+            long facts = pa.getPointsToSet(key).size();
+            cost.pointerKeys++;
+            cost.facts += facts;
+            totalFacts += facts;
+        }
+        for (PackageCost cost : packages.values()) {
+            cost.estimatedMs = totalFacts == 0 ? 0 : callGraphMs * cost.facts / totalFacts;
+        }
+
+        // excluding the classes that declare the criteria would lose the seeds
+        Set<MethodReference> criteria = srcCallee != null
+                ? Collections.singleton(StringStuff.makeMethodReference(srcCallee)) : catalog.match(cha);
+        for (MethodReference m : criteria) {
+            IClass klass = cha.lookupClass(m.getDeclaringClass());
+            if (klass != null) {
+                packageOf(klass).criteria = true;
+            }
+        }
+        System.out.println("Slicing from " + session.getSeeds().size() + " seeds");
+        SliceSet slice = session.slice().getSliceSet();
+        for (Statement s : slice.getStatements()) {
+            if (s.getNode().getMethod() instanceof AbstractRootMethod) {
+                continue;
+            }
+            packageOf(s.getNode().getMethod().getDeclaringClass()).sliceStatements++;
+        }
+
+        List<PackageCost> ranked = new ArrayList<>(packages.values());
+        Collections.sort(ranked, new Comparator<PackageCost>() {
+            @Override
+            public int compare(PackageCost a, PackageCost b) {
+                if (a.estimatedMs != b.estimatedMs) {
+                    return Long.compare(b.estimatedMs, a.estimatedMs);
+                }
+                if (a.nodes != b.nodes) {
+                    return Long.compare(b.nodes, a.nodes);
+                }
+                return a.prefix.compareTo(b.prefix);
+            }
+        });
+        return ranked;
+    }
+
+    public long getCallGraphMs() {
+        return callGraphMs;
+    }
+
+    // package a pointer key's cost belongs to, null for keys not tied to a class
+    private PackageCost packageOf(PointerKey key) {
+        if (key instanceof AbstractLocalPointerKey) {
+            CGNode node = ((AbstractLocalPointerKey) key).getNode();
+            return node.getMethod() instanceof AbstractRootMethod ? null : packageOf(node.getMethod().getDeclaringClass());
+        }
+        if (key instanceof AbstractFieldPointerKey) {
+            return packageOf(((AbstractFieldPointerKey) key).getInstanceKey().getConcreteType());
+        }
+        if (key instanceof StaticFieldKey) {
+            return packageOf(((StaticFieldKey) key).getField().getDeclaringClass());
+        }
+        return null;
+    }
+
+    private PackageCost packageOf(IClass klass) {
+        TypeReference type = klass.getReference();
+        while (type.isArrayType()) {
+            type = type.getArrayElementType();
+        }
+        String prefix;
+        if (type.isPrimitiveType()) {
+            prefix = "(primitive arrays)";
+        } else {
+            String name = type.getName().getPackage() == null ? "" : type.getName().getPackage().toString();
+            prefix = name.isEmpty() ? "(default package)" : truncate(name);
+        }
+        PackageCost cost = packages.get(prefix);
+        if (cost == null) {
+            // shorter packages than --depth are counted on their own, their subpackages elsewhere
+            cost = new PackageCost(prefix, prefix.split("/").length >= depth);
+            packages.put(prefix, cost);
+        }
+        if (klass.getClassLoader().getReference().equals(ClassLoaderReference.Application)) {
+            cost.application = true;
+        }
+        return cost;
+    }
+
+    // first depth segments of a package name
+    private String truncate(String name) {
+        int end = -1;
+        for (int i = 0; i < depth; i++) {
+            end = name.indexOf('/', end + 1);
+            if (end < 0) {
+                return name;
+            }
+        }
+        return name.substring(0, end);
+    }
+
+    /**
+     * Write the current exclusions followed by the suggested ones, most expensive first
+     * @param ranked
+     * @param exclusions current exclusions file
+     * @param output
+     * @return number of suggested exclusions
+     * @throws IOException
+     */
+    public static int writeSuggestions(List<PackageCost> ranked, File exclusions, File output) throws IOException {
+        int suggested = 0;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(exclusions), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                out.println(line);
+            }
+            out.println("# suggested by ExclusionProfiler, most expensive first:");
+            out.println("# call graph nodes, pointer keys, estimated solver ms, slice statements");
+            for (PackageCost cost : ranked) {
+                if (!cost.isExcludable()) {
+                    continue;
+                }
+                out.println("# " + cost.getPrefix() + ": " + cost.getNodes() + " nodes, " + cost.getPointerKeys()
+                        + " pointer keys, ~" + cost.getEstimatedMs() + " ms, 0 slice statements");
+                out.println(cost.toExclusion());
+                suggested++;
+            }
+        }
+        return suggested;
+    }
+
+    /**
+     * Help message
+     */
+    public static void help() {
+        System.out.println(
+                "Usage:java -cp slicer.jar slicing.ExclusionProfiler <target-jar-path> <analysis> [--callee=SIG] [--sources=FILE]\n" +
+                "    [--depth=N] [--exclusions=FILE] [--output=FILE]\n" +
+                "Analysis must be one of: 0cfa, vanilla-1cfa, container-1cfa\n" +
+                "Optional flags:\n" +
+                "  --callee=SIG  slice from the return sites of calls to SIG (default: calls to taint sources)\n" +
+                "  --sources=FILE  taint source catalog when no callee is given (default: bundled sources.txt)\n" +
+                "  --depth=N  package segments to group by, e.g. 2 groups java/util/zip under java/util (default: 2)\n" +
+                "  --exclusions=FILE  exclusions to profile with, e.g. a previous suggestion (default: bundled exclusions.txt)\n" +
+                "  --output=FILE  write the current exclusions plus the suggested ones (default: suggested-exclusions.txt)\n"
+        );
+    }
+
+    /**
+     * Profile a jar and suggest exclusions
+     * @param args
+     */
+    public static void main(String[] args) {
+        DriverOptions driverOptions = DriverOptions.parse(args);
+        if (driverOptions.getPositional().size() != 2 || driverOptions.has("help")) {
+            help();
+            System.exit(1);
+        }
+        String appJar = driverOptions.getPositional().get(0);
+        String analysis = driverOptions.getPositional().get(1);
+        File output = new File(driverOptions.getString("output", "suggested-exclusions.txt"));
+
+        try {
+            SourceCatalog catalog = driverOptions.has("sources")
+                    ? SourceCatalog.load(new File(driverOptions.getString("sources", null)))
+                    : SourceCatalog.defaultCatalog();
+            File exclusions = driverOptions.has("exclusions")
+                    ? new File(driverOptions.getString("exclusions", null)) : SimpleSlicer.getExclusionsFile();
+            ExclusionProfiler profiler = new ExclusionProfiler(driverOptions.getInt("depth", 2));
+            List<PackageCost> ranked = profiler.profile(appJar, analysis, exclusions,
+                    driverOptions.getString("callee", null), catalog);
+
+            System.out.println(String.format("%-40s %8s %10s %12s %8s %8s  %s",
+                    "package", "nodes", "ptr-keys", "pts-facts", "~ms", "slice", "verdict"));
+            for (PackageCost cost : ranked) {
+                String verdict = cost.isApplication() ? "application"
+                        : cost.hasCriteria() ? "criteria" : cost.isExcludable() ? "exclude" : "keep";
+                System.out.println(String.format("%-40s %8d %10d %12d %8d %8d  %s",
+                        cost.getPrefix(), cost.getNodes(), cost.getPointerKeys(), cost.getFacts(),
+                        cost.getEstimatedMs(), cost.getSliceStatements(), verdict));
+            }
+            int suggested = writeSuggestions(ranked, exclusions, output);
+            System.out.println("Suggested " + suggested + " exclusions in " + output);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
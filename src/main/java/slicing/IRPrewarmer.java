@@ -0,0 +1,149 @@
+package slicing;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.AnalysisCache;
+import com.ibm.wala.ipa.callgraph.Context;
+import com.ibm.wala.ipa.callgraph.impl.Everywhere;
+import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.ssa.DefaultIRFactory;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.IRFactory;
+import com.ibm.wala.ssa.SSAOptions;
+import com.ibm.wala.types.ClassLoaderReference;
+
+import java.lang.ref.SoftReference;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the SSA IR of all application methods in parallel, ahead of call graph
+ * construction.
+ *
+ * WALA's SSACache builds IR inside a synchronized method, so the only way to
+ * build it concurrently is outside the cache. The prewarmer is the IR factory of
+ * the AnalysisCache it makes. Worker threads build IR with the default factory
+ * and park it here. When the call graph builder first asks the cache for a
+ * method, the cache misses, calls this factory and gets the parked IR back at
+ * once. From then on the cache holds the IR itself. The call site search and
+ * SDG construction later read the same cache.
+ *
+ * Parked IR is only softly reachable, so under memory pressure the collector
+ * may drop it and the method is built again on demand, as without prewarming.
+ * DefUse cannot be handed to the cache from outside. The cache builds it from
+ * the parked IR on first use, which is cheap next to building the IR.
+ */
+public class IRPrewarmer implements IRFactory<IMethod> {
+
+    private final IRFactory<IMethod> delegate;
+    private final ConcurrentHashMap<IMethod, SoftReference<IR>> parked = new ConcurrentHashMap<>();
+    private volatile SSAOptions prewarmedOptions;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger evicted = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    public IRPrewarmer() {
+        this(new DefaultIRFactory());
+    }
+
+    public IRPrewarmer(IRFactory<IMethod> delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Analysis cache that takes its IR from this prewarmer
+     * @return
+     */
+    public AnalysisCache makeCache() {
+        return new AnalysisCache(this);
+    }
+
+    /**
+     * Build the IR of every concrete application method on a bounded pool of workers
+     * @param cha
+     * @param options the SSA options the call graph builder will ask for
+     * @param workers
+     * @return number of methods whose IR was built
+     * @throws InterruptedException
+     */
+    public int prewarm(IClassHierarchy cha, final SSAOptions options, int workers) throws InterruptedException {
+        if (workers < 1) {
+            throw new IllegalArgumentException("need at least one worker, got " + workers);
+        }
+        prewarmedOptions = options;
+        final AtomicInteger built = new AtomicInteger();
+        // a short queue, once it is full the submitting thread builds IR itself
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(workers * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            for (IClass c : cha) {
+                if (!c.getClassLoader().getReference().equals(ClassLoaderReference.Application)) {
+                    continue;
+                }
+                for (final IMethod m : c.getDeclaredMethods()) {
+                    if (m.isAbstract() || m.isNative() || !delegate.contextIsIrrelevant(m)) {
+                        continue;
+                    }
+                    pool.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                IR ir = delegate.makeIR(m, Everywhere.EVERYWHERE, options);
+                                if (ir != null) {
+                                    parked.put(m, new SoftReference<>(ir));
+                                    built.incrementAndGet();
+                                }
+                            } catch (Throwable e) {
+                                // left to the call graph builder, which reports it as usual
+                                failed.incrementAndGet();
+                            }
+                        }
+                    });
+                }
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        return built.get();
+    }
+
+    @Override
+    public IR makeIR(IMethod method, Context context, SSAOptions options) {
+        SoftReference<IR> ref = options == prewarmedOptions ? parked.remove(method) : null;
+        if (ref != null) {
+            IR ir = ref.get();
+            if (ir != null) {
+                hits.incrementAndGet();
+                return ir;
+            }
+            evicted.incrementAndGet();
+        }
+        return delegate.makeIR(method, context, options);
+    }
+
+    @Override
+    public boolean contextIsIrrelevant(IMethod method) {
+        return delegate.contextIsIrrelevant(method);
+    }
+
+    // parked IR the cache asked for
+    public int getHits() {
+        return hits.get();
+    }
+
+    // parked IR the collector dropped before the cache asked for it
+    public int getEvicted() {
+        return evicted.get();
+    }
+
+    // methods whose IR could not be built ahead of time
+    public int getFailed() {
+        return failed.get();
+    }
+
+    // parked IR nobody has asked for yet, typically methods the call graph never reached
+    public int getUnused() {
+        return parked.size();
+    }
+}
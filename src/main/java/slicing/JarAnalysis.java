@@ -0,0 +1,252 @@
+package slicing;
+
+import com.ibm.wala.ipa.callgraph.*;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.ipa.slicer.NormalStatement;
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.ssa.SSAInstruction;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.strings.StringStuff;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Everything WALA computes for one jar + analysis before slicing starts: scope,
+ * class hierarchy, call graph and pointer analysis. Holding on to an instance lets
+ * repeated queries skip straight to slicing.
+ *
+ * The seed finders mirror the three drivers: a single caller/callee pair
+ * (SimpleSlicer), all callers of a callee (SimpleSlicerUsingCallee) and callers
+ * of taint sources (SliceFromSources).
+ */
+public class JarAnalysis {
+
+    private final String appJar;
+    private final String analysis;
+    private final AnalysisScope scope;
+    private final ClassHierarchy cha;
+    private final AnalysisOptions options;
+    private final AnalysisCache cache;
+    private final CallGraph cg;
+    private final PointerAnalysis pa;
+    private final CallIndex index;
+    // why the call graph is partial, null if it is complete
+    private String truncation;
+    // SDGs are built lazily by WALA, so keeping the slicer keeps the PDGs it has already built
+    private final Map<String, MultiSeedSlicer> slicers = new HashMap<>();
+    // reachability indexes by slice kind, each built on first use
+    private final Map<String, ReachabilityIndex> indexes = new HashMap<>();
+
+    private JarAnalysis(String appJar, String analysis, AnalysisScope scope, ClassHierarchy cha,
+                        AnalysisOptions options, AnalysisCache cache, CallGraph cg, PointerAnalysis pa) {
+        this.appJar = appJar;
+        this.analysis = analysis;
+        this.scope = scope;
+        this.cha = cha;
+        this.options = options;
+        this.cache = cache;
+        this.cg = cg;
+        this.pa = pa;
+        this.index = new CallIndex(cg);
+    }
+
+    /**
+     * Run the WALA pipeline for a jar with a given analysis
+     * @param appJar
+     * @param analysis
+     * @param exclusions
+     * @return
+     * @throws IOException
+     * @throws ClassHierarchyException
+     * @throws CancelException
+     */
+    public static JarAnalysis build(String appJar, String analysis, File exclusions)
+            throws IOException, ClassHierarchyException, CancelException {
+        return build(appJar, analysis, exclusions, null);
+    }
+
+    /**
+     * Run the WALA pipeline, reading JDK classes from a primordial snapshot
+     * @param appJar
+     * @param analysis
+     * @param exclusions
+     * @param snapshot null to read the JDK as configured in the scope
+     * @return
+     * @throws IOException
+     * @throws ClassHierarchyException
+     * @throws CancelException
+     */
+    public static JarAnalysis build(String appJar, String analysis, File exclusions, PrimordialSnapshot snapshot)
+            throws IOException, ClassHierarchyException, CancelException {
+        return build(appJar, analysis, exclusions, snapshot, Budget.unlimited());
+    }
+
+    /**
+     * Run the WALA pipeline, keeping a partial call graph if the budget runs out
+     * @param appJar
+     * @param analysis
+     * @param exclusions
+     * @param snapshot null to read the JDK as configured in the scope
+     * @param budget
+     * @return
+     * @throws IOException
+     * @throws ClassHierarchyException
+     * @throws CancelException
+     */
+    public static JarAnalysis build(String appJar, String analysis, File exclusions, PrimordialSnapshot snapshot,
+                                    Budget budget)
+            throws IOException, ClassHierarchyException, CancelException {
+        AnalysisScope scope = snapshot != null
+                ? snapshot.makeScope(appJar, exclusions)
+                : AnalysisScopeReader.makeJavaBinaryAnalysisScope(appJar, exclusions);
+
+        // create class hierarchy, wala needs to know the lay of the land
+        ClassHierarchy cha = ClassHierarchy.make(scope);
+        Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha);
+        AnalysisOptions options = new AnalysisOptions(scope, entrypoints);
+
+        AnalysisCache cache = new AnalysisCache();
+        CallGraphBuilder builder = SimpleSlicer.makeCallGraphBuilder(analysis, options, cache, cha, scope);
+        Budget.Monitor monitor = budget.startCallGraph();
+        CallGraph cg = Budget.makeCallGraph(builder, options, monitor);
+        PointerAnalysis pa = builder.getPointerAnalysis();
+
+        JarAnalysis result = new JarAnalysis(appJar, analysis, scope, cha, options, cache, cg, pa);
+        result.truncation = monitor.getTruncation();
+        return result;
+    }
+
+    public String getAppJar() {
+        return appJar;
+    }
+
+    public String getAnalysis() {
+        return analysis;
+    }
+
+    public AnalysisScope getScope() {
+        return scope;
+    }
+
+    public ClassHierarchy getClassHierarchy() {
+        return cha;
+    }
+
+    public AnalysisOptions getOptions() {
+        return options;
+    }
+
+    public AnalysisCache getCache() {
+        return cache;
+    }
+
+    public CallGraph getCallGraph() {
+        return cg;
+    }
+
+    public PointerAnalysis getPointerAnalysis() {
+        return pa;
+    }
+
+    public CallIndex getCallIndex() {
+        return index;
+    }
+
+    // why the call graph is partial, null if it is complete
+    public String getTruncation() {
+        return truncation;
+    }
+
+    /**
+     * Slicer sharing one SDG per combination of dependence options
+     * @param dataOptions
+     * @param controlOptions
+     * @return
+     */
+    public MultiSeedSlicer getSlicer(DataDependenceOptions dataOptions, ControlDependenceOptions controlOptions) {
+        String key = dataOptions + "/" + controlOptions;
+        MultiSeedSlicer slicer = slicers.get(key);
+        if (slicer == null) {
+            slicer = new MultiSeedSlicer(cg, pa, dataOptions, controlOptions);
+            slicers.put(key, slicer);
+        }
+        return slicer;
+    }
+
+    /**
+     * Reachability index over the whole dependence graph, built once per slice kind
+     * @param sliceKind full for the FULL/FULL SDG, thin for the thin dependence graph
+     * @return
+     */
+    public ReachabilityIndex getReachabilityIndex(String sliceKind) {
+        ReachabilityIndex reachability = indexes.get(sliceKind);
+        if (reachability == null) {
+            switch (sliceKind) {
+                case "full":
+                    reachability = ReachabilityIndex.build(
+                            getSlicer(DataDependenceOptions.FULL, ControlDependenceOptions.FULL).getSDG());
+                    break;
+                case "thin":
+                    reachability = ReachabilityIndex.build(new ThinForwardSlicer(cg, pa,
+                            DataDependenceOptions.NO_BASE_NO_HEAP, ControlDependenceOptions.NONE).getGraph());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown slice kind " + sliceKind);
+            }
+            indexes.put(sliceKind, reachability);
+        }
+        return reachability;
+    }
+
+    // return site of the first call to srcCallee in srcCaller
+    public List<Statement> findCallerSeeds(String srcCaller, String srcCallee) {
+        MethodReference srcCallerRef = StringStuff.makeMethodReference(srcCaller);
+        MethodReference srcCalleeRef = StringStuff.makeMethodReference(srcCallee);
+        return Collections.singletonList(SimpleSlicer.findReturnSite(index, srcCallerRef, srcCalleeRef));
+    }
+
+    // return sites of all calls to srcCallee
+    public List<Statement> findCalleeSeeds(String srcCallee) {
+        return SimpleSlicerUsingCallee.findReturnSites(index, StringStuff.makeMethodReference(srcCallee));
+    }
+
+    // return sites of all application calls to taint sources in the bundled catalog
+    public List<Statement> findSourceSeeds() throws IOException {
+        return findSourceSeeds(SourceCatalog.defaultCatalog());
+    }
+
+    // return sites of all application calls to taint sources in a catalog
+    public List<Statement> findSourceSeeds(SourceCatalog catalog) {
+        return SliceFromSources.findReturnSites(index, catalog.match(cha));
+    }
+
+    /**
+     * Statements of a method in every context, or of one of its instructions
+     * @param target method signature, optionally followed by @ and an instruction index
+     * @return
+     */
+    public List<Statement> findMethodStatements(String target) {
+        int at = target.lastIndexOf('@');
+        int instruction = at < 0 ? -1 : Integer.parseInt(target.substring(at + 1));
+        MethodReference method = StringStuff.makeMethodReference(at < 0 ? target : target.substring(0, at));
+        List<Statement> statements = new ArrayList<>();
+        for (CGNode node : index.getNodes(method)) {
+            SSAInstruction[] instructions = node.getIR() == null ? new SSAInstruction[0] : node.getIR().getInstructions();
+            for (int i = 0; i < instructions.length; i++) {
+                if (instructions[i] != null && (instruction < 0 || instruction == i)) {
+                    statements.add(new NormalStatement(node, i));
+                }
+            }
+        }
+        return statements;
+    }
+}
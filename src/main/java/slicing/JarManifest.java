@@ -0,0 +1,251 @@
+package slicing;
+
+import com.ibm.wala.shrikeBT.Decoder;
+import com.ibm.wala.shrikeBT.ExceptionHandler;
+import com.ibm.wala.shrikeBT.IInstruction;
+import com.ibm.wala.shrikeBT.IInvokeInstruction;
+import com.ibm.wala.shrikeBT.shrikeCT.CTDecoder;
+import com.ibm.wala.shrikeCT.ClassReader;
+import com.ibm.wala.shrikeCT.CodeReader;
+import com.ibm.wala.shrikeCT.InvalidClassFileException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Bytecode fingerprint of every class and method in a jar, used to tell which
+ * parts of an application changed between two builds.
+ *
+ * A class hash covers what the class hierarchy sees: access flags, superclass,
+ * interfaces, fields and the set of declared methods. A method hash covers its
+ * access flags, decoded instructions and exception handlers. Instructions are
+ * hashed after decoding, with constant pool references resolved, so that changes
+ * elsewhere in a class (which renumber its constant pool) do not make every method
+ * look changed.
+ *
+ * A manifest read from a jar also knows which methods each method calls (by name
+ * and descriptor, e.g. bye(Ljava/lang/String;)Ljava/lang/String;) and which
+ * classes declare a main method. These are not written out, they are only needed
+ * for the newer side of a diff.
+ *
+ * Names use WALA's signature format (pkg.Cls and pkg.Cls.m(desc)ret), so they can
+ * be compared with IMethod.getSignature() and the call graph methods in SliceCache.
+ */
+public class JarManifest {
+
+    public static final String MAIN_SELECTOR = "main([Ljava/lang/String;)V";
+
+    private final Map<String, String> classes;
+    private final Map<String, String> methods;
+    // selectors called by each method, empty for a loaded manifest
+    private final Map<String, Set<String>> calls;
+
+    /**
+     * Tells whether a call, given by the selector it names, may be one the slicing
+     * criteria look for
+     */
+    public interface CallMatcher {
+        boolean matches(String selector);
+    }
+
+    private JarManifest(Map<String, String> classes, Map<String, String> methods, Map<String, Set<String>> calls) {
+        this.classes = classes;
+        this.methods = methods;
+        this.calls = calls;
+    }
+
+    /**
+     * Fingerprint the classes in a jar
+     * @param jar
+     * @return
+     * @throws IOException
+     */
+    public static JarManifest read(File jar) throws IOException {
+        Map<String, String> classes = new TreeMap<>();
+        Map<String, String> methods = new TreeMap<>();
+        Map<String, Set<String>> calls = new HashMap<>();
+        try (JarFile file = new JarFile(jar)) {
+            for (Enumeration<JarEntry> entries = file.entries(); entries.hasMoreElements(); ) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.getName().endsWith(".class")) {
+                    continue;
+                }
+                try (InputStream in = file.getInputStream(entry)) {
+                    addClass(readFully(in), classes, methods, calls);
+                } catch (InvalidClassFileException | Decoder.InvalidBytecodeException e) {
+                    throw new IOException("could not read " + entry.getName() + " in " + jar, e);
+                }
+            }
+        }
+        return new JarManifest(classes, methods, calls);
+    }
+
+    private static void addClass(byte[] bytes, Map<String, String> classes, Map<String, String> methods,
+                                 Map<String, Set<String>> calls)
+            throws InvalidClassFileException, Decoder.InvalidBytecodeException {
+        ClassReader reader = new ClassReader(bytes);
+        String className = reader.getName().replace('/', '.');
+
+        StringBuilder shape = new StringBuilder();
+        shape.append(reader.getAccessFlags()).append('\n');
+        shape.append(reader.getSuperName()).append('\n');
+        for (String i : reader.getInterfaceNames()) {
+            shape.append("implements ").append(i).append('\n');
+        }
+        for (int f = 0; f < reader.getFieldCount(); f++) {
+            shape.append("field ").append(reader.getFieldAccessFlags(f)).append(' ')
+                    .append(reader.getFieldName(f)).append(' ').append(reader.getFieldType(f)).append('\n');
+        }
+
+        ClassReader.AttrIterator attrs = new ClassReader.AttrIterator();
+        for (int m = 0; m < reader.getMethodCount(); m++) {
+            String signature = className + "." + reader.getMethodName(m) + reader.getMethodType(m);
+            shape.append("method ").append(signature).append('\n');
+
+            StringBuilder body = new StringBuilder();
+            body.append(reader.getMethodAccessFlags(m)).append('\n');
+            Set<String> called = new HashSet<>();
+            reader.initMethodAttributeIterator(m, attrs);
+            for (; attrs.isValid(); attrs.advance()) {
+                if (!attrs.getName().equals("Code")) {
+                    continue;
+                }
+                Decoder decoder = new CTDecoder(new CodeReader(attrs));
+                decoder.decode();
+                IInstruction[] instructions = decoder.getInstructions();
+                ExceptionHandler[][] handlers = decoder.getHandlers();
+                for (int i = 0; i < instructions.length; i++) {
+                    if (instructions[i] instanceof IInvokeInstruction) {
+                        IInvokeInstruction invoke = (IInvokeInstruction) instructions[i];
+                        called.add(invoke.getMethodName() + invoke.getMethodSignature());
+                    }
+                    body.append(instructions[i]);
+                    for (ExceptionHandler h : handlers[i]) {
+                        body.append(" catch ").append(h.getCatchClass()).append(" -> ").append(h.getHandler());
+                    }
+                    body.append('\n');
+                }
+            }
+            methods.put(signature, hash(body.toString()));
+            calls.put(signature, called);
+        }
+        classes.put(className, hash(shape.toString()));
+    }
+
+    /**
+     * Load a manifest written by write
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static JarManifest load(File file) throws IOException {
+        Map<String, String> classes = new TreeMap<>();
+        Map<String, String> methods = new TreeMap<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts.length != 3) {
+                    throw new IOException("malformed manifest line: " + line);
+                }
+                (parts[0].equals("class") ? classes : methods).put(parts[1], parts[2]);
+            }
+        }
+        return new JarManifest(classes, methods, Collections.<String, Set<String>>emptyMap());
+    }
+
+    /**
+     * Write the manifest, one tab separated line per class and method
+     * @param file
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)))) {
+            for (Map.Entry<String, String> e : classes.entrySet()) {
+                out.println("class\t" + e.getKey() + "\t" + e.getValue());
+            }
+            for (Map.Entry<String, String> e : methods.entrySet()) {
+                out.println("method\t" + e.getKey() + "\t" + e.getValue());
+            }
+        }
+    }
+
+    // classes added, removed or with a different shape in other
+    public Set<String> changedClasses(JarManifest other) {
+        return changed(classes, other.classes);
+    }
+
+    // methods added, removed or with different bytecode in other
+    public Set<String> changedMethods(JarManifest other) {
+        return changed(methods, other.methods);
+    }
+
+    // classes in other that are not in this manifest
+    public Set<String> addedClasses(JarManifest other) {
+        Set<String> result = new TreeSet<>(other.classes.keySet());
+        result.removeAll(classes.keySet());
+        return result;
+    }
+
+    // whether a class declares main, which makes it an entrypoint
+    public boolean declaresMain(String className) {
+        return methods.containsKey(className + "." + MAIN_SELECTOR);
+    }
+
+    // whether a method has a call the matcher accepts, false for methods of a loaded manifest
+    public boolean calls(String method, CallMatcher matcher) {
+        Set<String> called = calls.get(method);
+        if (called != null) {
+            for (String selector : called) {
+                if (matcher.matches(selector)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> changed(Map<String, String> before, Map<String, String> after) {
+        Set<String> result = new TreeSet<>();
+        for (Map.Entry<String, String> e : before.entrySet()) {
+            if (!e.getValue().equals(after.get(e.getKey()))) {
+                result.add(e.getKey());
+            }
+        }
+        for (String name : after.keySet()) {
+            if (!before.containsKey(name)) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] data = new byte[8192];
+        int read;
+        while ((read = in.read(data)) != -1) {
+            out.write(data, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static String hash(String s) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b & 0xff));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
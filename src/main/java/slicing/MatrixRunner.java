@@ -0,0 +1,336 @@
+package slicing;
+
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.util.strings.StringStuff;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Runs the same slicing criteria over a matrix of analyses, data dependence
+ * options and control dependence options, and reports which configurations are
+ * Pareto-optimal in time, memory and slice size.
+ *
+ * For each jar and analysis the call graph is built once. Every combination of
+ * dependence options then gets its own SDG and a multi-seed slice. A
+ * configuration costs the analysis time plus its slice time. Its memory is the
+ * larger of the two phases' peak heap. The heap is collected before each phase so
+ * that peaks are comparable. Slice size is the number of distinct statements.
+ *
+ * A configuration is Pareto-optimal if no other configuration for the same jar is
+ * at least as good in all three and better in one. Smaller slices count as better
+ * here, but dropping dependences also makes a slice less sound, so the frontier
+ * shows what each option buys rather than a single winner. Configurations cut
+ * short by a budget are reported but not ranked.
+ *
+ * A SlicingSession slices with one set of dependence options over a call graph
+ * of its own, so the matrix slices on a JarAnalysis to share one call graph among
+ * all combinations.
+ */
+public class MatrixRunner {
+
+    private static final List<String> ANALYSES = Arrays.asList("0cfa", "vanilla-1cfa", "container-1cfa");
+    private static final List<DataDependenceOptions> DEFAULT_DATA = Arrays.asList(
+            DataDependenceOptions.FULL,
+            DataDependenceOptions.NO_BASE_PTRS,
+            DataDependenceOptions.NO_HEAP,
+            DataDependenceOptions.NO_BASE_NO_HEAP,
+            DataDependenceOptions.NO_HEAP_NO_EXCEPTIONS);
+    private static final List<ControlDependenceOptions> DEFAULT_CONTROL = Arrays.asList(
+            ControlDependenceOptions.FULL,
+            ControlDependenceOptions.NO_EXCEPTIONAL_EDGES,
+            ControlDependenceOptions.NONE);
+
+    /**
+     * Measurements for one jar, analysis and pair of dependence options
+     */
+    public static class Configuration {
+        private final String jar;
+        private final String analysis;
+        private final DataDependenceOptions dataOptions;
+        private final ControlDependenceOptions controlOptions;
+        private final RunMetrics.Phase analysisPhase;
+        private final RunMetrics metrics;
+        private int sliceStatements;
+        private boolean pareto;
+
+        Configuration(String jar, String analysis, DataDependenceOptions dataOptions,
+                      ControlDependenceOptions controlOptions, RunMetrics.Phase analysisPhase) {
+            this.jar = jar;
+            this.analysis = analysis;
+            this.dataOptions = dataOptions;
+            this.controlOptions = controlOptions;
+            this.analysisPhase = analysisPhase;
+            this.metrics = new RunMetrics("MatrixRunner");
+            metrics.setAttribute("jar", jar);
+            metrics.setAttribute("analysis", analysis);
+            metrics.setAttribute("data-deps", dataOptions);
+            metrics.setAttribute("control-deps", controlOptions);
+        }
+
+        public String getJar() {
+            return jar;
+        }
+
+        public String getAnalysis() {
+            return analysis;
+        }
+
+        public DataDependenceOptions getDataOptions() {
+            return dataOptions;
+        }
+
+        public ControlDependenceOptions getControlOptions() {
+            return controlOptions;
+        }
+
+        public RunMetrics getMetrics() {
+            return metrics;
+        }
+
+        // analysis time plus slice time
+        public long getTotalMs() {
+            return analysisPhase.getWallMs() + metrics.getTotalMs();
+        }
+
+        public long getPeakHeapBytes() {
+            long peak = analysisPhase.getPeakHeapBytes();
+            for (RunMetrics.Phase phase : metrics.getPhases()) {
+                peak = Math.max(peak, phase.getPeakHeapBytes());
+            }
+            return peak;
+        }
+
+        public int getSliceStatements() {
+            return sliceStatements;
+        }
+
+        public boolean isTruncated() {
+            return metrics.isTruncated() || analysisPhase.getTruncation() != null;
+        }
+
+        public boolean isPareto() {
+            return pareto;
+        }
+
+        // at least as good in time, memory and size, and better in one
+        boolean dominates(Configuration other) {
+            boolean noWorse = getTotalMs() <= other.getTotalMs()
+                    && getPeakHeapBytes() <= other.getPeakHeapBytes()
+                    && sliceStatements <= other.sliceStatements;
+            boolean better = getTotalMs() < other.getTotalMs()
+                    || getPeakHeapBytes() < other.getPeakHeapBytes()
+                    || sliceStatements < other.sliceStatements;
+            return noWorse && better;
+        }
+
+        @Override
+        public String toString() {
+            return analysis + " " + dataOptions + " " + controlOptions;
+        }
+    }
+
+    private final File exclusions;
+    private final PrimordialSnapshot snapshot;
+    private final Budget budget;
+
+    /**
+     * @param exclusions
+     * @param snapshot JDK snapshot, null for none
+     * @param budget limits for each call graph and each configuration's slice
+     */
+    public MatrixRunner(File exclusions, PrimordialSnapshot snapshot, Budget budget) {
+        this.exclusions = exclusions;
+        this.snapshot = snapshot;
+        this.budget = budget;
+    }
+
+    /**
+     * Run every configuration for one jar and mark the Pareto-optimal ones
+     * @param appJar
+     * @param srcCallee callee whose return sites are the seeds, null for the taint sources in catalog
+     * @param catalog
+     * @param analyses
+     * @param dataOptions
+     * @param controlOptions
+     * @return configurations in run order
+     * @throws Exception
+     */
+    public List<Configuration> run(String appJar, String srcCallee, SourceCatalog catalog, List<String> analyses,
+                                   List<DataDependenceOptions> dataOptions,
+                                   List<ControlDependenceOptions> controlOptions) throws Exception {
+        List<Configuration> configurations = new ArrayList<>();
+        for (String analysis : analyses) {
+            System.err.println("Analyzing " + appJar + " with " + analysis);
+            RunMetrics analysisMetrics = new RunMetrics("MatrixRunner");
+            System.gc();
+            analysisMetrics.begin("analysis");
+            JarAnalysis jar = JarAnalysis.build(appJar, analysis, exclusions, snapshot, budget);
+            if (jar.getTruncation() != null) {
+                analysisMetrics.markTruncated(jar.getTruncation());
+            }
+            RunMetrics.Phase analysisPhase = analysisMetrics.end();
+            List<Statement> seeds = srcCallee != null
+                    ? SimpleSlicerUsingCallee.findReturnSites(jar.getCallIndex(), StringStuff.makeMethodReference(srcCallee))
+                    : SliceFromSources.findReturnSites(jar.getCallIndex(), catalog.match(jar.getClassHierarchy()));
+
+            for (DataDependenceOptions data : dataOptions) {
+                for (ControlDependenceOptions control : controlOptions) {
+                    Configuration c = new Configuration(appJar, analysis, data, control, analysisPhase);
+                    RunMetrics metrics = c.getMetrics();
+                    System.gc();
+                    metrics.begin("slice");
+                    // a fresh SDG per configuration, so earlier ones can be collected
+                    MultiSeedSlicer slicer = new MultiSeedSlicer(jar.getCallGraph(), jar.getPointerAnalysis(), data, control);
+                    Budget.Monitor sliceMonitor = budget.startSlice();
+                    SliceSet slices = slicer.computeForwardSlice(seeds, sliceMonitor.startSolve()).toSliceSet();
+                    metrics.recordBudget(sliceMonitor);
+                    metrics.end();
+                    c.sliceStatements = slices.size();
+                    metrics.count("seeds", seeds.size());
+                    metrics.count("sdg_statements", RunMetrics.countBuiltStatements(slicer.getSDG()));
+                    metrics.count("slice_statements", slices.size());
+                    metrics.setSliceSizes(slices.getSliceSizes());
+                    configurations.add(c);
+                    System.err.println(c + ": " + c.getTotalMs() + " ms, " + slices.size() + " statements"
+                            + (c.isTruncated() ? " (truncated)" : ""));
+                }
+            }
+        }
+        markPareto(configurations);
+        return configurations;
+    }
+
+    // configurations no other complete configuration dominates
+    static void markPareto(List<Configuration> configurations) {
+        for (Configuration c : configurations) {
+            if (c.isTruncated()) {
+                continue;
+            }
+            c.pareto = true;
+            for (Configuration other : configurations) {
+                if (other != c && !other.isTruncated() && other.dominates(c)) {
+                    c.pareto = false;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * All configurations as a JSON object, with the slice run report of each inline
+     * @param configurations
+     * @return
+     */
+    public static String toJson(List<Configuration> configurations) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"configurations\": [");
+        String sep = "";
+        for (Configuration c : configurations) {
+            json.append(sep).append("\n    {\"jar\": ").append(RunMetrics.quote(c.getJar()))
+                    .append(", \"analysis\": ").append(RunMetrics.quote(c.getAnalysis()))
+                    .append(", \"data_deps\": ").append(RunMetrics.quote(c.getDataOptions().name()))
+                    .append(", \"control_deps\": ").append(RunMetrics.quote(c.getControlOptions().name()))
+                    .append(", \"analysis_ms\": ").append(c.analysisPhase.getWallMs())
+                    .append(", \"total_ms\": ").append(c.getTotalMs())
+                    .append(", \"peak_heap_bytes\": ").append(c.getPeakHeapBytes())
+                    .append(", \"slice_statements\": ").append(c.getSliceStatements())
+                    .append(", \"truncated\": ").append(c.isTruncated())
+                    .append(", \"pareto\": ").append(c.isPareto())
+                    .append(", \"report\": ").append(c.getMetrics().toJson().trim().replace("\n", "\n    "))
+                    .append("}");
+            sep = ",";
+        }
+        json.append(configurations.isEmpty() ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    /**
+     * Help message
+     */
+    public static void help() {
+        System.out.println(
+                "Usage:java -cp slicer.jar slicing.MatrixRunner <target-jar-path>... [--callee=SIG] [--sources=FILE]\n" +
+                "    [--analyses=A,B] [--data=OPTION,...] [--control=OPTION,...] [--summary=FILE]\n" +
+                "Optional flags:\n" +
+                "  --callee=SIG  slice from the return sites of calls to SIG (default: calls to taint sources)\n" +
+                "  --sources=FILE  taint source catalog when no callee is given (default: bundled sources.txt)\n" +
+                "  --analyses=A,B  any of 0cfa, vanilla-1cfa, container-1cfa (default: all three)\n" +
+                "  --data=OPTION,...  WALA data dependence options\n" +
+                "      (default: FULL,NO_BASE_PTRS,NO_HEAP,NO_BASE_NO_HEAP,NO_HEAP_NO_EXCEPTIONS)\n" +
+                "  --control=OPTION,...  WALA control dependence options (default: FULL,NO_EXCEPTIONAL_EDGES,NONE)\n" +
+                "  --summary=FILE  write every configuration's measurements as JSON (default: matrix-summary.json)\n" +
+                "  --primordial-snapshot=DIR  read JDK classes from a snapshot in DIR, built on first use\n" +
+                "  --cg-time-budget=SECONDS, --slice-time-budget=SECONDS, --slice-statement-budget=N\n" +
+                "      cut configurations short instead of letting one stall the matrix, they are not ranked\n"
+        );
+    }
+
+    /**
+     * Run the matrix for each jar and print its Pareto-optimal configurations
+     * @param args
+     */
+    public static void main(String[] args) {
+        DriverOptions driverOptions = DriverOptions.parse(args);
+        if (driverOptions.getPositional().isEmpty() || driverOptions.has("help")) {
+            help();
+            System.exit(1);
+        }
+        List<String> analyses = driverOptions.has("analyses")
+                ? Arrays.asList(driverOptions.getString("analyses", null).split(",")) : ANALYSES;
+        for (String analysis : analyses) {
+            if (!ANALYSES.contains(analysis)) {
+                throw new IllegalArgumentException("Unknown analysis " + analysis);
+            }
+        }
+        List<DataDependenceOptions> dataOptions =
+                driverOptions.getEnumList("data", DataDependenceOptions.class, DEFAULT_DATA);
+        List<ControlDependenceOptions> controlOptions =
+                driverOptions.getEnumList("control", ControlDependenceOptions.class, DEFAULT_CONTROL);
+        File summary = new File(driverOptions.getString("summary", "matrix-summary.json"));
+
+        try {
+            SourceCatalog catalog = driverOptions.has("sources")
+                    ? SourceCatalog.load(new File(driverOptions.getString("sources", null)))
+                    : SourceCatalog.defaultCatalog();
+            PrimordialSnapshot snapshot = driverOptions.has("primordial-snapshot")
+                    ? new PrimordialSnapshot(new File(driverOptions.getString("primordial-snapshot", null))) : null;
+            if (snapshot != null) {
+                snapshot.setLog(System.err);
+            }
+            MatrixRunner runner = new MatrixRunner(SimpleSlicer.getExclusionsFile(), snapshot, Budget.fromOptions(driverOptions));
+
+            List<Configuration> all = new ArrayList<>();
+            for (String appJar : driverOptions.getPositional()) {
+                List<Configuration> configurations = runner.run(appJar, driverOptions.getString("callee", null),
+                        catalog, analyses, dataOptions, controlOptions);
+                all.addAll(configurations);
+
+                System.out.println("Pareto-optimal configurations for " + appJar + ":");
+                System.out.println(String.format("  %-16s %-32s %-22s %10s %12s %10s",
+                        "analysis", "data-deps", "control-deps", "ms", "peak-heap-mb", "slice"));
+                for (Configuration c : configurations) {
+                    if (c.isPareto()) {
+                        System.out.println(String.format("  %-16s %-32s %-22s %10d %12d %10d",
+                                c.getAnalysis(), c.getDataOptions().name(), c.getControlOptions().name(),
+                                c.getTotalMs(), c.getPeakHeapBytes() >> 20, c.getSliceStatements()));
+                    }
+                }
+            }
+            if (snapshot != null) {
+                snapshot.close();
+            }
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(summary), StandardCharsets.UTF_8)) {
+                out.write(toJson(all));
+            }
+            System.out.println("Ran " + all.size() + " configurations, summary in " + summary);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
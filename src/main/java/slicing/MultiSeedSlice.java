@@ -0,0 +1,95 @@
+package slicing;
+
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSet;
+
+import java.util.*;
+
+/**
+ * Result of a multi-seed forward slice: the union of all slices plus, for each
+ * statement, the indices (into the seed list) of the seeds that reach it.
+ */
+public class MultiSeedSlice {
+
+    private final List<Statement> seeds;
+    private final Map<Statement, IntSet> reachedBy;
+
+    public MultiSeedSlice(List<Statement> seeds, Map<Statement, IntSet> reachedBy) {
+        this.seeds = seeds;
+        this.reachedBy = reachedBy;
+    }
+
+    public List<Statement> getSeeds() {
+        return seeds;
+    }
+
+    // union of the slices of all seeds
+    public Collection<Statement> getStatements() {
+        return reachedBy.keySet();
+    }
+
+    public int size() {
+        return reachedBy.size();
+    }
+
+    // indices of seeds whose forward slice contains s, null if none
+    public IntSet getSeedsReaching(Statement s) {
+        return reachedBy.get(s);
+    }
+
+    /**
+     * Forward slice of a single seed
+     * @param seedIndex
+     * @return
+     */
+    public Collection<Statement> getSlice(int seedIndex) {
+        List<Statement> slice = new ArrayList<>();
+        for (Map.Entry<Statement, IntSet> entry : reachedBy.entrySet()) {
+            if (entry.getValue().contains(seedIndex)) {
+                slice.add(entry.getKey());
+            }
+        }
+        return slice;
+    }
+
+    /**
+     * Number of statements in each seed's slice, computed in one pass
+     * @return
+     */
+    public int[] getSliceSizes() {
+        int[] sizes = new int[seeds.size()];
+        for (IntSet indices : reachedBy.values()) {
+            for (IntIterator it = indices.intIterator(); it.hasNext(); ) {
+                sizes[it.next()]++;
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Same slices as a SliceSet
+     * @return
+     */
+    public SliceSet toSliceSet() {
+        SliceSet set = new SliceSet(seeds);
+        for (Map.Entry<Statement, IntSet> entry : reachedBy.entrySet()) {
+            Collection<Statement> single = Collections.singleton(entry.getKey());
+            for (IntIterator it = entry.getValue().intIterator(); it.hasNext(); ) {
+                set.add(it.next(), single);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Print the size of each seed's slice to stdout (up to limit # of seeds)
+     * @param limit
+     */
+    public void dumpSeedSummary(int limit) {
+        int[] sizes = getSliceSizes();
+        for (int i = 0; i < limit && i < seeds.size(); i++) {
+            System.out.println("Seed " + i + " reaches " + sizes[i] + " statements: " + seeds.get(i));
+        }
+    }
+}
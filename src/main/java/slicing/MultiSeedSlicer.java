@@ -0,0 +1,171 @@
+package slicing;
+
+import com.ibm.wala.dataflow.IFDS.PartiallyBalancedTabulationSolver;
+import com.ibm.wala.dataflow.IFDS.PathEdge;
+import com.ibm.wala.dataflow.IFDS.TabulationCancelException;
+import com.ibm.wala.dataflow.IFDS.TabulationResult;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.slicer.ISDG;
+import com.ibm.wala.ipa.slicer.MethodEntryStatement;
+import com.ibm.wala.ipa.slicer.PDG;
+import com.ibm.wala.ipa.slicer.SDG;
+import com.ibm.wala.ipa.slicer.Slicer;
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.intset.IntIterator;
+import com.ibm.wala.util.intset.IntSet;
+import com.ibm.wala.util.intset.MutableSparseIntSet;
+
+import java.util.*;
+
+/**
+ * Forward slicer that builds the system dependence graph once and slices from
+ * many seeds in a single tabulation pass.
+ *
+ * WALA's own slice problem propagates a single dataflow fact (0) from every root,
+ * so all roots collapse into one answer. The slice flow functions are identity on
+ * every other fact, so here each seed gets its own fact (index + 1) and the solver
+ * result at a statement tells us exactly which seeds reach it.
+ */
+public class MultiSeedSlicer {
+
+    private final SDG sdg;
+
+    /**
+     * Build the SDG that all subsequent slices will share
+     * @param cg
+     * @param pa
+     * @param dataOptions
+     * @param controlOptions
+     */
+    public MultiSeedSlicer(CallGraph cg,
+                           PointerAnalysis pa,
+                           DataDependenceOptions dataOptions,
+                           ControlDependenceOptions controlOptions) {
+        this(new SDG(cg, pa, dataOptions, controlOptions));
+    }
+
+    public MultiSeedSlicer(SDG sdg) {
+        this.sdg = sdg;
+    }
+
+    public SDG getSDG() {
+        return sdg;
+    }
+
+    /**
+     * Compute forward slices for all seeds at once
+     * @param seeds
+     * @return
+     * @throws CancelException
+     */
+    public MultiSeedSlice computeForwardSlice(List<Statement> seeds) throws CancelException {
+        return computeForwardSlice(seeds, null);
+    }
+
+    /**
+     * Compute forward slices for all seeds at once, stopping early if the monitor's
+     * budget runs out. The slices are then partial and the monitor records why.
+     * @param seeds
+     * @param monitor monitor for this tabulation pass, null for no budget
+     * @return
+     * @throws CancelException
+     */
+    public MultiSeedSlice computeForwardSlice(List<Statement> seeds, Budget.Monitor monitor) throws CancelException {
+        TabulationResult<Statement, PDG, Object> result = solve(new SeedSliceProblem(seeds, sdg), monitor);
+
+        Map<Statement, IntSet> reachedBy = new HashMap<>();
+        for (Statement s : result.getSupergraphNodesReached()) {
+            IntSet facts = result.getResult(s);
+            if (facts == null || facts.isEmpty()) {
+                continue;
+            }
+            MutableSparseIntSet seedIndices = MutableSparseIntSet.makeEmpty();
+            for (IntIterator it = facts.intIterator(); it.hasNext(); ) {
+                int fact = it.next();
+                if (fact > 0) {
+                    seedIndices.add(fact - 1);
+                }
+            }
+            if (!seedIndices.isEmpty()) {
+                reachedBy.put(s, seedIndices);
+            }
+        }
+        return new MultiSeedSlice(seeds, reachedBy);
+    }
+
+    /**
+     * Forward slice of a single seed, the same as Slicer.computeForwardSlice but for
+     * any ISDG and within a budget
+     * @param sdg
+     * @param seed
+     * @param monitor monitor for this tabulation pass, null for no budget
+     * @return
+     * @throws CancelException
+     */
+    public static Collection<Statement> computeForwardSlice(ISDG sdg, Statement seed, Budget.Monitor monitor)
+            throws CancelException {
+        return solve(new Slicer.SliceProblem(Collections.singleton(seed), sdg, false), monitor).getSupergraphNodesReached();
+    }
+
+    // run the tabulation, returning the partial result if the budget runs out
+    private static TabulationResult<Statement, PDG, Object> solve(Slicer.SliceProblem problem, Budget.Monitor monitor)
+            throws CancelException {
+        if (monitor == null || monitor.isUnlimited()) {
+            return PartiallyBalancedTabulationSolver.createPartiallyBalancedTabulationSolver(problem, null).solve();
+        }
+        try {
+            return new BudgetedSolver(problem, monitor).solve();
+        } catch (TabulationCancelException e) {
+            monitor.stopped();
+            return e.getResult();
+        }
+    }
+
+    // tabulation solver that counts the statements it reaches against the monitor's budget
+    private static class BudgetedSolver extends PartiallyBalancedTabulationSolver<Statement, PDG, Object> {
+        private final Budget.Monitor monitor;
+        private final BitSet reached = new BitSet();
+
+        BudgetedSolver(Slicer.SliceProblem problem, Budget.Monitor monitor) {
+            super(problem, monitor);
+            this.monitor = monitor;
+        }
+
+        @Override
+        protected boolean propagate(Statement s_p, int i, Statement n, int j) {
+            boolean changed = super.propagate(s_p, i, n, j);
+            if (changed) {
+                int number = supergraph.getNumber(n);
+                if (!reached.get(number)) {
+                    reached.set(number);
+                    monitor.reached();
+                }
+            }
+            return changed;
+        }
+    }
+
+    // same supergraph and flow functions as the stock slice problem, one fact per seed
+    private static class SeedSliceProblem extends Slicer.SliceProblem {
+        private final List<Statement> seeds;
+
+        SeedSliceProblem(List<Statement> seeds, SDG sdg) {
+            super(seeds, sdg, false);
+            this.seeds = seeds;
+        }
+
+        @Override
+        public Collection<PathEdge<Statement>> initialSeeds() {
+            Collection<PathEdge<Statement>> edges = new ArrayList<>();
+            for (int i = 0; i < seeds.size(); i++) {
+                Statement seed = seeds.get(i);
+                edges.add(PathEdge.createPathEdge(new MethodEntryStatement(seed.getNode()), i + 1, seed, i + 1));
+            }
+            return edges;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package slicing;
+
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.slicer.ISDG;
+import com.ibm.wala.ipa.slicer.SDG;
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.ssa.IR;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Slices independent seeds concurrently over a shared, read-only call graph and
+ * pointer analysis. Results come back in seed order regardless of which worker
+ * finished first, so merging them is deterministic.
+ *
+ * WALA's SDG is built lazily and is not thread-safe, so there are two ways to
+ * share work between workers:
+ *  - shared: one SDG behind a SynchronizedSDG, workers only run the tabulation
+ *    in parallel and the dependence graph is built once
+ *  - per-worker: every worker builds its own SDG. The IR and DefUse of all call
+ *    graph nodes are built up front and pinned, so the workers only ever read
+ *    the shared AnalysisCache.
+ */
+public class ParallelSlicer {
+
+    private final CallGraph cg;
+    private final PointerAnalysis pa;
+    private final DataDependenceOptions dataOptions;
+    private final ControlDependenceOptions controlOptions;
+    private final int workers;
+    private final boolean perWorkerSdg;
+    // statements in the PDGs built by the last computeForwardSlices call
+    private long statementsBuilt;
+    // seeds whose slice the last computeForwardSlices call cut short
+    private final BitSet truncated = new BitSet();
+
+    public ParallelSlicer(CallGraph cg,
+                          PointerAnalysis pa,
+                          DataDependenceOptions dataOptions,
+                          ControlDependenceOptions controlOptions,
+                          int workers,
+                          boolean perWorkerSdg) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("need at least one worker, got " + workers);
+        }
+        this.cg = cg;
+        this.pa = pa;
+        this.dataOptions = dataOptions;
+        this.controlOptions = controlOptions;
+        this.workers = workers;
+        this.perWorkerSdg = perWorkerSdg;
+    }
+
+    /**
+     * Compute the forward slice of every seed
+     * @param seeds
+     * @return slices, in the same order as seeds
+     * @throws Exception
+     */
+    public List<Collection<Statement>> computeForwardSlices(List<Statement> seeds) throws Exception {
+        return computeForwardSlices(seeds, null);
+    }
+
+    /**
+     * Compute the forward slice of every seed within the budget of a slice phase.
+     * Seeds whose slice was cut short are listed by getTruncatedSeeds.
+     * @param seeds
+     * @param phase monitor for the slice phase, null for no budget
+     * @return slices, in the same order as seeds
+     * @throws Exception
+     */
+    public List<Collection<Statement>> computeForwardSlices(List<Statement> seeds, final Budget.Monitor phase)
+            throws Exception {
+        truncated.clear();
+        // strong references to IR and DefUse, so the soft references in the cache stay put
+        final List<Object> pinned = perWorkerSdg ? pinIR(cg) : Collections.emptyList();
+        final ISDG shared = perWorkerSdg ? null : new SynchronizedSDG(new SDG(cg, pa, dataOptions, controlOptions));
+        final List<SDG> workerSdgs = Collections.synchronizedList(new ArrayList<SDG>());
+        final ThreadLocal<SDG> workerSdg = new ThreadLocal<SDG>() {
+            @Override
+            protected SDG initialValue() {
+                SDG sdg = new SDG(cg, pa, dataOptions, controlOptions);
+                workerSdgs.add(sdg);
+                return sdg;
+            }
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Collection<Statement>>> futures = new ArrayList<>();
+            for (int i = 0; i < seeds.size(); i++) {
+                final int seedIndex = i;
+                final Statement seed = seeds.get(i);
+                futures.add(pool.submit(new Callable<Collection<Statement>>() {
+                    @Override
+                    public Collection<Statement> call() throws Exception {
+                        Budget.Monitor monitor = phase == null ? null : phase.startSolve();
+                        Collection<Statement> slice =
+                                MultiSeedSlicer.computeForwardSlice(perWorkerSdg ? workerSdg.get() : shared, seed, monitor);
+                        if (monitor != null && monitor.getTruncation() != null) {
+                            synchronized (truncated) {
+                                truncated.set(seedIndex);
+                            }
+                        }
+                        return slice;
+                    }
+                }));
+            }
+
+            List<Collection<Statement>> slices = new ArrayList<>();
+            for (Future<Collection<Statement>> future : futures) {
+                try {
+                    slices.add(future.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+                }
+            }
+            // keep the pinned IR reachable until every worker is done
+            pinned.size();
+            statementsBuilt = 0;
+            for (ISDG sdg : perWorkerSdg ? workerSdgs : Collections.singletonList(shared)) {
+                statementsBuilt += RunMetrics.countBuiltStatements(sdg);
+            }
+            return slices;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // summed over workers' SDGs in per-worker mode
+    public long getStatementsBuilt() {
+        return statementsBuilt;
+    }
+
+    public BitSet getTruncatedSeeds() {
+        return (BitSet) truncated.clone();
+    }
+
+    /**
+     * Build IR and DefUse for every node in the call graph, serially
+     * @param cg
+     * @return the objects built, to be kept reachable while workers run
+     */
+    public static List<Object> pinIR(CallGraph cg) {
+        List<Object> pinned = new ArrayList<>();
+        for (CGNode n : cg) {
+            IR ir = n.getIR();
+            if (ir != null) {
+                pinned.add(ir);
+                pinned.add(n.getDU());
+            }
+        }
+        return pinned;
+    }
+}
@@ -0,0 +1,218 @@
+package slicing;
+
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.*;
+import com.ibm.wala.ipa.callgraph.impl.DefaultEntrypoint;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.util.CancelException;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Call graphs of groups of entrypoints, built concurrently.
+ *
+ * Jars that bundle several tools have many main methods, and one call graph for
+ * all of them is a single propagation on one thread. Here the entrypoints are
+ * split into groups, and every group gets its own call graph and pointer analysis
+ * on a pool of workers. SlicingSession slices each partition on its own and
+ * merges the slices by seed.
+ *
+ * WALA's class hierarchy fills unsynchronized caches while a call graph is built
+ * (dispatch targets, implementors, inherited methods, array and bypass classes),
+ * so concurrent builders cannot share one. The first partition uses the given
+ * hierarchy. The others build their own from the same scope, on their worker,
+ * which costs one hierarchy per partition in memory.
+ *
+ * A partition only sees the code its own entrypoints reach, so flows from one
+ * entrypoint to another, e.g. through static fields, are not followed. That is
+ * what happens at run time when the mains are separate programs.
+ */
+public class PartitionedCallGraph {
+
+    /**
+     * One group of entrypoints and the analysis built for it
+     */
+    public static class Partition {
+        private final int index;
+        private final List<Entrypoint> entrypoints;
+        private ClassHierarchy cha;
+        private CallGraph cg;
+        private PointerAnalysis<InstanceKey> pa;
+        private CallIndex callIndex;
+        private Budget.Monitor monitor;
+        private long wallMs;
+
+        Partition(int index, List<Entrypoint> entrypoints) {
+            this.index = index;
+            this.entrypoints = entrypoints;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        // as given, bound to the first partition's class hierarchy
+        public List<Entrypoint> getEntrypoints() {
+            return entrypoints;
+        }
+
+        public ClassHierarchy getClassHierarchy() {
+            return cha;
+        }
+
+        public CallGraph getCallGraph() {
+            return cg;
+        }
+
+        public PointerAnalysis<InstanceKey> getPointerAnalysis() {
+            return pa;
+        }
+
+        public CallIndex getCallIndex() {
+            return callIndex;
+        }
+
+        // the call graph budget of this partition, truncated if it ran out
+        public Budget.Monitor getMonitor() {
+            return monitor;
+        }
+
+        // hierarchy and call graph construction on the worker
+        public long getWallMs() {
+            return wallMs;
+        }
+
+        @Override
+        public String toString() {
+            return "Partition " + index + ": " + entrypoints.size() + " entrypoints, "
+                    + cg.getNumberOfNodes() + " nodes in " + wallMs + " ms"
+                    + (monitor.getTruncation() != null ? " (" + monitor.getTruncation() + ")" : "");
+        }
+    }
+
+    /**
+     * Split entrypoints into at most n groups of consecutive entrypoints in class
+     * name order, so the mains of one package tend to land in the same group
+     * @param entrypoints
+     * @param n
+     * @return non-empty groups of nearly equal size
+     */
+    public static List<List<Entrypoint>> partition(Iterable<? extends Entrypoint> entrypoints, int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("need at least one partition, got " + n);
+        }
+        List<Entrypoint> sorted = new ArrayList<>();
+        for (Entrypoint e : entrypoints) {
+            sorted.add(e);
+        }
+        Collections.sort(sorted, new Comparator<Entrypoint>() {
+            @Override
+            public int compare(Entrypoint a, Entrypoint b) {
+                return a.getMethod().getSignature().compareTo(b.getMethod().getSignature());
+            }
+        });
+        int groups = Math.min(n, sorted.size());
+        List<List<Entrypoint>> result = new ArrayList<>();
+        for (int i = 0; i < groups; i++) {
+            result.add(new ArrayList<>(sorted.subList(i * sorted.size() / groups, (i + 1) * sorted.size() / groups)));
+        }
+        return result;
+    }
+
+    /**
+     * Build the call graph and pointer analysis of every group on a pool of workers
+     * @param analysis 0cfa, vanilla-1cfa or container-1cfa
+     * @param scope
+     * @param cha class hierarchy of the first partition, the groups' entrypoints must belong to it
+     * @param cache analysis cache of the first partition
+     * @param groups
+     * @param criteria criteria to restrict every partition's call graph to, null for the full scope
+     * @param workers
+     * @param budget call graph budget, applied to each partition on its own
+     * @return partitions, in the same order as groups
+     * @throws ClassHierarchyException
+     * @throws CancelException
+     * @throws InterruptedException
+     */
+    public static List<Partition> build(final String analysis,
+                                        final AnalysisScope scope,
+                                        final ClassHierarchy cha,
+                                        final AnalysisCache cache,
+                                        List<List<Entrypoint>> groups,
+                                        final SlicingSession.Criteria criteria,
+                                        int workers,
+                                        final Budget budget)
+            throws ClassHierarchyException, CancelException, InterruptedException {
+        if (workers < 1) {
+            throw new IllegalArgumentException("need at least one worker, got " + workers);
+        }
+        if (analysis.equals(AdaptivePrecision.ANALYSIS)) {
+            throw new IllegalArgumentException(analysis + " refines one call graph, it cannot be partitioned");
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Partition>> futures = new ArrayList<>();
+            for (int i = 0; i < groups.size(); i++) {
+                final Partition partition = new Partition(i, groups.get(i));
+                futures.add(pool.submit(new Callable<Partition>() {
+                    @Override
+                    public Partition call() throws Exception {
+                        long start = System.currentTimeMillis();
+                        boolean first = partition.index == 0;
+                        partition.cha = first ? cha : ClassHierarchy.make(scope);
+                        AnalysisOptions options = new AnalysisOptions(scope,
+                                first ? partition.entrypoints : rebind(partition.entrypoints, partition.cha));
+                        CallGraphBuilder builder = SimpleSlicer.makeCallGraphBuilder(
+                                analysis, options, first ? cache : new AnalysisCache(), partition.cha, scope);
+                        if (criteria != null) {
+                            // after making the builder, which installs its own selectors
+                            criteria.region(partition.cha).restrict(options);
+                        }
+                        partition.monitor = budget.startCallGraph();
+                        partition.cg = Budget.makeCallGraph(builder, options, partition.monitor);
+                        partition.pa = builder.getPointerAnalysis();
+                        partition.callIndex = new CallIndex(partition.cg);
+                        partition.wallMs = System.currentTimeMillis() - start;
+                        return partition;
+                    }
+                }));
+            }
+
+            List<Partition> partitions = new ArrayList<>();
+            for (Future<Partition> future : futures) {
+                try {
+                    partitions.add(future.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof ClassHierarchyException) {
+                        throw (ClassHierarchyException) cause;
+                    }
+                    if (cause instanceof CancelException) {
+                        throw (CancelException) cause;
+                    }
+                    throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+                }
+            }
+            return partitions;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // the same entrypoints in another class hierarchy built from the same scope
+    private static List<Entrypoint> rebind(List<Entrypoint> entrypoints, ClassHierarchy cha) {
+        List<Entrypoint> result = new ArrayList<>();
+        for (Entrypoint e : entrypoints) {
+            IMethod m = cha.resolveMethod(e.getMethod().getReference());
+            if (m == null) {
+                throw new IllegalStateException("entrypoint " + e.getMethod().getSignature() + " missing from partition hierarchy");
+            }
+            result.add(new DefaultEntrypoint(m, cha));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,222 @@
+package slicing;
+
+import com.ibm.wala.classLoader.JarFileModule;
+import com.ibm.wala.classLoader.Module;
+import com.ibm.wala.classLoader.ModuleEntry;
+import com.ibm.wala.ipa.callgraph.AnalysisScope;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.config.FileOfClasses;
+import com.ibm.wala.util.config.SetOfClasses;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Local snapshot of the Primordial (JDK) part of an analysis scope.
+ *
+ * The snapshot is a jar with only the JDK classes that survive the exclusions.
+ * They are stored uncompressed, so nothing has to be inflated when the class
+ * hierarchy reads them. It is built once per JDK and exclusions file, keyed by the
+ * Primordial modules (path, size, modification time) and the exclusions' content
+ * hash, and used in place of the JDK's jars in every later scope. ClassHierarchy.make
+ * then skips scanning and inflating the full runtime jar.
+ *
+ * WALA's class objects keep a reference to the hierarchy that loaded them, so the
+ * parsed hierarchy itself cannot be shared between ClassHierarchy instances. This
+ * snapshot is the part that can be reused.
+ *
+ * The JDK scope is only read the first time a snapshot is needed for an
+ * exclusions file. After that, every scope shares one open module per snapshot
+ * jar, which close releases once no analysis reads from those scopes any more.
+ */
+public class PrimordialSnapshot implements Closeable {
+
+    private static final String FORMAT = "primordial-snapshot v1";
+
+    private final File dir;
+    // open snapshot jar for each exclusions file hash
+    private final Map<String, JarFileModule> modules = new HashMap<>();
+    private PrintStream log;
+
+    public PrimordialSnapshot(File dir) {
+        this.dir = dir;
+    }
+
+    // where to report building a snapshot, nothing is printed when null
+    public synchronized void setLog(PrintStream log) {
+        this.log = log;
+    }
+
+    /**
+     * Scope for an application jar whose Primordial loader reads from the snapshot,
+     * building the snapshot first if needed
+     * @param appJar
+     * @param exclusions
+     * @return
+     * @throws IOException
+     */
+    public AnalysisScope makeScope(String appJar, File exclusions) throws IOException {
+        AnalysisScope scope = AnalysisScope.createJavaAnalysisScope();
+        scope.addToScope(ClassLoaderReference.Primordial, getModule(exclusions));
+        AnalysisScopeReader.addClassPathToScope(appJar, scope, ClassLoaderReference.Application);
+        if (exclusions != null) {
+            try (InputStream in = new FileInputStream(exclusions)) {
+                scope.setExclusions(new FileOfClasses(in));
+            }
+        }
+        return scope;
+    }
+
+    // the open snapshot for an exclusions file, written first if there is none on disk
+    private synchronized JarFileModule getModule(File exclusions) throws IOException {
+        String key = exclusions == null ? "" : SliceCache.hashFile(exclusions);
+        JarFileModule module = modules.get(key);
+        if (module != null) {
+            return module;
+        }
+        AnalysisScope jdk = AnalysisScopeReader.makePrimordialScope(exclusions);
+        File snapshot;
+        try {
+            snapshot = snapshotFile(jdk, exclusions);
+            if (!snapshot.isFile()) {
+                long start = System.currentTimeMillis();
+                int classes = write(jdk, snapshot);
+                if (log != null) {
+                    log.println("Wrote primordial snapshot of " + classes + " classes to " + snapshot
+                            + " in " + (System.currentTimeMillis() - start) + " ms");
+                }
+            }
+        } finally {
+            for (Module m : jdk.getModules(ClassLoaderReference.Primordial)) {
+                if (m instanceof JarFileModule) {
+                    ((JarFileModule) m).getJarFile().close();
+                }
+            }
+        }
+        module = new JarFileModule(new JarFile(snapshot));
+        modules.put(key, module);
+        return module;
+    }
+
+    /**
+     * Close the snapshot jars. Scopes made earlier can no longer load classes,
+     * later calls to makeScope open them again.
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        IOException error = null;
+        for (JarFileModule m : modules.values()) {
+            try {
+                m.getJarFile().close();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        modules.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    // snapshot for the scope's Primordial modules and the exclusions
+    private File snapshotFile(AnalysisScope scope, File exclusions) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(FORMAT.getBytes(StandardCharsets.UTF_8));
+        for (Module m : scope.getModules(ClassLoaderReference.Primordial)) {
+            digest.update((byte) 0);
+            digest.update(describe(m).getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+        if (exclusions != null) {
+            digest.update(SliceCache.hashFile(exclusions).getBytes(StandardCharsets.UTF_8));
+        }
+        StringBuilder name = new StringBuilder("primordial-");
+        byte[] bytes = digest.digest();
+        for (int i = 0; i < 8; i++) {
+            name.append(String.format("%02x", bytes[i] & 0xff));
+        }
+        return new File(dir, name.append(".jar").toString());
+    }
+
+    private static String describe(Module m) {
+        if (m instanceof JarFileModule) {
+            File jar = new File(((JarFileModule) m).getAbsolutePath());
+            return jar.getAbsolutePath() + " " + jar.length() + " " + jar.lastModified();
+        }
+        return m.toString();
+    }
+
+    // copy the classes that are not excluded, first definition wins as in WALA's loaders
+    private static int write(AnalysisScope scope, File snapshot) throws IOException {
+        snapshot.getParentFile().mkdirs();
+        File tmp = new File(snapshot.getPath() + ".tmp");
+        SetOfClasses exclusions = scope.getExclusions();
+        Set<String> written = new HashSet<>();
+        try (JarOutputStream out = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.setMethod(ZipEntry.STORED);
+            Deque<Module> modules = new ArrayDeque<>(scope.getModules(ClassLoaderReference.Primordial));
+            while (!modules.isEmpty()) {
+                for (Iterator<? extends ModuleEntry> it = modules.pop().getEntries(); it.hasNext(); ) {
+                    ModuleEntry entry = it.next();
+                    if (entry.isModuleFile()) {
+                        modules.push(entry.asModule());
+                        continue;
+                    }
+                    if (!entry.isClassFile()) {
+                        continue;
+                    }
+                    String className = entry.getClassName().replace('.', '/');
+                    if ((exclusions != null && exclusions.contains(className)) || !written.add(className)) {
+                        continue;
+                    }
+                    byte[] bytes;
+                    try (InputStream in = entry.getInputStream()) {
+                        bytes = readFully(in);
+                    }
+                    CRC32 crc = new CRC32();
+                    crc.update(bytes);
+                    JarEntry je = new JarEntry(className + ".class");
+                    je.setSize(bytes.length);
+                    je.setCompressedSize(bytes.length);
+                    je.setCrc(crc.getValue());
+                    out.putNextEntry(je);
+                    out.write(bytes);
+                    out.closeEntry();
+                }
+            }
+        }
+        if (!tmp.renameTo(snapshot)) {
+            // another process built the same snapshot first
+            tmp.delete();
+        }
+        return written.size();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] data = new byte[8192];
+        int read;
+        while ((read = in.read(data)) != -1) {
+            out.write(data, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package slicing;
+
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.util.graph.Graph;
+
+import java.util.*;
+
+/**
+ * Precomputed reachability over a whole dependence graph, for answering many
+ * slice and "does this seed reach that statement" queries against one jar.
+ *
+ * The graph is materialized once and condensed into its strongly connected
+ * components, which turns it into a DAG: all statements of a component reach
+ * each other and the same set of statements beyond it. Each component carries
+ * three labels from one depth-first pass over the DAG:
+ *  - post: its rank in DFS post-order
+ *  - treeLow: the smallest post rank in its DFS subtree, so a component whose
+ *    post rank falls in [treeLow, post] is a tree descendant and certainly reachable
+ *  - low: the smallest post rank of anything it reaches, so a component whose
+ *    post rank falls outside [low, post] is certainly not reachable
+ * plus its height above the DAG's sinks, since a component can only reach lower
+ * ones. Most reachability queries are settled by the labels alone. The rest fall
+ * back to a search over the condensed DAG that the labels prune.
+ *
+ * The index answers context-insensitive reachability. Over a thin dependence
+ * graph this is exactly the thin slice. Over an SDG it ignores call/return
+ * matching, so it is a superset of the tabulated forward slice.
+ */
+public class ReachabilityIndex {
+
+    private final Map<Statement, Integer> numbers;
+    private final Statement[] statements;
+    private final int edges;
+    // component of each statement, and the statements of each component
+    private final int[] component;
+    private final int[] memberOffsets;
+    private final int[] members;
+    // condensed edges, components are numbered so that every edge goes to a lower number
+    private final int[] dagOffsets;
+    private final int[] dagTargets;
+    private final int[] post;
+    private final int[] treeLow;
+    private final int[] low;
+    private final int[] height;
+
+    private ReachabilityIndex(Map<Statement, Integer> numbers, Statement[] statements, int edges, int[] component,
+                              int[] memberOffsets, int[] members, int[] dagOffsets, int[] dagTargets) {
+        this.numbers = numbers;
+        this.statements = statements;
+        this.edges = edges;
+        this.component = component;
+        this.memberOffsets = memberOffsets;
+        this.members = members;
+        this.dagOffsets = dagOffsets;
+        this.dagTargets = dagTargets;
+        int components = memberOffsets.length - 1;
+        this.post = new int[components];
+        this.treeLow = new int[components];
+        this.low = new int[components];
+        this.height = new int[components];
+        label();
+    }
+
+    /**
+     * Materialize a dependence graph and index it. For an SDG this builds the PDG of
+     * every call graph node.
+     * @param graph
+     * @return
+     */
+    public static ReachabilityIndex build(Graph<Statement> graph) {
+        // number statements, including any successor the graph's iterator did not list
+        Map<Statement, Integer> numbers = new HashMap<>();
+        List<Statement> statements = new ArrayList<>();
+        for (Statement s : graph) {
+            number(s, numbers, statements);
+        }
+        int[] offsets = new int[16];
+        int[] targets = new int[16];
+        int edges = 0;
+        for (int i = 0; i < statements.size(); i++) {
+            offsets = grow(offsets, i + 2);
+            offsets[i] = edges;
+            for (Iterator<Statement> it = graph.getSuccNodes(statements.get(i)); it.hasNext(); ) {
+                targets = grow(targets, edges + 1);
+                targets[edges++] = number(it.next(), numbers, statements);
+            }
+        }
+        int n = statements.size();
+        offsets[n] = edges;
+
+        int[] component = stronglyConnectedComponents(n, offsets, targets);
+        int components = 0;
+        for (int c : component) {
+            components = Math.max(components, c + 1);
+        }
+
+        // statements grouped by component
+        int[] memberOffsets = new int[components + 1];
+        for (int c : component) {
+            memberOffsets[c + 1]++;
+        }
+        for (int c = 0; c < components; c++) {
+            memberOffsets[c + 1] += memberOffsets[c];
+        }
+        int[] members = new int[n];
+        int[] fill = Arrays.copyOf(memberOffsets, components);
+        for (int i = 0; i < n; i++) {
+            members[fill[component[i]]++] = i;
+        }
+
+        // condensed edges without duplicates or self loops
+        int[] dagOffsets = new int[components + 1];
+        int[] dagTargets = new int[16];
+        int dagEdges = 0;
+        int[] seen = new int[components];
+        Arrays.fill(seen, -1);
+        for (int c = 0; c < components; c++) {
+            dagOffsets[c] = dagEdges;
+            for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+                int i = members[m];
+                for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                    int d = component[targets[e]];
+                    if (d != c && seen[d] != c) {
+                        seen[d] = c;
+                        dagTargets = grow(dagTargets, dagEdges + 1);
+                        dagTargets[dagEdges++] = d;
+                    }
+                }
+            }
+        }
+        dagOffsets[components] = dagEdges;
+
+        return new ReachabilityIndex(numbers, statements.toArray(new Statement[n]), edges, component,
+                memberOffsets, members, dagOffsets, Arrays.copyOf(dagTargets, dagEdges));
+    }
+
+    private static int number(Statement s, Map<Statement, Integer> numbers, List<Statement> statements) {
+        Integer number = numbers.get(s);
+        if (number == null) {
+            number = statements.size();
+            numbers.put(s, number);
+            statements.add(s);
+        }
+        return number;
+    }
+
+    private static int[] grow(int[] array, int size) {
+        return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+    }
+
+    // Tarjan's algorithm without recursion, components come out sinks first
+    private static int[] stronglyConnectedComponents(int n, int[] offsets, int[] targets) {
+        int[] component = new int[n];
+        int[] index = new int[n];
+        int[] lowLink = new int[n];
+        Arrays.fill(index, -1);
+        int[] stack = new int[n];
+        boolean[] onStack = new boolean[n];
+        int stackSize = 0;
+        // DFS frames: the node and the next edge to follow
+        int[] frameNode = new int[n];
+        int[] frameEdge = new int[n];
+        int counter = 0;
+        int components = 0;
+        for (int root = 0; root < n; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            frameNode[0] = root;
+            frameEdge[0] = offsets[root];
+            index[root] = lowLink[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (depth >= 0) {
+                int v = frameNode[depth];
+                if (frameEdge[depth] < offsets[v + 1]) {
+                    int w = targets[frameEdge[depth]++];
+                    if (index[w] < 0) {
+                        index[w] = lowLink[w] = counter++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        depth++;
+                        frameNode[depth] = w;
+                        frameEdge[depth] = offsets[w];
+                    } else if (onStack[w]) {
+                        lowLink[v] = Math.min(lowLink[v], index[w]);
+                    }
+                    continue;
+                }
+                if (lowLink[v] == index[v]) {
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        onStack[w] = false;
+                        component[w] = components;
+                    } while (w != v);
+                    components++;
+                }
+                depth--;
+                if (depth >= 0) {
+                    int parent = frameNode[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                }
+            }
+        }
+        return component;
+    }
+
+    // post-order intervals from one DFS over the DAG, then low and height bottom up
+    private void label() {
+        int components = post.length;
+        boolean[] visited = new boolean[components];
+        int[] frameNode = new int[components];
+        int[] frameEdge = new int[components];
+        int counter = 0;
+        // roots first in descending order, which is a topological order of the DAG
+        for (int root = components - 1; root >= 0; root--) {
+            if (visited[root]) {
+                continue;
+            }
+            int depth = 0;
+            frameNode[0] = root;
+            frameEdge[0] = dagOffsets[root];
+            visited[root] = true;
+            treeLow[root] = counter;
+            while (depth >= 0) {
+                int c = frameNode[depth];
+                if (frameEdge[depth] < dagOffsets[c + 1]) {
+                    int d = dagTargets[frameEdge[depth]++];
+                    if (!visited[d]) {
+                        visited[d] = true;
+                        treeLow[d] = counter;
+                        depth++;
+                        frameNode[depth] = d;
+                        frameEdge[depth] = dagOffsets[d];
+                    }
+                    continue;
+                }
+                post[c] = counter++;
+                depth--;
+            }
+        }
+        // every edge goes to a lower component, so successors are labeled first
+        for (int c = 0; c < components; c++) {
+            low[c] = post[c];
+            for (int e = dagOffsets[c]; e < dagOffsets[c + 1]; e++) {
+                int d = dagTargets[e];
+                low[c] = Math.min(low[c], low[d]);
+                height[c] = Math.max(height[c], height[d] + 1);
+            }
+        }
+    }
+
+    public boolean contains(Statement s) {
+        return numbers.containsKey(s);
+    }
+
+    /**
+     * Whether to is in the forward slice of from
+     * @param from
+     * @param to
+     * @return
+     */
+    public boolean reaches(Statement from, Statement to) {
+        int target = componentOf(to);
+        return reachesComponent(componentOf(from), target, new BitSet());
+    }
+
+    /**
+     * Whether any statement of targets is in the forward slice of any seed
+     * @param seeds
+     * @param targets
+     * @return
+     */
+    public boolean reachesAny(Collection<Statement> seeds, Collection<Statement> targets) {
+        return !reached(seeds, targets).isEmpty();
+    }
+
+    /**
+     * The statements of targets that are in the forward slice of any seed
+     * @param seeds
+     * @param targets
+     * @return
+     */
+    public List<Statement> reached(Collection<Statement> seeds, Collection<Statement> targets) {
+        List<Statement> reached = new ArrayList<>();
+        for (Statement to : targets) {
+            if (!contains(to)) {
+                // not in the graph, so no seed reaches it
+                continue;
+            }
+            int target = componentOf(to);
+            // components already searched without success, shared across seeds
+            BitSet visited = new BitSet();
+            for (Statement from : seeds) {
+                if (reachesComponent(componentOf(from), target, visited)) {
+                    reached.add(to);
+                    break;
+                }
+            }
+        }
+        return reached;
+    }
+
+    // labels first, then a search that they prune
+    private boolean reachesComponent(int from, int target, BitSet visited) {
+        if (from == target || isTreeDescendant(from, target)) {
+            return true;
+        }
+        if (cannotReach(from, target) || visited.get(from)) {
+            return false;
+        }
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = from;
+        visited.set(from);
+        while (size > 0) {
+            int c = stack[--size];
+            for (int e = dagOffsets[c]; e < dagOffsets[c + 1]; e++) {
+                int d = dagTargets[e];
+                if (d == target || isTreeDescendant(d, target)) {
+                    return true;
+                }
+                if (!visited.get(d) && !cannotReach(d, target)) {
+                    visited.set(d);
+                    stack = grow(stack, size + 1);
+                    stack[size++] = d;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isTreeDescendant(int c, int d) {
+        return treeLow[c] <= post[d] && post[d] <= post[c];
+    }
+
+    private boolean cannotReach(int c, int d) {
+        return height[c] <= height[d] || low[d] < low[c] || post[d] > post[c];
+    }
+
+    /**
+     * Forward slice from the index, the union over all seeds
+     * @param seeds
+     * @return
+     */
+    public Collection<Statement> forwardSlice(Collection<Statement> seeds) {
+        BitSet visited = new BitSet();
+        int[] stack = new int[16];
+        int size = 0;
+        for (Statement seed : seeds) {
+            int c = componentOf(seed);
+            if (!visited.get(c)) {
+                visited.set(c);
+                stack = grow(stack, size + 1);
+                stack[size++] = c;
+            }
+        }
+        while (size > 0) {
+            int c = stack[--size];
+            for (int e = dagOffsets[c]; e < dagOffsets[c + 1]; e++) {
+                int d = dagTargets[e];
+                if (!visited.get(d)) {
+                    visited.set(d);
+                    stack = grow(stack, size + 1);
+                    stack[size++] = d;
+                }
+            }
+        }
+        List<Statement> slice = new ArrayList<>();
+        for (int c = visited.nextSetBit(0); c >= 0; c = visited.nextSetBit(c + 1)) {
+            for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+                slice.add(statements[members[m]]);
+            }
+        }
+        return slice;
+    }
+
+    private int componentOf(Statement s) {
+        Integer number = numbers.get(s);
+        if (number == null) {
+            throw new IllegalArgumentException("statement is not in the indexed graph: " + s);
+        }
+        return component[number];
+    }
+
+    public int getStatementCount() {
+        return statements.length;
+    }
+
+    public int getEdgeCount() {
+        return edges;
+    }
+
+    public int getComponentCount() {
+        return post.length;
+    }
+
+    public int getDagEdgeCount() {
+        return dagTargets.length;
+    }
+
+    @Override
+    public String toString() {
+        return "reachability index: " + getStatementCount() + " statements, " + getEdgeCount() + " edges, "
+                + getComponentCount() + " components, " + getDagEdgeCount() + " condensed edges";
+    }
+}
@@ -0,0 +1,387 @@
+package slicing;
+
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.ipa.slicer.ISDG;
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Per-phase measurements for one driver run, written out as a JSON report.
+ *
+ * For every phase we record wall time, CPU time, bytes allocated and peak heap.
+ * CPU time is for the whole process, so worker threads in parallel mode are
+ * included. Allocation is only counted for the thread that runs the phase (the
+ * JVM has no process-wide counter), and peak heap is the sum of the heap pools'
+ * peaks since the phase started. Values the JVM cannot provide are reported as -1.
+ *
+ * Besides phases a run carries string attributes (jar, analysis, mode, ...), named
+ * counts (classes, call graph nodes, ...) and the size of each seed's slice.
+ *
+ * A phase that ran out of its Budget and returned partial results is marked
+ * truncated, with the reason, and so is the run as a whole.
+ */
+public class RunMetrics {
+
+    /**
+     * Measurements for a single phase
+     */
+    public static class Phase {
+        private final String name;
+        private long wallMs;
+        private long cpuMs;
+        private long allocatedBytes;
+        private long peakHeapBytes;
+        private String truncation;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getWallMs() {
+            return wallMs;
+        }
+
+        public long getCpuMs() {
+            return cpuMs;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public long getPeakHeapBytes() {
+            return peakHeapBytes;
+        }
+
+        // why the phase's results are partial, null if they are complete
+        public String getTruncation() {
+            return truncation;
+        }
+    }
+
+    private final String driver;
+    private final Map<String, String> attributes = new LinkedHashMap<>();
+    private final List<Phase> phases = new ArrayList<>();
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+    private int[] sliceSizes = new int[0];
+    // peak heap is JVM-wide, so it only means something while no other thread runs phases
+    private boolean measureHeap = true;
+
+    // state of the phase in progress
+    private Phase current;
+    private long wallStart;
+    private long cpuStart;
+    private long allocatedStart;
+
+    public RunMetrics(String driver) {
+        this.driver = driver;
+        // the management beans are loaded on first use, keep that out of the first phase
+        processCpuNanos();
+        threadAllocatedBytes();
+    }
+
+    /**
+     * Turn off peak heap measurement, for phases that run alongside others in the same
+     * JVM. Resetting the JVM-wide peaks would spoil the other phases' figures, and
+     * the peaks would include their allocations. Phases then report a peak heap of -1.
+     * @param measureHeap
+     */
+    public void setMeasureHeap(boolean measureHeap) {
+        this.measureHeap = measureHeap;
+    }
+
+    /**
+     * Start measuring a phase, ending the previous one if it is still open
+     * @param name
+     */
+    public void begin(String name) {
+        if (current != null) {
+            end();
+        }
+        current = new Phase(name);
+        if (measureHeap) {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    pool.resetPeakUsage();
+                }
+            }
+        }
+        wallStart = System.nanoTime();
+        cpuStart = processCpuNanos();
+        allocatedStart = threadAllocatedBytes();
+    }
+
+    /**
+     * Stop measuring the phase in progress
+     * @return the finished phase
+     */
+    public Phase end() {
+        if (current == null) {
+            throw new IllegalStateException("no phase in progress");
+        }
+        Phase phase = current;
+        phase.wallMs = (System.nanoTime() - wallStart) / 1000000;
+        long cpuEnd = processCpuNanos();
+        phase.cpuMs = cpuStart < 0 || cpuEnd < 0 ? -1 : (cpuEnd - cpuStart) / 1000000;
+        long allocatedEnd = threadAllocatedBytes();
+        phase.allocatedBytes = allocatedStart < 0 || allocatedEnd < 0 ? -1 : allocatedEnd - allocatedStart;
+        phase.peakHeapBytes = measureHeap ? peakHeapBytes() : -1;
+        phases.add(phase);
+        current = null;
+        return phase;
+    }
+
+    /**
+     * Mark the phase in progress truncated if the work under a monitor ran out of budget
+     * @param monitor
+     */
+    public void recordBudget(Budget.Monitor monitor) {
+        if (monitor.getTruncation() != null) {
+            markTruncated(monitor.getTruncation());
+        }
+    }
+
+    /**
+     * Mark the phase in progress truncated
+     * @param reason
+     */
+    public void markTruncated(String reason) {
+        if (current == null) {
+            throw new IllegalStateException("no phase in progress");
+        }
+        if (current.truncation == null) {
+            current.truncation = reason;
+        }
+    }
+
+    // some phase returned partial results
+    public boolean isTruncated() {
+        for (Phase phase : phases) {
+            if (phase.truncation != null) {
+                return true;
+            }
+        }
+        return current != null && current.truncation != null;
+    }
+
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, String.valueOf(value));
+    }
+
+    public void count(String name, long value) {
+        counts.put(name, value);
+    }
+
+    public void setSliceSizes(int[] sliceSizes) {
+        this.sliceSizes = sliceSizes.clone();
+    }
+
+    public String getDriver() {
+        return driver;
+    }
+
+    public List<Phase> getPhases() {
+        return Collections.unmodifiableList(phases);
+    }
+
+    public Map<String, Long> getCounts() {
+        return Collections.unmodifiableMap(counts);
+    }
+
+    // sum of wall time over finished phases
+    public long getTotalMs() {
+        long total = 0;
+        for (Phase phase : phases) {
+            total += phase.wallMs;
+        }
+        return total;
+    }
+
+    /**
+     * Record the size of a finished analysis: classes in the hierarchy, call graph
+     * nodes and edges, and pointer keys
+     * @param cha
+     * @param cg
+     * @param pa
+     */
+    public void countAnalysis(IClassHierarchy cha, CallGraph cg, PointerAnalysis pa) {
+        countAnalysis(cha, Collections.singletonList(cg), Collections.singletonList(pa), true);
+    }
+
+    /**
+     * Record analysis sizes summed over the call graphs of several partitions
+     * @param cha
+     * @param cgs
+     * @param pas
+     * @param edges count call graph edges too, one pass over the nodes
+     */
+    public void countAnalysis(IClassHierarchy cha, List<? extends CallGraph> cgs, List<? extends PointerAnalysis> pas,
+                              boolean edges) {
+        count("cha_classes", cha.getNumberOfClasses());
+        long nodes = 0;
+        long edgeCount = 0;
+        for (CallGraph cg : cgs) {
+            nodes += cg.getNumberOfNodes();
+            if (edges) {
+                for (CGNode n : cg) {
+                    edgeCount += cg.getSuccNodeCount(n);
+                }
+            }
+        }
+        count("cg_nodes", nodes);
+        if (edges) {
+            count("cg_edges", edgeCount);
+        }
+        long keys = 0;
+        for (PointerAnalysis pa : pas) {
+            Iterable<?> pointerKeys = pa.getPointerKeys();
+            if (pointerKeys instanceof Collection) {
+                keys += ((Collection<?>) pointerKeys).size();
+            } else {
+                for (Iterator<?> it = pointerKeys.iterator(); it.hasNext(); it.next()) {
+                    keys++;
+                }
+            }
+        }
+        count("pointer_keys", keys);
+    }
+
+    /**
+     * Number of statements in the PDGs an SDG has built so far, without building more
+     * @param sdg
+     * @return
+     */
+    public static long countBuiltStatements(ISDG sdg) {
+        long statements = 0;
+        for (Iterator<?> it = sdg.iterateLazyNodes(); it.hasNext(); it.next()) {
+            statements++;
+        }
+        return statements;
+    }
+
+    private static long processCpuNanos() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long threadAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+            if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+                return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Report as a JSON object
+     * @return
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"driver\": ").append(quote(driver)).append(",\n");
+        json.append("  \"attributes\": {");
+        String sep = "";
+        for (Map.Entry<String, String> e : attributes.entrySet()) {
+            json.append(sep).append("\n    ").append(quote(e.getKey())).append(": ").append(quote(e.getValue()));
+            sep = ",";
+        }
+        json.append(attributes.isEmpty() ? "},\n" : "\n  },\n");
+        json.append("  \"total_ms\": ").append(getTotalMs()).append(",\n");
+        json.append("  \"truncated\": ").append(isTruncated()).append(",\n");
+        json.append("  \"phases\": [");
+        sep = "";
+        for (Phase phase : phases) {
+            json.append(sep).append("\n    {\"name\": ").append(quote(phase.name))
+                    .append(", \"wall_ms\": ").append(phase.wallMs)
+                    .append(", \"cpu_ms\": ").append(phase.cpuMs)
+                    .append(", \"allocated_bytes\": ").append(phase.allocatedBytes)
+                    .append(", \"peak_heap_bytes\": ").append(phase.peakHeapBytes);
+            if (phase.truncation != null) {
+                json.append(", \"truncated\": ").append(quote(phase.truncation));
+            }
+            json.append("}");
+            sep = ",";
+        }
+        json.append(phases.isEmpty() ? "],\n" : "\n  ],\n");
+        json.append("  \"counts\": {");
+        sep = "";
+        for (Map.Entry<String, Long> e : counts.entrySet()) {
+            json.append(sep).append("\n    ").append(quote(e.getKey())).append(": ").append(e.getValue());
+            sep = ",";
+        }
+        json.append(counts.isEmpty() ? "},\n" : "\n  },\n");
+        json.append("  \"slice_sizes\": ").append(Arrays.toString(sliceSizes)).append("\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    /**
+     * Write the JSON report to a file
+     * @param file
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            out.write(toJson());
+        }
+    }
+
+    public static String quote(String s) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
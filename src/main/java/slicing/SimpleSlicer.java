@@ -20,27 +20,17 @@ import com.ibm.wala.ipa.callgraph.AnalysisCache;
 import com.ibm.wala.ipa.callgraph.AnalysisOptions;
 import com.ibm.wala.ipa.callgraph.AnalysisScope;
 import com.ibm.wala.ipa.callgraph.CGNode;
-import com.ibm.wala.ipa.callgraph.CallGraph;
-import com.ibm.wala.ipa.callgraph.Entrypoint;
-import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
 import com.ibm.wala.ipa.cha.ClassHierarchy;
 import com.ibm.wala.ipa.slicer.NormalReturnCaller;
 import com.ibm.wala.ipa.slicer.NormalStatement;
-import com.ibm.wala.ipa.slicer.Slicer;
-import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
-import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
 import com.ibm.wala.ipa.slicer.Statement;
 import com.ibm.wala.ipa.slicer.Statement.Kind;
-import com.ibm.wala.ssa.IR;
 import com.ibm.wala.ssa.SSAAbstractInvokeInstruction;
 import com.ibm.wala.ssa.SSAInstruction;
 import com.ibm.wala.ssa.SSAInvokeInstruction;
 import com.ibm.wala.types.MethodReference;
 import com.ibm.wala.types.TypeReference;
-import com.ibm.wala.util.config.AnalysisScopeReader;
 import com.ibm.wala.util.debug.Assertions;
-import com.ibm.wala.util.intset.IntSet;
-import com.ibm.wala.util.strings.StringStuff;
 
 public class SimpleSlicer {
 
@@ -92,52 +82,99 @@ public class SimpleSlicer {
      * @param analysis
      */
     public static void slice(String appJar, String srcCaller, String srcCallee, String analysis) {
+        slice(appJar, srcCaller, srcCallee, analysis, DriverOptions.empty());
+    }
+
+    /**
+     * Run forward slicing with optional driver flags, those of {@link SlicingSession#fromOptions}
+     * plus --output, --output-format and --report
+     * @param appJar
+     * @param srcCaller
+     * @param srcCallee
+     * @param analysis
+     * @param driverOptions
+     */
+    public static void slice(String appJar, String srcCaller, String srcCallee, String analysis, DriverOptions driverOptions) {
         try {
+            String outputFormat = driverOptions.getString("output-format", "ndjson");
+            if (!SliceWriter.FORMATS.contains(outputFormat)) {
+                throw new IllegalArgumentException("Unknown output format " + outputFormat);
+            }
+            // the pipeline itself, quiet apart from the progress lines logged here
+            SlicingSession session = SlicingSession.fromOptions(appJar, analysis,
+                    SlicingSession.Criteria.callerCallee(srcCaller, srcCallee), driverOptions);
+            session.setExclusions(EXCLUSIONS);
+            session.setLog(System.out);
+
             // naive timing, but fine for example purposes
             final long startTime = System.currentTimeMillis();
+            // per-phase measurements for --report
+            RunMetrics metrics = new RunMetrics("SimpleSlicer");
+            metrics.setAttribute("jar", appJar);
+            metrics.setAttribute("analysis", analysis);
+            metrics.setAttribute("cg-scope", session.getCallGraphScope());
+            metrics.setAttribute("slice-kind", session.getSliceKind());
+            metrics.setAttribute("slice-mode", session.getSliceMode());
+            metrics.setAttribute("caller", srcCaller);
+            metrics.setAttribute("callee", srcCallee);
+            session.setMetrics(metrics);
+
+            // answer a repeated query on an unchanged jar straight from the cache,
+            // --output needs the statements themselves, the cache only keeps their text
+            CachedSlice cached = driverOptions.has("output") ? null : session.lookupCached();
+            if (cached != null) {
+                final long endTime = System.currentTimeMillis();
+                List<String> statements = cached.getStatements();
+                for (int i = 0; i < PRINT_LIMIT && i < statements.size(); i++) {
+                    System.out.println(statements.get(i));
+                }
+                report(analysis, endTime - startTime);
+                if (driverOptions.has("report")) {
+                    session.writeReport(new File(driverOptions.getString("report", null)));
+                }
+                return;
+            }
 
-            AnalysisScope scope = AnalysisScopeReader.makeJavaBinaryAnalysisScope(appJar, EXCLUSIONS);
-
-            // create class hierarchy, wala needs to know the lay of the land
-            ClassHierarchy cha = ClassHierarchy.make(scope);
-            Iterable<Entrypoint> entrypoints = com.ibm.wala.ipa.callgraph.impl.Util.makeMainEntrypoints(scope, cha);
-            AnalysisOptions options = new AnalysisOptions(scope, entrypoints);
-
-            // create method references
-            MethodReference srcCallerRef = StringStuff.makeMethodReference(srcCaller);
-            MethodReference srcCalleeRef = StringStuff.makeMethodReference(srcCallee);
-
-            // build the call graph for entire jar (in reality this would likely be done just for the class)
-            CallGraphBuilder builder = makeCallGraphBuilder(analysis, options, new AnalysisCache(), cha, scope);
-            CallGraph cg = builder.makeCallGraph(options, null);
-
-            // data and control flow dependencies (for reachability) in slicing
-            DataDependenceOptions dataOptions = DataDependenceOptions.FULL;
-            ControlDependenceOptions controlOptions = ControlDependenceOptions.FULL;
-
-            // find location of first statement that calls srcCallee
-            CGNode callerNode = findMethod(cg, srcCallerRef);
-            Statement stmt = findCallTo(callerNode, srcCalleeRef);
-            stmt = getReturnStatementForCall(stmt);
-
-            // collect slice forward
-            Collection<Statement> slice = null;
-            PointerAnalysis pa = builder.getPointerAnalysis();
-            System.out.println("===> Computing slice");
-            slice = Slicer.computeForwardSlice(stmt, cg, pa, dataOptions, controlOptions);
-            System.out.println("===> Done with slice");
+            // collect slice forward from the first call to srcCallee in srcCaller
+            SlicingSession.Slice slice = session.slice().iterator().next();
+            if (driverOptions.has("output")) {
+                // the full slice, dumpSlice below only prints the first few statements
+                try (SliceWriter output = SliceWriter.open(new File(driverOptions.getString("output", null)), outputFormat)) {
+                    output.writeSlice(0, slice.getSeed(), slice.getStatements());
+                    if (slice.isTruncated()) {
+                        output.markTruncated(0);
+                    }
+                }
+            }
 
-            // note that the two print statements above are factoring into this time
+            // note that the progress lines above are factoring into this time
             final long endTime = System.currentTimeMillis();
 
-            dumpSlice(slice, PRINT_LIMIT);
+            dumpSlice(slice.getStatements(), PRINT_LIMIT);
+            if (slice.isTruncated()) {
+                System.out.println("Slice truncated (" + session.slice().getTruncation() + ")");
+            }
 
             report(analysis, endTime - startTime);
+
+            // partial results would be served later as if they were complete, the session skips them
+            session.store();
+
+            if (driverOptions.has("report")) {
+                session.writeReport(new File(driverOptions.getString("report", null)));
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    // return site of the first call to srcCallee in srcCaller, the criterion for slicing
+    public static Statement findReturnSite(CallIndex index, MethodReference srcCallerRef, MethodReference srcCalleeRef) {
+        CGNode callerNode = findMethod(index, srcCallerRef);
+        Statement stmt = findCallTo(index, callerNode, srcCalleeRef);
+        return getReturnStatementForCall(stmt);
+    }
+
     // get exclusions for analysis
     public static File getExclusionsFile() {
         // read file from jar and put it into a temp file
@@ -161,35 +198,25 @@ public class SimpleSlicer {
     }
 
     // find node for method in call graph
-    public static CGNode findMethod(CallGraph cg, MethodReference method) {
-        for (Iterator<? extends CGNode> it = cg.iterator(); it.hasNext();) {
-            CGNode n = it.next();
-            if (n.getMethod().getReference().equals(method)) {
-                return n;
-            }
+    public static CGNode findMethod(CallIndex index, MethodReference method) {
+        List<CGNode> nodes = index.getNodes(method);
+        if (nodes.isEmpty()) {
+            System.err.println("call graph " + index.getCallGraph());
+            Assertions.UNREACHABLE("failed to find method " + method.toString());
+            return null;
         }
-        System.err.println("call graph " + cg);
-        Assertions.UNREACHABLE("failed to find method " + method.toString());
-        return null;
+        return nodes.get(0);
     }
 
     // modification of original to use method reference
     // find call to method in a particular node in call graph
-    public static Statement findCallTo(CGNode n, MethodReference method) {
-        IR ir = n.getIR();
-        for (Iterator<SSAInstruction> it = ir.iterateAllInstructions(); it.hasNext();) {
-            SSAInstruction s = it.next();
-            if (s instanceof SSAInvokeInstruction) {
-                SSAInvokeInstruction call = (SSAInvokeInstruction) s;
-                if (call.getCallSite().getDeclaredTarget().equals(method)) {
-                    IntSet indices = ir.getCallInstructionIndices(((SSAInvokeInstruction) s).getCallSite());
-                    Assertions.productionAssertion(indices.size() == 1, "expected 1 but got " + indices.size());
-                    return new NormalStatement(n, indices.intIterator().next());
-                }
-            }
+    public static Statement findCallTo(CallIndex index, CGNode n, MethodReference method) {
+        List<Statement> calls = index.getCallsByDeclaredTarget(n, method);
+        if (calls.isEmpty()) {
+            Assertions.UNREACHABLE("failed to find call to " + method.toString() + " in " + n);
+            return null;
         }
-        Assertions.UNREACHABLE("failed to find call to " + method.toString() + " in " + n);
-        return null;
+        return calls.get(0);
     }
 
     // modification of original to use method reference
@@ -241,7 +268,37 @@ public class SimpleSlicer {
         System.out.println(
                 "Usage:java -jar slicer.java slicing.Slicer <target-jar-path> <caller-sig> <callee-sig> <analysis>\n" +
                 "Method signatures should correspond to that found in the bytecode (javap -s)\n" +
-                "Analysis must be one of: 0cfa, vanilla-1cfa, container-1cfa\n" +
+                "Analysis must be one of: 0cfa, vanilla-1cfa, container-1cfa, adaptive-1cfa\n" +
+                "  (adaptive-1cfa runs 0-CFA first and adds 1-CFA precision only to the methods its slice reaches)\n" +
+                "Optional flags:\n" +
+                "  --slice-mode=per-seed|multi-seed|parallel  as in slicing.SimpleSlicerUsingCallee, though with the single\n" +
+                "      seed here every mode gives the same slice (ignored with --slice-kind=thin)\n" +
+                "  --cache-dir=DIR  reuse results for repeated queries on an unchanged jar\n" +
+                "  --incremental  with --cache-dir, reuse the previous slice of a rebuilt jar that adds no classes and\n" +
+                "      whose changes miss the previous call graph, main and the criteria (requires --cg-scope=full)\n" +
+                "  --report=FILE  write per-phase time and memory and analysis sizes as JSON\n" +
+                "  --no-cg-edges  leave the call graph edge count out of the report\n" +
+                "  --primordial-snapshot=DIR  read JDK classes from a snapshot in DIR, built on first use,\n" +
+                "      that holds only the classes left after exclusions\n" +
+                "  --output=FILE  write every statement of the slice to FILE\n" +
+                "  --output-format=ndjson|binary  NDJSON lines (default) or compact binary records,\n" +
+                "      convert binary with slicing.SliceWriter <binary-file> <ndjson-file>\n" +
+                "  --slice-kind=full|thin  thin follows only the data flow of the seed values, heap included, on a\n" +
+                "      single context-insensitive graph, much faster than a full SDG slice but less precise\n" +
+                "  --data-deps=OPTION  WALA data dependence option, e.g. NO_HEAP (default: FULL, NO_BASE_NO_HEAP for thin)\n" +
+                "  --control-deps=OPTION  WALA control dependence option: FULL, NO_EXCEPTIONAL_EDGES or NONE\n" +
+                "      (default: FULL, NONE for thin)\n" +
+                "  --prewarm-ir  build the IR of all application methods in parallel before the call graph\n" +
+                "  --prewarm-workers=N  worker threads for --prewarm-ir (default: available processors)\n" +
+                "  --cg-time-budget=SECONDS  stop building the call graph after SECONDS and slice over the partial graph\n" +
+                "  --slice-time-budget=SECONDS  stop slicing after SECONDS in total and keep the partial slices\n" +
+                "  --slice-statement-budget=N  stop a tabulation pass once it reaches N statements\n" +
+                "      (results cut short by a budget are reported as truncated and never cached)\n" +
+                "  --cg-scope=full|reduced  reduced builds the call graph only for code on paths to the slicing criteria\n" +
+                "      and code reachable from them, found from the class hierarchy\n" +
+                "  --cg-partitions=N  split the main entrypoints into N groups, build their call graphs concurrently\n" +
+                "      and slice each on its own, merging slices by seed (not with adaptive-1cfa)\n" +
+                "  --cg-workers=N  worker threads for --cg-partitions (default: one per partition, up to the processors)\n" +
                 "For example:\n" +
                 "slicing.Slicer example.jar 'Example.main([Ljava/lang/String;)V;' 'Example.bye(Ljava/lang/String;)Ljava/lang/String;' 0cfa\n"
         );
@@ -252,7 +309,9 @@ public class SimpleSlicer {
      * @param args
      */
     public static void main(String[] args) {
-        List<String> analysisNames = Arrays.asList("0cfa", "vanilla-1cfa", "container-1cfa");
+        List<String> analysisNames = Arrays.asList("0cfa", "vanilla-1cfa", "container-1cfa", AdaptivePrecision.ANALYSIS);
+        DriverOptions driverOptions = DriverOptions.parse(args);
+        args = driverOptions.getPositional().toArray(new String[0]);
         if (args.length != 4) {
             help();
             System.exit(1);
@@ -268,6 +327,6 @@ public class SimpleSlicer {
             System.exit(1);
         }
 
-        slice(jarPath, srcCaller, srcCallee, analysis);
+        slice(jarPath, srcCaller, srcCallee, analysis, driverOptions);
     }
 }
\ No newline at end of file
@@ -10,25 +10,17 @@ package slicing;
 
 import com.ibm.wala.ipa.callgraph.*;
 import com.ibm.wala.ipa.callgraph.impl.Util;
-import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
 import com.ibm.wala.ipa.cha.ClassHierarchy;
 import com.ibm.wala.ipa.slicer.NormalReturnCaller;
 import com.ibm.wala.ipa.slicer.NormalStatement;
-import com.ibm.wala.ipa.slicer.Slicer;
-import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
-import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
 import com.ibm.wala.ipa.slicer.Statement;
 import com.ibm.wala.ipa.slicer.Statement.Kind;
-import com.ibm.wala.ssa.IR;
 import com.ibm.wala.ssa.SSAAbstractInvokeInstruction;
 import com.ibm.wala.ssa.SSAInstruction;
 import com.ibm.wala.ssa.SSAInvokeInstruction;
 import com.ibm.wala.types.MethodReference;
 import com.ibm.wala.types.TypeReference;
-import com.ibm.wala.util.config.AnalysisScopeReader;
 import com.ibm.wala.util.debug.Assertions;
-import com.ibm.wala.util.intset.IntSet;
-import com.ibm.wala.util.strings.StringStuff;
 
 import java.io.*;
 import java.util.*;
@@ -82,62 +74,93 @@ public class SimpleSlicerUsingCallee {
      * @param analysis
      */
     public static void slice(String appJar, String srcCallee, String analysis) {
-        try {
-            // naive timing, but fine for example purposes
-            final long startTime = System.currentTimeMillis();
-
-            AnalysisScope scope = AnalysisScopeReader.makeJavaBinaryAnalysisScope(appJar, EXCLUSIONS);
-
-            // create class hierarchy, wala needs to know the lay of the land
-            ClassHierarchy cha = ClassHierarchy.make(scope);
-            Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, cha);
-            AnalysisOptions options = new AnalysisOptions(scope, entrypoints);
-
-
-            // create method reference for callee
-            MethodReference srcCalleeRef = StringStuff.makeMethodReference(srcCallee);
-
-            // build the call graph for entire jar (in reality this would likely be done just for the class)
-            CallGraphBuilder builder = makeCallGraphBuilder(analysis, options, new AnalysisCache(), cha, scope);
-            CallGraph cg = builder.makeCallGraph(options, null);
-            // pointer analysis
-            PointerAnalysis pa = builder.getPointerAnalysis();
-
-
-            // data and control flow dependencies (for reachability) in slicing
-            DataDependenceOptions dataOptions = DataDependenceOptions.FULL;
-            ControlDependenceOptions controlOptions = ControlDependenceOptions.FULL;
-
-            // find all callers that call srcCallexe
-            List<CGNode> callerNodes = findCallers(cg, srcCalleeRef);
+        slice(appJar, srcCallee, analysis, DriverOptions.empty());
+    }
 
-            // find all call sites
-            List<Statement> calls = new ArrayList<Statement>();
-            for (CGNode caller : callerNodes) {
-                calls.addAll(findCallsTo(caller, srcCalleeRef));
+    /**
+     * Run forward slicing with optional driver flags, those of {@link SlicingSession#fromOptions}
+     * plus --output, --output-format and --report
+     * @param appJar
+     * @param srcCallee
+     * @param analysis
+     * @param driverOptions
+     */
+    public static void slice(String appJar, String srcCallee, String analysis, DriverOptions driverOptions) {
+        try {
+            String outputFormat = driverOptions.getString("output-format", "ndjson");
+            if (!SliceWriter.FORMATS.contains(outputFormat)) {
+                throw new IllegalArgumentException("Unknown output format " + outputFormat);
             }
+            // the pipeline itself, quiet apart from the progress lines logged here
+            SlicingSession session = SlicingSession.fromOptions(appJar, analysis,
+                    SlicingSession.Criteria.callee(srcCallee), driverOptions);
+            session.setExclusions(EXCLUSIONS);
+            session.setLog(System.out);
 
-            // find all return statements for calls
-            List<Statement> returns = new ArrayList<>();
-            for (Statement call : calls) {
-                returns.add(getReturnStatementForCall(call));
+            // naive timing, but fine for example purposes
+            final long startTime = System.currentTimeMillis();
+            // per-phase measurements for --report
+            RunMetrics metrics = new RunMetrics("SimpleSlicerUsingCallee");
+            metrics.setAttribute("jar", appJar);
+            metrics.setAttribute("analysis", analysis);
+            metrics.setAttribute("cg-scope", session.getCallGraphScope());
+            metrics.setAttribute("slice-kind", session.getSliceKind());
+            metrics.setAttribute("callee", srcCallee);
+            metrics.setAttribute("slice-mode", session.getSliceMode());
+            session.setMetrics(metrics);
+
+            // answer a repeated query on an unchanged jar straight from the cache,
+            // --output needs the statements themselves, the cache only keeps their text
+            CachedSlice cached = driverOptions.has("output") ? null : session.lookupCached();
+            if (cached != null) {
+                System.out.println("Collected " + cached.getSeeds().size() + " return sites to use as criteria for slicing (cached)");
+                final long endTime = System.currentTimeMillis();
+                System.out.println("Collected " + cached.getStatements().size() + " statements in slices");
+                if (session.getSliceMode().equals("multi-seed")) {
+                    cached.dumpSeedSummary(PRINT_LIMIT);
+                }
+                report(analysis, endTime - startTime);
+                if (driverOptions.has("report")) {
+                    session.writeReport(new File(driverOptions.getString("report", null)));
+                }
+                return;
             }
 
+            List<Statement> returns = session.getSeeds();
             System.out.println("Collected " + returns.size() + " return sites to use as criteria for slicing");
 
-            // collect forwards
-            List<Statement> slices = new ArrayList<>();
-            for(Statement ret : returns) {
-                System.out.println("===> Computing slice");
-                Collection<Statement> slice = Slicer.computeForwardSlice(ret, cg, pa, dataOptions, controlOptions);
-                slices.addAll(slice);
-                System.out.println("===> Done with slice");
+            // collect forwards, streaming each slice to --output as soon as it is computed
+            SlicingSession.Slices slices = session.slice();
+            try (SliceWriter output = driverOptions.has("output")
+                    ? SliceWriter.open(new File(driverOptions.getString("output", null)), outputFormat) : null) {
+                for (SlicingSession.Slice slice : slices) {
+                    if (output != null) {
+                        output.writeSlice(slice.getIndex(), slice.getSeed(), slice.getStatements());
+                        if (slice.isTruncated()) {
+                            output.markTruncated(slice.getIndex());
+                        }
+                    }
+                }
             }
 
-            // note that the two print statements above are factoring into this time
+            // note that the progress lines above are factoring into this time
             final long endTime = System.currentTimeMillis();
             System.out.println("Collected " + slices.size() + " statements in slices");
+            if (slices.getTruncatedCount() > 0) {
+                System.out.println("Slices truncated for " + slices.getTruncatedCount() + " of " + returns.size()
+                        + " seeds (" + slices.getTruncation() + ")");
+            }
+            if (slices.getMultiSeedSlice() != null) {
+                slices.getMultiSeedSlice().dumpSeedSummary(PRINT_LIMIT);
+            }
             report(analysis, endTime - startTime);
+
+            // partial results would be served later as if they were complete, the session skips them
+            session.store();
+
+            if (driverOptions.has("report")) {
+                session.writeReport(new File(driverOptions.getString("report", null)));
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -166,40 +189,37 @@ public class SimpleSlicerUsingCallee {
     }
 
 
-    // find methods that perform a call to method mr in the callgraph cg
-    public static List<CGNode> findCallers(CallGraph cg, MethodReference mr) {
-        List<CGNode> callers = new ArrayList<>();
-        for (Iterator<CGNode> it = cg.iterator(); it.hasNext();) {
-            CGNode callee = it.next();
-            if (callee.getMethod().getReference().equals(mr)) {
-                for(Iterator<CGNode> callerIt = cg.getPredNodes(callee); callerIt.hasNext(); ) {
-                    callers.add(callerIt.next());
-                }
-                return callers;
-            }
+    // return sites of all calls to srcCallee, the criteria for slicing
+    public static List<Statement> findReturnSites(CallIndex index, MethodReference srcCalleeRef) {
+        // find all callers that call srcCallexe
+        List<CGNode> callerNodes = findCallers(index, srcCalleeRef);
+
+        // find all call sites
+        List<Statement> calls = new ArrayList<Statement>();
+        for (CGNode caller : callerNodes) {
+            calls.addAll(findCallsTo(index, caller, srcCalleeRef));
         }
 
-        Assertions.UNREACHABLE("failed to find callers for " + mr.toString());
-        return callers;
+        // find all return statements for calls
+        List<Statement> returns = new ArrayList<>();
+        for (Statement call : calls) {
+            returns.add(getReturnStatementForCall(call));
+        }
+        return returns;
+    }
+
+    // find methods that perform a call to method mr in the callgraph cg
+    public static List<CGNode> findCallers(CallIndex index, MethodReference mr) {
+        if (index.getNodes(mr).isEmpty()) {
+            Assertions.UNREACHABLE("failed to find callers for " + mr.toString());
+        }
+        return new ArrayList<>(index.getCallers(mr));
     }
 
 
     // find all call sites targeting method in a given call graph node
-    public static List<Statement> findCallsTo(CGNode n, MethodReference method) {
-        List<Statement> statements = new ArrayList<>();
-        IR ir = n.getIR();
-        for (Iterator<SSAInstruction> it = ir.iterateAllInstructions(); it.hasNext();) {
-            SSAInstruction s = it.next();
-            if (s instanceof SSAInvokeInstruction) {
-                SSAInvokeInstruction call = (SSAInvokeInstruction) s;
-                if (call.getCallSite().getDeclaredTarget().equals(method)) {
-                    IntSet indices = ir.getCallInstructionIndices(((SSAInvokeInstruction) s).getCallSite());
-                    Assertions.productionAssertion(indices.size() == 1, "expected 1 but got " + indices.size());
-                    Statement callStmt = new NormalStatement(n, indices.intIterator().next());
-                    statements.add(callStmt);
-                }
-            }
-        }
+    public static List<Statement> findCallsTo(CallIndex index, CGNode n, MethodReference method) {
+        List<Statement> statements = index.getCallsByDeclaredTarget(n, method);
         if (statements.size() == 0) {
             Assertions.UNREACHABLE("failed to find call to " + method.toString() + " in " + n);
 
@@ -244,7 +264,39 @@ public class SimpleSlicerUsingCallee {
         System.out.println(
                 "Usage:java -jar slicer.java slicing.Slicer <target-jar-path> <callee-sig> <analysis>\n" +
                 "Method signatures should correspond to that found in the bytecode (javap -s)\n" +
-                "Analysis must be one of: 0cfa, vanilla-1cfa, container-1cfa\n" +
+                "Analysis must be one of: 0cfa, vanilla-1cfa, container-1cfa, adaptive-1cfa\n" +
+                "  (adaptive-1cfa runs 0-CFA first and adds 1-CFA precision only to the methods its slice reaches)\n" +
+                "Optional flags:\n" +
+                "  --slice-mode=per-seed|multi-seed|parallel  multi-seed builds the SDG once and slices all seeds in one pass,\n" +
+                "      parallel slices seeds concurrently (ignored with --slice-kind=thin)\n" +
+                "  --workers=N  worker threads for parallel mode (default: available processors)\n" +
+                "  --sdg=shared|per-worker  parallel mode shares one synchronized SDG or builds one per worker\n" +
+                "  --cache-dir=DIR  reuse results for repeated queries on an unchanged jar\n" +
+                "  --incremental  with --cache-dir, reuse the previous slice of a rebuilt jar that adds no classes and\n" +
+                "      whose changes miss the previous call graph, main and the criteria (requires --cg-scope=full)\n" +
+                "  --report=FILE  write per-phase time and memory and analysis sizes as JSON\n" +
+                "  --no-cg-edges  leave the call graph edge count out of the report\n" +
+                "  --primordial-snapshot=DIR  read JDK classes from a snapshot in DIR, built on first use,\n" +
+                "      that holds only the classes left after exclusions\n" +
+                "  --output=FILE  stream every slice's statements to FILE as they are computed\n" +
+                "  --output-format=ndjson|binary  NDJSON lines (default) or compact binary records,\n" +
+                "      convert binary with slicing.SliceWriter <binary-file> <ndjson-file>\n" +
+                "  --slice-kind=full|thin  thin follows only the data flow of the seed values, heap included, on a\n" +
+                "      single context-insensitive graph, much faster than a full SDG slice but less precise\n" +
+                "  --data-deps=OPTION  WALA data dependence option, e.g. NO_HEAP (default: FULL, NO_BASE_NO_HEAP for thin)\n" +
+                "  --control-deps=OPTION  WALA control dependence option: FULL, NO_EXCEPTIONAL_EDGES or NONE\n" +
+                "      (default: FULL, NONE for thin)\n" +
+                "  --prewarm-ir  build the IR of all application methods in parallel before the call graph\n" +
+                "  --prewarm-workers=N  worker threads for --prewarm-ir (default: available processors)\n" +
+                "  --cg-time-budget=SECONDS  stop building the call graph after SECONDS and slice over the partial graph\n" +
+                "  --slice-time-budget=SECONDS  stop slicing after SECONDS in total and keep the partial slices\n" +
+                "  --slice-statement-budget=N  stop a tabulation pass once it reaches N statements\n" +
+                "      (results cut short by a budget are reported as truncated and never cached)\n" +
+                "  --cg-scope=full|reduced  reduced builds the call graph only for code on paths to the slicing criteria\n" +
+                "      and code reachable from them, found from the class hierarchy\n" +
+                "  --cg-partitions=N  split the main entrypoints into N groups, build their call graphs concurrently\n" +
+                "      and slice each on its own, merging slices by seed (not with adaptive-1cfa)\n" +
+                "  --cg-workers=N  worker threads for --cg-partitions (default: one per partition, up to the processors)\n" +
                 "For example:\n" +
                 "slicing.SimpleSlicerUsingCallee example.jar 'Example.bye(Ljava/lang/String;)Ljava/lang/String;' 0cfa\n"
         );
@@ -255,7 +307,9 @@ public class SimpleSlicerUsingCallee {
      * @param args
      */
     public static void main(String[] args) {
-        List<String> analysisNames = Arrays.asList("0cfa", "vanilla-1cfa", "container-1cfa");
+        List<String> analysisNames = Arrays.asList("0cfa", "vanilla-1cfa", "container-1cfa", AdaptivePrecision.ANALYSIS);
+        DriverOptions driverOptions = DriverOptions.parse(args);
+        args = driverOptions.getPositional().toArray(new String[0]);
         if (args.length != 3) {
             help();
             System.exit(1);
@@ -270,6 +324,6 @@ public class SimpleSlicerUsingCallee {
             System.exit(1);
         }
 
-        slice(jarPath, srcCallee, analysis);
+        slice(jarPath, srcCallee, analysis, driverOptions);
     }
 }
\ No newline at end of file
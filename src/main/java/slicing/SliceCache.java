@@ -0,0 +1,395 @@
+package slicing;
+
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.slicer.Statement;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * On-disk cache of slices, keyed by the content hash of the target jar, the
+ * analysis name and the contents of the exclusions file, and then by query.
+ *
+ * The cache is per query. WALA's CallGraph and PointerAnalysis are not
+ * serializable (they hang on to the class hierarchy, IR caches and solver state),
+ * so only the slice produced for each query is kept. A repeated query against an
+ * unchanged jar is answered straight from disk, while a new query on the same jar
+ * builds the class hierarchy, call graph and pointer analysis again.
+ *
+ * For incremental re-analysis each key also gets a JarManifest of the jar, the
+ * methods in its call graph, and a pointer from the jar's path (plus analysis and
+ * exclusions) to the latest key analyzed for it. When a rebuilt jar misses the
+ * cache, its manifest is diffed against the previous one. The previous slice is
+ * reused only if no class was added, no changed class or method is in the previous
+ * call graph, no changed class declares main (a new entrypoint) and no changed
+ * method calls something the criteria may match. An added class could become a
+ * dispatch target for a call already in the call graph, so it always rules out
+ * reuse. Under those conditions the call graph, and so every slice over it, is
+ * the same.
+ *
+ * Layout: <cache-dir>/<key>/{methods.txt, manifest.tsv, slices/<query-hash>.txt}
+ *         <cache-dir>/latest/<lineage-hash>.txt
+ */
+public class SliceCache {
+
+    private static final String FORMAT = "slicing-cache v2";
+
+    private final File root;
+    private PrintStream log;
+
+    public SliceCache(File root) {
+        this.root = root;
+    }
+
+    // where to report skipped entries and why a previous analysis is not reused, nothing is printed when null
+    public void setLog(PrintStream log) {
+        this.log = log;
+    }
+
+    /**
+     * Build the cache key for a jar + analysis + exclusions combination
+     * @param appJar
+     * @param analysis
+     * @param exclusions
+     * @return
+     * @throws IOException
+     */
+    public static String makeKey(String appJar, String analysis, File exclusions) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(hashFile(new File(appJar)).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(analysis.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        if (exclusions != null) {
+            digest.update(hashFile(exclusions).getBytes(StandardCharsets.UTF_8));
+        }
+        return toHex(digest.digest());
+    }
+
+    // content hash of a file
+    public static String hashFile(File file) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            byte[] data = new byte[8192];
+            int read;
+            while ((read = in.read(data)) != -1) {
+                digest.update(data, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Look up the slice stored for a query, null on a miss
+     * @param key
+     * @param query
+     * @return
+     */
+    public CachedSlice lookup(String key, String query) {
+        File file = sliceFile(key, query);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            if (!FORMAT.equals(in.readLine()) || !("query " + query).equals(in.readLine())) {
+                // stale format or hash collision, treat as a miss
+                return null;
+            }
+            List<String> seeds = new ArrayList<>();
+            List<Integer> sizes = new ArrayList<>();
+            List<String> statements = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("seed ")) {
+                    int tab = line.indexOf('\t');
+                    sizes.add(Integer.parseInt(line.substring(5, tab)));
+                    seeds.add(unescape(line.substring(tab + 1)));
+                } else if (line.startsWith("stmt ")) {
+                    statements.add(unescape(line.substring(5)));
+                }
+            }
+            int[] sliceSizes = new int[sizes.size()];
+            for (int i = 0; i < sliceSizes.length; i++) {
+                sliceSizes[i] = sizes.get(i);
+            }
+            return new CachedSlice(seeds, sliceSizes, statements);
+        } catch (IOException | RuntimeException e) {
+            log("Ignoring unreadable cache entry " + file + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Store the slice computed for a query
+     * @param key
+     * @param query
+     * @param seeds
+     * @param sliceSizes
+     * @param statements
+     * @throws IOException
+     */
+    public void store(String key, String query, List<Statement> seeds, int[] sliceSizes,
+                      Collection<Statement> statements) throws IOException {
+        File file = sliceFile(key, query);
+        File tmp = new File(file.getPath() + ".tmp");
+        file.getParentFile().mkdirs();
+        try (PrintWriter out = writer(tmp)) {
+            out.println(FORMAT);
+            out.println("query " + query);
+            for (int i = 0; i < seeds.size(); i++) {
+                out.println("seed " + sliceSizes[i] + "\t" + escape(seeds.get(i).toString()));
+            }
+            for (Statement s : statements) {
+                out.println("stmt " + escape(s.toString()));
+            }
+        }
+        commit(tmp, file);
+    }
+
+    /**
+     * Record the jar manifest and the call graph's methods for a key and make it the
+     * latest key for the jar, so the next build of the jar can be diffed against it
+     * @param key
+     * @param appJar
+     * @param analysis
+     * @param exclusions
+     * @param cg call graph of the whole jar
+     * @throws IOException
+     */
+    public void storeIncremental(String key, String appJar, String analysis, File exclusions, CallGraph cg)
+            throws IOException {
+        File dir = new File(root, key);
+        dir.mkdirs();
+        File methodsFile = new File(dir, "methods.txt");
+        if (!methodsFile.isFile()) {
+            Set<String> methods = new TreeSet<>();
+            for (CGNode n : cg) {
+                methods.add(n.getMethod().getSignature());
+            }
+            File tmp = new File(methodsFile.getPath() + ".tmp");
+            try (PrintWriter out = writer(tmp)) {
+                for (String m : methods) {
+                    out.println(m);
+                }
+            }
+            commit(tmp, methodsFile);
+        }
+        File manifestFile = new File(dir, "manifest.tsv");
+        if (!manifestFile.isFile()) {
+            File tmp = new File(manifestFile.getPath() + ".tmp");
+            JarManifest.read(new File(appJar)).write(tmp);
+            commit(tmp, manifestFile);
+        }
+        setLatest(appJar, analysis, exclusions, key);
+    }
+
+    /**
+     * Answer a query for a jar that missed the cache from the previous analysis of
+     * the same jar path, if none of the changes can change its call graph or seeds.
+     * On success the previous results are copied under the new key. Null when
+     * there is nothing to reuse.
+     * @param key
+     * @param appJar
+     * @param analysis
+     * @param exclusions
+     * @param query
+     * @param criteriaCalls matches the calls the query's seeds are found at
+     * @return
+     */
+    public CachedSlice lookupIncremental(String key, String appJar, String analysis, File exclusions, String query,
+                                         JarManifest.CallMatcher criteriaCalls) {
+        try {
+            String previous = getLatest(appJar, analysis, exclusions);
+            if (previous == null || previous.equals(key)) {
+                return null;
+            }
+            File prevDir = new File(root, previous);
+            File prevManifest = new File(prevDir, "manifest.tsv");
+            File prevMethods = new File(prevDir, "methods.txt");
+            if (!prevManifest.isFile() || !prevMethods.isFile()) {
+                return null;
+            }
+            JarManifest before = JarManifest.load(prevManifest);
+            JarManifest after = JarManifest.read(new File(appJar));
+            Set<String> changedMethods = before.changedMethods(after);
+            Set<String> changedClasses = before.changedClasses(after);
+            Set<String> addedClasses = before.addedClasses(after);
+
+            Set<String> cgMethods = readLines(prevMethods);
+            Set<String> cgClasses = new HashSet<>();
+            for (String m : cgMethods) {
+                cgClasses.add(m.substring(0, m.lastIndexOf('.', m.indexOf('('))));
+            }
+            int affected = 0;
+            for (String m : changedMethods) {
+                if (cgMethods.contains(m)) {
+                    affected++;
+                }
+            }
+            for (String c : changedClasses) {
+                if (cgClasses.contains(c)) {
+                    affected++;
+                }
+            }
+            log("Changed since previous analysis: " + changedClasses.size() + " classes, "
+                    + changedMethods.size() + " methods, " + affected + " of them in its call graph");
+            if (affected > 0) {
+                return null;
+            }
+            if (!addedClasses.isEmpty()) {
+                log("Not reusing previous analysis: " + addedClasses.size() + " classes added");
+                return null;
+            }
+            for (String c : changedClasses) {
+                if (after.declaresMain(c)) {
+                    log("Not reusing previous analysis: changed class " + c + " declares main");
+                    return null;
+                }
+            }
+            for (String m : changedMethods) {
+                if (after.calls(m, criteriaCalls)) {
+                    log("Not reusing previous analysis: changed method " + m + " calls the criteria");
+                    return null;
+                }
+            }
+            CachedSlice slice = lookup(previous, query);
+            if (slice == null) {
+                return null;
+            }
+            // the analysis is unchanged, carry it over to the new key
+            File dir = new File(root, key);
+            dir.mkdirs();
+            copy(prevMethods, new File(dir, "methods.txt"));
+            File manifestTmp = new File(dir, "manifest.tsv.tmp");
+            after.write(manifestTmp);
+            commit(manifestTmp, new File(dir, "manifest.tsv"));
+            File sliceFile = sliceFile(key, query);
+            sliceFile.getParentFile().mkdirs();
+            copy(sliceFile(previous, query), sliceFile);
+            setLatest(appJar, analysis, exclusions, key);
+            return slice;
+        } catch (IOException | RuntimeException e) {
+            log("Ignoring previous analysis for " + appJar + ": " + e);
+            return null;
+        }
+    }
+
+    private void log(String line) {
+        if (log != null) {
+            log.println(line);
+        }
+    }
+
+    private static Set<String> readLines(File file) throws IOException {
+        Set<String> lines = new HashSet<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    // the latest key is tracked per jar path, analysis and exclusions
+    private File latestFile(String appJar, String analysis, File exclusions) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(new File(appJar).getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(analysis.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        if (exclusions != null) {
+            digest.update(hashFile(exclusions).getBytes(StandardCharsets.UTF_8));
+        }
+        return new File(new File(root, "latest"), toHex(digest.digest()) + ".txt");
+    }
+
+    private String getLatest(String appJar, String analysis, File exclusions) throws IOException {
+        File file = latestFile(appJar, analysis, exclusions);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            return in.readLine();
+        }
+    }
+
+    private void setLatest(String appJar, String analysis, File exclusions, String key) throws IOException {
+        File file = latestFile(appJar, analysis, exclusions);
+        file.getParentFile().mkdirs();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (PrintWriter out = writer(tmp)) {
+            out.println(key);
+        }
+        commit(tmp, file);
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        File tmp = new File(to.getPath() + ".tmp");
+        try (InputStream in = new FileInputStream(from); OutputStream out = new FileOutputStream(tmp)) {
+            byte[] data = new byte[8192];
+            int read;
+            while ((read = in.read(data)) != -1) {
+                out.write(data, 0, read);
+            }
+        }
+        commit(tmp, to);
+    }
+
+    private File sliceFile(String key, String query) {
+        String name = toHex(sha256().digest(query.getBytes(StandardCharsets.UTF_8)));
+        return new File(new File(new File(root, key), "slices"), name + ".txt");
+    }
+
+    private static PrintWriter writer(File file) throws IOException {
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)));
+    }
+
+    // rename into place so concurrent readers never see a half written file
+    private static void commit(File tmp, File target) throws IOException {
+        if (!tmp.renameTo(target)) {
+            target.delete();
+            if (!tmp.renameTo(target)) {
+                throw new IOException("could not move " + tmp + " to " + target);
+            }
+        }
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\n", "\\n").replace("\t", "\\t");
+    }
+
+    private static String unescape(String s) {
+        StringBuilder out = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char next = s.charAt(++i);
+                out.append(next == 'n' ? '\n' : next == 't' ? '\t' : next);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+}
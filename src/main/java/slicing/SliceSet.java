@@ -0,0 +1,213 @@
+package slicing;
+
+import com.ibm.wala.ipa.slicer.Statement;
+
+import java.util.*;
+
+/**
+ * Slices of many seeds kept as bitsets over a dense numbering of the statements
+ * they contain.
+ *
+ * Each statement is numbered the first time any slice includes it, so a statement
+ * shared by many slices is stored once, and each slice costs one bit per numbered
+ * statement. The union of all slices is maintained as slices are added, so its size
+ * is the number of distinct statements rather than the sum of slice sizes.
+ *
+ * Statements compare by value (node and instruction), so slices computed over
+ * different SDG instances for the same call graph number consistently.
+ *
+ * A seed's slice is marked truncated when it was cut short by a Budget, so it may
+ * be missing statements.
+ */
+public class SliceSet {
+
+    private final List<Statement> seeds;
+    private final Map<Statement, Integer> numbers = new HashMap<>();
+    private final List<Statement> statements = new ArrayList<>();
+    private final BitSet[] slices;
+    private final BitSet union = new BitSet();
+    private final BitSet truncated = new BitSet();
+
+    public SliceSet(List<Statement> seeds) {
+        this.seeds = seeds;
+        this.slices = new BitSet[seeds.size()];
+        for (int i = 0; i < slices.length; i++) {
+            slices[i] = new BitSet();
+        }
+    }
+
+    /**
+     * Add statements to the slice of a seed
+     * @param seedIndex
+     * @param slice
+     */
+    public void add(int seedIndex, Collection<Statement> slice) {
+        BitSet bits = slices[seedIndex];
+        for (Statement s : slice) {
+            int n = number(s);
+            bits.set(n);
+            union.set(n);
+        }
+    }
+
+    // the slice of a seed is partial
+    public void markTruncated(int seedIndex) {
+        truncated.set(seedIndex);
+    }
+
+    public boolean isTruncated(int seedIndex) {
+        return truncated.get(seedIndex);
+    }
+
+    // number of seeds whose slice is partial
+    public int getTruncatedCount() {
+        return truncated.cardinality();
+    }
+
+    // dense number of a statement, assigning the next one if it is new
+    private int number(Statement s) {
+        Integer n = numbers.get(s);
+        if (n == null) {
+            n = statements.size();
+            numbers.put(s, n);
+            statements.add(s);
+        }
+        return n;
+    }
+
+    public List<Statement> getSeeds() {
+        return seeds;
+    }
+
+    // number of distinct statements over all slices
+    public int size() {
+        return union.cardinality();
+    }
+
+    public int getSliceSize(int seedIndex) {
+        return slices[seedIndex].cardinality();
+    }
+
+    public int[] getSliceSizes() {
+        int[] sizes = new int[slices.length];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = getSliceSize(i);
+        }
+        return sizes;
+    }
+
+    /**
+     * Whether a seed's slice contains a statement
+     * @param seedIndex
+     * @param s
+     * @return
+     */
+    public boolean contains(int seedIndex, Statement s) {
+        Integer n = numbers.get(s);
+        return n != null && slices[seedIndex].get(n);
+    }
+
+    /**
+     * Indices of the seeds whose slice contains a statement
+     * @param s
+     * @return
+     */
+    public BitSet getSeedsReaching(Statement s) {
+        BitSet reaching = new BitSet();
+        Integer n = numbers.get(s);
+        if (n != null) {
+            for (int i = 0; i < slices.length; i++) {
+                if (slices[i].get(n)) {
+                    reaching.set(i);
+                }
+            }
+        }
+        return reaching;
+    }
+
+    /**
+     * Statements in the slice of any of the given seeds, as statement numbers
+     * @param seedIndices
+     * @return
+     */
+    public BitSet union(int... seedIndices) {
+        BitSet result = new BitSet();
+        for (int i : seedIndices) {
+            result.or(slices[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Statements in the slices of all the given seeds, as statement numbers
+     * @param seedIndices
+     * @return
+     */
+    public BitSet intersection(int... seedIndices) {
+        if (seedIndices.length == 0) {
+            return new BitSet();
+        }
+        BitSet result = (BitSet) slices[seedIndices[0]].clone();
+        for (int i = 1; i < seedIndices.length; i++) {
+            result.and(slices[seedIndices[i]]);
+        }
+        return result;
+    }
+
+    // statement with the given number
+    public Statement getStatement(int number) {
+        return statements.get(number);
+    }
+
+    // view of the slice of one seed
+    public Collection<Statement> getSlice(int seedIndex) {
+        return toStatements(slices[seedIndex]);
+    }
+
+    // view of the union of all slices
+    public Collection<Statement> getStatements() {
+        return toStatements(union);
+    }
+
+    /**
+     * View of a set of statement numbers as statements. The view reads the bitset,
+     * so it changes if the bitset does.
+     * @param bits
+     * @return
+     */
+    public Collection<Statement> toStatements(final BitSet bits) {
+        return new AbstractCollection<Statement>() {
+            @Override
+            public Iterator<Statement> iterator() {
+                return new Iterator<Statement>() {
+                    private int next = bits.nextSetBit(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return next >= 0;
+                    }
+
+                    @Override
+                    public Statement next() {
+                        if (next < 0) {
+                            throw new NoSuchElementException();
+                        }
+                        Statement s = statements.get(next);
+                        next = bits.nextSetBit(next + 1);
+                        return s;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return bits.cardinality();
+            }
+        };
+    }
+}
@@ -0,0 +1,585 @@
+package slicing;
+
+import com.ibm.wala.classLoader.IBytecodeMethod;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.slicer.HeapStatement;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.ipa.slicer.StatementWithInstructionIndex;
+import com.ibm.wala.ipa.slicer.ValueNumberCarrier;
+import com.ibm.wala.shrikeCT.InvalidClassFileException;
+import com.ibm.wala.ssa.IR;
+import com.ibm.wala.ssa.SSAInstruction;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Streams slices to a file as they are computed, one record per statement, so that
+ * full results can be exported without holding them as text in memory.
+ *
+ * Every statement is written as: kind, method signature, call graph node number,
+ * SSA instruction index, bytecode index, source line and a detail string. The
+ * detail is the SSA instruction for statements tied to an instruction and the
+ * heap location for heap statements. It is empty otherwise. Statements that hold
+ * a value number carry it too. Numbers that do not apply are -1.
+ *
+ * Two formats are supported:
+ *  - ndjson: one JSON object per line. A {"seed": ...} line opens each slice,
+ *    then there is one {"stmt": ...} line per statement and an {"end": ...} line
+ *    with the slice size. A slice cut short by a Budget is followed by a
+ *    {"truncated": ...} line.
+ *  - binary: the magic "SLCB" and a version byte, then tagged records. Kinds,
+ *    methods and details are interned. Each string is written once, in a table
+ *    record, the first time it is used. Statements refer to it by number. Integers
+ *    are unsigned LEB128 varints. Optional numbers are stored plus one, so that
+ *    -1 is written as 0. Details are mostly distinct, so their table is bounded:
+ *    once it is full, a reset record empties it and numbering starts over.
+ * SliceWriter.main converts the binary format back to NDJSON.
+ *
+ * Output goes through a FileChannel and a single reused buffer. The IRs of
+ * recently described nodes are kept, as consecutive statements mostly share one.
+ */
+public abstract class SliceWriter implements Closeable {
+
+    public static final List<String> FORMATS = Arrays.asList("ndjson", "binary");
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // binary record tags
+    static final byte KIND = 1;
+    static final byte METHOD = 2;
+    static final byte DETAIL = 3;
+    static final byte SEED = 4;
+    static final byte STATEMENT = 5;
+    static final byte END = 6;
+    static final byte TRUNCATED = 7;
+    static final byte DETAILS_RESET = 8;
+    static final byte[] MAGIC = { 'S', 'L', 'C', 'B' };
+    // version 2 added TRUNCATED records, version 3 DETAILS_RESET records
+    static final byte VERSION = 3;
+
+    // details interned before the table is reset
+    static final int DETAIL_TABLE_SIZE = 1 << 16;
+    // IRs kept for describing statements
+    private static final int IR_CACHE_SIZE = 64;
+
+    /**
+     * Fields of one statement, reused between statements
+     */
+    protected static class Record {
+        String kind;
+        String method;
+        int node;
+        int index;
+        int bytecodeIndex;
+        int line;
+        int valueNumber;
+        String detail;
+    }
+
+    // access ordered, drops the least recently used IR
+    private static class IRCache extends LinkedHashMap<CGNode, IR> {
+        private static final long serialVersionUID = 1L;
+
+        IRCache() {
+            super(IR_CACHE_SIZE * 2, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CGNode, IR> eldest) {
+            return size() > IR_CACHE_SIZE;
+        }
+    }
+
+    private final FileOutputStream file;
+    private final FileChannel channel;
+    protected final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final Record record = new Record();
+    private final Map<CGNode, IR> irs = new IRCache();
+
+    // slice in progress
+    private int seedIndex = -1;
+    private int written;
+
+    protected SliceWriter(File output) throws IOException {
+        this.file = new FileOutputStream(output);
+        this.channel = file.getChannel();
+    }
+
+    /**
+     * Open a writer for the given format
+     * @param output
+     * @param format ndjson or binary
+     * @return
+     * @throws IOException
+     */
+    public static SliceWriter open(File output, String format) throws IOException {
+        switch (format) {
+            case "ndjson":
+                return new Ndjson(output);
+            case "binary":
+                return new Binary(output, DETAIL_TABLE_SIZE);
+            default:
+                throw new IllegalArgumentException("Unknown output format " + format);
+        }
+    }
+
+    /**
+     * Write the slice of one seed
+     * @param seedIndex
+     * @param seed
+     * @param slice
+     * @throws IOException
+     */
+    public void writeSlice(int seedIndex, Statement seed, Iterable<Statement> slice) throws IOException {
+        beginSeed(seedIndex, seed);
+        for (Statement s : slice) {
+            write(s);
+        }
+        endSeed();
+    }
+
+    public void beginSeed(int seedIndex, Statement seed) throws IOException {
+        if (this.seedIndex >= 0) {
+            throw new IllegalStateException("slice of seed " + this.seedIndex + " is still open");
+        }
+        this.seedIndex = seedIndex;
+        this.written = 0;
+        writeSeed(seedIndex, describe(seed));
+    }
+
+    public void write(Statement s) throws IOException {
+        if (seedIndex < 0) {
+            throw new IllegalStateException("no slice is open");
+        }
+        writeStatement(seedIndex, describe(s));
+        written++;
+    }
+
+    public void endSeed() throws IOException {
+        if (seedIndex < 0) {
+            throw new IllegalStateException("no slice is open");
+        }
+        writeEnd(seedIndex, written);
+        seedIndex = -1;
+    }
+
+    /**
+     * Mark the slice of a seed, already written, as partial
+     * @param seedIndex
+     * @throws IOException
+     */
+    public void markTruncated(int seedIndex) throws IOException {
+        writeTruncated(seedIndex);
+    }
+
+    protected abstract void writeSeed(int seedIndex, Record seed) throws IOException;
+
+    protected abstract void writeStatement(int seedIndex, Record statement) throws IOException;
+
+    protected abstract void writeEnd(int seedIndex, int size) throws IOException;
+
+    protected abstract void writeTruncated(int seedIndex) throws IOException;
+
+    // fill the shared record with the fields of a statement
+    private Record describe(Statement s) {
+        CGNode node = s.getNode();
+        IMethod method = node.getMethod();
+        record.kind = s.getKind().name();
+        record.method = method.getSignature();
+        record.node = node.getGraphNodeId();
+        record.index = -1;
+        record.bytecodeIndex = -1;
+        record.line = -1;
+        record.valueNumber = s instanceof ValueNumberCarrier ? ((ValueNumberCarrier) s).getValueNumber() : -1;
+        record.detail = "";
+        if (s instanceof StatementWithInstructionIndex) {
+            int index = ((StatementWithInstructionIndex) s).getInstructionIndex();
+            record.index = index;
+            if (method instanceof IBytecodeMethod && !method.isNative()) {
+                try {
+                    record.bytecodeIndex = ((IBytecodeMethod) method).getBytecodeIndex(index);
+                    record.line = method.getLineNumber(record.bytecodeIndex);
+                } catch (InvalidClassFileException | ArrayIndexOutOfBoundsException e) {
+                    // synthetic instructions have no bytecode position
+                }
+            }
+            IR ir = getIR(node);
+            if (ir != null && index >= 0 && index < ir.getInstructions().length) {
+                SSAInstruction instruction = ir.getInstructions()[index];
+                if (instruction != null) {
+                    record.detail = instruction.toString(ir.getSymbolTable());
+                }
+            }
+        } else if (s instanceof HeapStatement) {
+            record.detail = ((HeapStatement) s).getLocation().toString();
+        }
+        return record;
+    }
+
+    private IR getIR(CGNode node) {
+        IR ir = irs.get(node);
+        if (ir == null && !irs.containsKey(node)) {
+            ir = node.getIR();
+            irs.put(node, ir);
+        }
+        return ir;
+    }
+
+    protected void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    protected void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * One JSON object per line
+     */
+    private static class Ndjson extends SliceWriter {
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final StringBuilder line = new StringBuilder();
+
+        Ndjson(File output) throws IOException {
+            super(output);
+        }
+
+        @Override
+        protected void writeSeed(int seedIndex, Record seed) throws IOException {
+            line.setLength(0);
+            line.append("{\"seed\": ").append(seedIndex).append(", \"statement\": ");
+            appendRecord(seed);
+            line.append("}\n");
+            emit();
+        }
+
+        @Override
+        protected void writeStatement(int seedIndex, Record statement) throws IOException {
+            line.setLength(0);
+            line.append("{\"stmt\": ").append(seedIndex).append(", ");
+            appendFields(statement);
+            line.append("}\n");
+            emit();
+        }
+
+        @Override
+        protected void writeEnd(int seedIndex, int size) throws IOException {
+            line.setLength(0);
+            line.append("{\"end\": ").append(seedIndex).append(", \"size\": ").append(size).append("}\n");
+            emit();
+        }
+
+        @Override
+        protected void writeTruncated(int seedIndex) throws IOException {
+            line.setLength(0);
+            line.append("{\"truncated\": ").append(seedIndex).append("}\n");
+            emit();
+        }
+
+        private void appendRecord(Record r) {
+            line.append('{');
+            appendFields(r);
+            line.append('}');
+        }
+
+        private void appendFields(Record r) {
+            line.append("\"kind\": ");
+            appendQuoted(r.kind);
+            line.append(", \"method\": ");
+            appendQuoted(r.method);
+            line.append(", \"node\": ").append(r.node)
+                    .append(", \"index\": ").append(r.index)
+                    .append(", \"bci\": ").append(r.bytecodeIndex)
+                    .append(", \"line\": ").append(r.line)
+                    .append(", \"value\": ").append(r.valueNumber)
+                    .append(", \"detail\": ");
+            appendQuoted(r.detail);
+        }
+
+        // same escaping as RunMetrics.quote, without the intermediate string
+        private void appendQuoted(String s) {
+            line.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"':
+                        line.append("\\\"");
+                        break;
+                    case '\\':
+                        line.append("\\\\");
+                        break;
+                    case '\n':
+                        line.append("\\n");
+                        break;
+                    case '\r':
+                        line.append("\\r");
+                        break;
+                    case '\t':
+                        line.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            line.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            line.append(c);
+                        }
+                }
+            }
+            line.append('"');
+        }
+
+        // encode the line straight into the channel buffer
+        private void emit() throws IOException {
+            CharBuffer chars = CharBuffer.wrap(line);
+            encoder.reset();
+            while (true) {
+                CoderResult result = encoder.encode(chars, buffer, true);
+                if (result.isOverflow()) {
+                    flush();
+                } else if (result.isError()) {
+                    result.throwException();
+                } else {
+                    break;
+                }
+            }
+            while (encoder.flush(buffer).isOverflow()) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Tagged records with interned kinds, methods and details
+     */
+    static class Binary extends SliceWriter {
+        private final Map<String, Integer> kinds = new HashMap<>();
+        private final Map<String, Integer> methods = new HashMap<>();
+        private final Map<String, Integer> details = new HashMap<>();
+        private final int detailTableSize;
+
+        Binary(File output, int detailTableSize) throws IOException {
+            super(output);
+            this.detailTableSize = detailTableSize;
+            buffer.put(MAGIC).put(VERSION);
+        }
+
+        @Override
+        protected void writeSeed(int seedIndex, Record seed) throws IOException {
+            writeTables(seed);
+            ensure(1 + 5);
+            buffer.put(SEED);
+            putVarint(seedIndex);
+            putRecord(seed);
+        }
+
+        @Override
+        protected void writeStatement(int seedIndex, Record statement) throws IOException {
+            writeTables(statement);
+            ensure(1);
+            buffer.put(STATEMENT);
+            putRecord(statement);
+        }
+
+        @Override
+        protected void writeEnd(int seedIndex, int size) throws IOException {
+            ensure(1 + 5 + 5);
+            buffer.put(END);
+            putVarint(seedIndex);
+            putVarint(size);
+        }
+
+        @Override
+        protected void writeTruncated(int seedIndex) throws IOException {
+            ensure(1 + 5);
+            buffer.put(TRUNCATED);
+            putVarint(seedIndex);
+        }
+
+        // table records for strings the record uses for the first time
+        private void writeTables(Record r) throws IOException {
+            intern(kinds, KIND, r.kind);
+            intern(methods, METHOD, r.method);
+            if (!r.detail.isEmpty()) {
+                if (details.size() >= detailTableSize && !details.containsKey(r.detail)) {
+                    ensure(1);
+                    buffer.put(DETAILS_RESET);
+                    details.clear();
+                }
+                intern(details, DETAIL, r.detail);
+            }
+        }
+
+        private int intern(Map<String, Integer> table, byte tag, String s) throws IOException {
+            Integer id = table.get(s);
+            if (id == null) {
+                id = table.size();
+                table.put(s, id);
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                ensure(1 + 5 + 5);
+                buffer.put(tag);
+                putVarint(id);
+                putVarint(bytes.length);
+                for (int offset = 0; offset < bytes.length; ) {
+                    if (!buffer.hasRemaining()) {
+                        flush();
+                    }
+                    int n = Math.min(buffer.remaining(), bytes.length - offset);
+                    buffer.put(bytes, offset, n);
+                    offset += n;
+                }
+            }
+            return id;
+        }
+
+        private void putRecord(Record r) throws IOException {
+            ensure(8 * 5);
+            putVarint(kinds.get(r.kind));
+            putVarint(methods.get(r.method));
+            putVarint(r.node);
+            putVarint(r.index + 1);
+            putVarint(r.bytecodeIndex + 1);
+            putVarint(r.line + 1);
+            putVarint(r.valueNumber + 1);
+            putVarint(r.detail.isEmpty() ? 0 : details.get(r.detail) + 1);
+        }
+
+        private void putVarint(int value) {
+            while ((value & ~0x7f) != 0) {
+                buffer.put((byte) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+    }
+
+    /**
+     * Convert a binary slice file to NDJSON
+     * @param binary
+     * @param ndjson
+     * @throws IOException
+     */
+    public static void convert(File binary, File ndjson) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(binary), BUFFER_SIZE));
+             Ndjson out = new Ndjson(ndjson)) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            byte version = in.readByte();
+            if (!Arrays.equals(magic, MAGIC) || version < 1 || version > VERSION) {
+                throw new IOException(binary + " is not a binary slice file");
+            }
+            List<String> kinds = new ArrayList<>();
+            List<String> methods = new ArrayList<>();
+            List<String> details = new ArrayList<>();
+            Record r = new Record();
+            int seedIndex = -1;
+            int tag;
+            while ((tag = in.read()) != -1) {
+                switch (tag) {
+                    case KIND:
+                        readString(in, kinds);
+                        break;
+                    case METHOD:
+                        readString(in, methods);
+                        break;
+                    case DETAIL:
+                        readString(in, details);
+                        break;
+                    case SEED:
+                        seedIndex = readVarint(in);
+                        readRecord(in, r, kinds, methods, details);
+                        out.writeSeed(seedIndex, r);
+                        break;
+                    case STATEMENT:
+                        readRecord(in, r, kinds, methods, details);
+                        out.writeStatement(seedIndex, r);
+                        break;
+                    case END:
+                        out.writeEnd(readVarint(in), readVarint(in));
+                        break;
+                    case TRUNCATED:
+                        out.writeTruncated(readVarint(in));
+                        break;
+                    case DETAILS_RESET:
+                        details.clear();
+                        break;
+                    default:
+                        throw new IOException("unknown record tag " + tag + " in " + binary);
+                }
+            }
+        }
+    }
+
+    private static void readString(DataInputStream in, List<String> table) throws IOException {
+        int id = readVarint(in);
+        byte[] bytes = new byte[readVarint(in)];
+        in.readFully(bytes);
+        if (id != table.size()) {
+            throw new IOException("table entries out of order");
+        }
+        table.add(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private static void readRecord(DataInputStream in, Record r, List<String> kinds, List<String> methods,
+                                   List<String> details) throws IOException {
+        r.kind = kinds.get(readVarint(in));
+        r.method = methods.get(readVarint(in));
+        r.node = readVarint(in);
+        r.index = readVarint(in) - 1;
+        r.bytecodeIndex = readVarint(in) - 1;
+        r.line = readVarint(in) - 1;
+        r.valueNumber = readVarint(in) - 1;
+        int detail = readVarint(in);
+        r.detail = detail == 0 ? "" : details.get(detail - 1);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Convert a binary slice file to NDJSON: SliceWriter <binary-file> <ndjson-file>
+     * @param args
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: java -cp slicer.jar slicing.SliceWriter <binary-file> <ndjson-file>");
+            System.exit(1);
+        }
+        try {
+            convert(new File(args[0]), new File(args[1]));
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package slicing;
+
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.util.debug.UnimplementedError;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Long-running slicing daemon. Keeps class hierarchies, call graphs and pointer
+ * analyses in memory (see AnalysisPool) and answers slice requests over a line
+ * protocol, either on stdin/stdout or on a local socket.
+ *
+ * With an index kind, slices and reachability questions are answered from a
+ * ReachabilityIndex built once per jar instead of a tabulation per request.
+ *
+ * Requests go to the pooled analyses directly rather than through a
+ * SlicingSession, whose analysis would be dropped with it after a single request.
+ */
+public class SlicingServer {
+
+    private static final int PRINT_LIMIT = 5;
+    private static final List<String> ANALYSIS_NAMES = Arrays.asList("0cfa", "vanilla-1cfa", "container-1cfa");
+    private static final List<String> INDEX_KINDS = Arrays.asList("full", "thin");
+
+    private final AnalysisPool pool;
+    // slice kind of the reachability index that answers slice requests, null to tabulate each one
+    private final String indexKind;
+
+    public SlicingServer(AnalysisPool pool) {
+        this(pool, null);
+    }
+
+    /**
+     * @param pool
+     * @param indexKind full or thin to answer slice requests from a reachability index, null to tabulate
+     */
+    public SlicingServer(AnalysisPool pool, String indexKind) {
+        if (indexKind != null && !INDEX_KINDS.contains(indexKind)) {
+            throw new IllegalArgumentException("unknown index kind " + indexKind);
+        }
+        this.pool = pool;
+        this.indexKind = indexKind;
+    }
+
+    /**
+     * Serve requests from a reader until it is exhausted or a quit request arrives
+     * @param in
+     * @param out
+     * @return false if the client asked for shutdown
+     * @throws IOException
+     */
+    public boolean serve(BufferedReader in, PrintStream out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (line.equals("quit")) {
+                out.println("ok bye");
+                out.flush();
+                return false;
+            }
+            handle(line, out);
+            out.flush();
+        }
+        return true;
+    }
+
+    /**
+     * Answer a single request line
+     * @param line
+     * @param out
+     */
+    public void handle(String line, PrintStream out) {
+        String[] parts = line.split("\\s+");
+        try {
+            switch (parts[0]) {
+                case "caller":
+                    expectArgs(parts, 5);
+                    respond(out, slice(parts[1], parts[2], new SeedQuery() {
+                        public List<Statement> seeds(JarAnalysis a, String[] p) {
+                            return a.findCallerSeeds(p[3], p[4]);
+                        }
+                    }, parts));
+                    break;
+                case "callee":
+                    expectArgs(parts, 4);
+                    respond(out, slice(parts[1], parts[2], new SeedQuery() {
+                        public List<Statement> seeds(JarAnalysis a, String[] p) {
+                            return a.findCalleeSeeds(p[3]);
+                        }
+                    }, parts));
+                    break;
+                case "sources":
+                    expectArgs(parts, 3);
+                    respond(out, slice(parts[1], parts[2], new SeedQuery() {
+                        public List<Statement> seeds(JarAnalysis a, String[] p) throws IOException {
+                            return a.findSourceSeeds();
+                        }
+                    }, parts));
+                    break;
+                case "reach":
+                    expectArgs(parts, 5);
+                    reach(parts, out);
+                    break;
+                case "index":
+                    expectArgs(parts, 3);
+                    index(parts, out);
+                    break;
+                case "evict":
+                    expectArgs(parts, 2);
+                    out.println("ok evicted=" + pool.evict(parts[1]));
+                    out.println(".");
+                    break;
+                case "stats":
+                    out.println("ok entries=" + pool.size() + " footprint-mb=" + (pool.footprint() >> 20));
+                    for (String entry : pool.describe()) {
+                        out.println(entry);
+                    }
+                    out.println(".");
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown request " + parts[0]);
+            }
+        } catch (Exception | UnimplementedError | AssertionError e) {
+            // WALA reports missing methods through Assertions.UNREACHABLE (an UnimplementedError)
+            // and broken invariants through AssertionError, neither of which should take the daemon down
+            error(out, e);
+        } catch (OutOfMemoryError e) {
+            // the analyses may be half built, drop them all rather than serve from them
+            pool.clear();
+            error(out, e);
+            throw e;
+        }
+    }
+
+    private static void error(PrintStream out, Throwable e) {
+        out.println("error " + String.valueOf(e.getMessage()).replace('\n', ' '));
+        out.println(".");
+        out.flush();
+    }
+
+    private interface SeedQuery {
+        List<Statement> seeds(JarAnalysis analysis, String[] parts) throws IOException;
+    }
+
+    private static class Response {
+        final int seeds;
+        final Collection<Statement> statements;
+        final long ms;
+
+        Response(int seeds, Collection<Statement> statements, long ms) {
+            this.seeds = seeds;
+            this.statements = statements;
+            this.ms = ms;
+        }
+    }
+
+    private Response slice(String appJar, String analysis, SeedQuery query, String[] parts) throws Exception {
+        if (!ANALYSIS_NAMES.contains(analysis)) {
+            throw new IllegalArgumentException("unknown analysis " + analysis);
+        }
+        final long startTime = System.currentTimeMillis();
+        JarAnalysis jar = pool.get(appJar, analysis);
+        try {
+            List<Statement> seeds = query.seeds(jar, parts);
+            if (indexKind != null) {
+                Collection<Statement> slice = jar.getReachabilityIndex(indexKind).forwardSlice(seeds);
+                return new Response(seeds.size(), slice, System.currentTimeMillis() - startTime);
+            }
+            MultiSeedSlicer slicer = jar.getSlicer(DataDependenceOptions.FULL, ControlDependenceOptions.FULL);
+            MultiSeedSlice slice = slicer.computeForwardSlice(seeds);
+            return new Response(seeds.size(), slice.getStatements(), System.currentTimeMillis() - startTime);
+        } finally {
+            // the SDG and index grow with the queries, charge them to the jar's entry
+            pool.release(jar);
+        }
+    }
+
+    // reach <jar> <analysis> <callee-sig> <method-sig>[@<instruction-index>]
+    private void reach(String[] parts, PrintStream out) throws Exception {
+        JarAnalysis jar = analysis(parts);
+        List<Statement> seeds;
+        List<Statement> targets;
+        List<Statement> reached;
+        long us;
+        try {
+            ReachabilityIndex reachability = jar.getReachabilityIndex(indexKind != null ? indexKind : "full");
+            seeds = jar.findCalleeSeeds(parts[3]);
+            targets = jar.findMethodStatements(parts[4]);
+            final long start = System.nanoTime();
+            reached = reachability.reached(seeds, targets);
+            us = (System.nanoTime() - start) / 1000;
+        } finally {
+            pool.release(jar);
+        }
+        out.println("ok reaches=" + !reached.isEmpty() + " seeds=" + seeds.size() + " targets=" + targets.size()
+                + " reached=" + reached.size() + " us=" + us);
+        for (int i = 0; i < PRINT_LIMIT && i < reached.size(); i++) {
+            out.println(reached.get(i).toString().replace('\n', ' '));
+        }
+        out.println(".");
+    }
+
+    // index <jar> <analysis>, builds the index ahead of the first query
+    private void index(String[] parts, PrintStream out) throws Exception {
+        JarAnalysis jar = analysis(parts);
+        final long startTime = System.currentTimeMillis();
+        ReachabilityIndex reachability;
+        long ms;
+        try {
+            reachability = jar.getReachabilityIndex(indexKind != null ? indexKind : "full");
+            ms = System.currentTimeMillis() - startTime;
+        } finally {
+            pool.release(jar);
+        }
+        out.println("ok statements=" + reachability.getStatementCount() + " edges=" + reachability.getEdgeCount()
+                + " components=" + reachability.getComponentCount()
+                + " condensed-edges=" + reachability.getDagEdgeCount()
+                + " ms=" + ms);
+        out.println(".");
+    }
+
+    private JarAnalysis analysis(String[] parts) throws Exception {
+        if (!ANALYSIS_NAMES.contains(parts[2])) {
+            throw new IllegalArgumentException("unknown analysis " + parts[2]);
+        }
+        return pool.get(parts[1], parts[2]);
+    }
+
+    private static void respond(PrintStream out, Response response) {
+        out.println("ok seeds=" + response.seeds + " statements=" + response.statements.size() + " ms=" + response.ms);
+        Iterator<Statement> it = response.statements.iterator();
+        for (int i = 0; i < PRINT_LIMIT && it.hasNext(); i++) {
+            out.println(it.next().toString().replace('\n', ' '));
+        }
+        out.println(".");
+    }
+
+    private static void expectArgs(String[] parts, int n) {
+        if (parts.length != n) {
+            throw new IllegalArgumentException(parts[0] + " expects " + (n - 1) + " arguments");
+        }
+    }
+
+    /**
+     * Help message
+     */
+    public static void help() {
+        System.out.println(
+                "Usage:java -cp slicer.jar slicing.SlicingServer [--port=N] [--heap-budget-mb=N] [--index=full|thin]\n" +
+                "Without --port requests are read from stdin and answered on stdout,\n" +
+                "with --port the server listens on localhost.\n" +
+                "With --index slice requests are answered from a reachability index over the whole\n" +
+                "dependence graph, built once per jar. A full index ignores call/return matching\n" +
+                "and may answer with more statements than a tabulated slice.\n" +
+                "Requests (one per line, arguments separated by whitespace):\n" +
+                "  caller <target-jar-path> <analysis> <caller-sig> <callee-sig>\n" +
+                "  callee <target-jar-path> <analysis> <callee-sig>\n" +
+                "  sources <target-jar-path> <analysis>\n" +
+                "  reach <target-jar-path> <analysis> <callee-sig> <method-sig>[@<instruction-index>]\n" +
+                "      whether a return value of callee-sig reaches the method's statements (default index: full)\n" +
+                "  index <target-jar-path> <analysis>  build the reachability index now and print its size\n" +
+                "  evict <target-jar-path>\n" +
+                "  stats\n" +
+                "  quit\n" +
+                "Each response starts with 'ok ...' or 'error ...' and ends with a line holding a single '.'\n"
+        );
+    }
+
+    /**
+     * Start the daemon
+     * @param args
+     */
+    public static void main(String[] args) {
+        DriverOptions driverOptions = DriverOptions.parse(args);
+        if (!driverOptions.getPositional().isEmpty() || driverOptions.has("help")) {
+            help();
+            System.exit(1);
+        }
+
+        long defaultBudgetMb = (Runtime.getRuntime().maxMemory() >> 20) * 3 / 4;
+        long budget = ((long) driverOptions.getInt("heap-budget-mb", (int) defaultBudgetMb)) << 20;
+        AnalysisPool pool = new AnalysisPool(budget, SimpleSlicer.getExclusionsFile());
+        SlicingServer server = new SlicingServer(pool, driverOptions.getString("index", null));
+
+        try {
+            if (driverOptions.has("port")) {
+                int port = driverOptions.getInt("port", 0);
+                try (ServerSocket socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+                    System.err.println("Listening on " + socket.getLocalSocketAddress());
+                    boolean running = true;
+                    while (running) {
+                        try (Socket client = socket.accept()) {
+                            BufferedReader in = new BufferedReader(
+                                    new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+                            PrintStream out = new PrintStream(client.getOutputStream(), false, "UTF-8");
+                            running = server.serve(in, out);
+                        }
+                    }
+                }
+            } else {
+                // stdout carries responses, route the drivers' progress output to stderr
+                PrintStream out = System.out;
+                System.setOut(System.err);
+                server.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), out);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
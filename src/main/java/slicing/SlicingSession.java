@@ -0,0 +1,1063 @@
+package slicing;
+
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.callgraph.*;
+import com.ibm.wala.ipa.callgraph.impl.Util;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.ipa.cha.ClassHierarchyException;
+import com.ibm.wala.ipa.slicer.SDG;
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.config.AnalysisScopeReader;
+import com.ibm.wala.util.strings.StringStuff;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.*;
+
+/**
+ * The slicing pipeline of the drivers as a library: scope and class hierarchy,
+ * call graph, seeds and slices, each stage built on first use and kept for the
+ * stages after it.
+ *
+ * Slices come back as an iterable of typed results. In per-seed mode and for
+ * thin slices each slice is computed when the iterator reaches it, so a caller
+ * can stream slices out or stop early. Multi-seed and parallel mode compute all
+ * slices on the first step, as does a partitioned call graph. Nothing is printed unless a log stream is set, and
+ * the hot loops (seed search, slicing) never print per item.
+ *
+ * The drivers are thin wrappers around a session:
+ * <pre>
+ * SlicingSession session = new SlicingSession(jar, "0cfa", SlicingSession.Criteria.callee(sig));
+ * for (SlicingSession.Slice slice : session.slice()) {
+ *     ... slice.getSeed(), slice.getStatements() ...
+ * }
+ * </pre>
+ *
+ * A session answers one query and owns its analysis. BatchRunner, SlicingServer
+ * and MatrixRunner ask many queries of one jar and keep a JarAnalysis instead.
+ */
+public class SlicingSession {
+
+    public static final List<String> ANALYSES = Arrays.asList("0cfa", "vanilla-1cfa", "container-1cfa", AdaptivePrecision.ANALYSIS);
+    public static final List<String> SLICE_MODES = Arrays.asList("per-seed", "multi-seed", "parallel");
+    public static final List<String> SLICE_KINDS = Arrays.asList("full", "thin");
+    public static final List<String> CG_SCOPES = Arrays.asList("full", "reduced");
+
+    private final String appJar;
+    private final String analysis;
+    private final Criteria criteria;
+
+    private File exclusions;
+    private PrimordialSnapshot snapshot;
+    private String cgScope = "full";
+    private String sliceKind = "full";
+    private String sliceMode = "per-seed";
+    // null for the default of the slice kind
+    private DataDependenceOptions dataOptions;
+    private ControlDependenceOptions controlOptions;
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private boolean perWorkerSdg;
+    // 0 to leave IR to the call graph builder
+    private int prewarmWorkers;
+    // entrypoint groups with a call graph each, 1 for a single call graph
+    private int partitions = 1;
+    // 0 for one per partition, up to the number of processors
+    private int partitionWorkers;
+    private Budget budget = Budget.unlimited();
+    private SliceCache cache;
+    private boolean incremental;
+    // count call graph edges in the report, which walks the whole call graph
+    private boolean reportEdges = true;
+    private PrintStream log;
+    private RunMetrics metrics = new RunMetrics("SlicingSession");
+
+    // pipeline stages, built on first use
+    private AnalysisScope scope;
+    private ClassHierarchy cha;
+    private AnalysisOptions options;
+    private IRPrewarmer prewarmer;
+    private CallGraph cg;
+    private PointerAnalysis<InstanceKey> pa;
+    private CallIndex index;
+    private List<PartitionedCallGraph.Partition> cgPartitions;
+    // seeds found in each partition, merged into seeds
+    private List<List<Statement>> partitionSeeds;
+    private List<Statement> seeds;
+    private Slices slices;
+
+    /**
+     * @param appJar
+     * @param analysis one of ANALYSES
+     * @param criteria
+     */
+    public SlicingSession(String appJar, String analysis, Criteria criteria) {
+        if (!ANALYSES.contains(analysis)) {
+            throw new IllegalArgumentException("Unknown analysis " + analysis);
+        }
+        this.appJar = appJar;
+        this.analysis = analysis;
+        this.criteria = criteria;
+    }
+
+    /**
+     * Session configured from the drivers' flags. Reads --slice-mode, --workers, --sdg, --cg-scope,
+     * --slice-kind, --data-deps, --control-deps, the budget flags of {@link Budget#fromOptions},
+     * --primordial-snapshot, --cg-partitions, --cg-workers, --prewarm-ir, --prewarm-workers,
+     * --cache-dir, --incremental and --no-cg-edges; the drivers' help describes each of them
+     * @param appJar
+     * @param analysis
+     * @param criteria
+     * @param driverOptions
+     * @return
+     */
+    public static SlicingSession fromOptions(String appJar, String analysis, Criteria criteria, DriverOptions driverOptions) {
+        SlicingSession session = new SlicingSession(appJar, analysis, criteria);
+        session.setSliceMode(driverOptions.getString("slice-mode", "per-seed"));
+        String sdg = driverOptions.getString("sdg", "shared");
+        if (!Arrays.asList("shared", "per-worker").contains(sdg)) {
+            throw new IllegalArgumentException("Unknown SDG sharing " + sdg);
+        }
+        session.setWorkers(driverOptions.getInt("workers", Runtime.getRuntime().availableProcessors()), sdg.equals("per-worker"));
+        session.setCallGraphScope(driverOptions.getString("cg-scope", "full"));
+        session.setSliceKind(driverOptions.getString("slice-kind", "full"));
+        session.setDataOptions(driverOptions.getEnum("data-deps", DataDependenceOptions.class, null));
+        session.setControlOptions(driverOptions.getEnum("control-deps", ControlDependenceOptions.class, null));
+        session.setBudget(Budget.fromOptions(driverOptions));
+        if (driverOptions.has("primordial-snapshot")) {
+            session.setSnapshot(new PrimordialSnapshot(new File(driverOptions.getString("primordial-snapshot", null))));
+        }
+        session.setCallGraphPartitions(driverOptions.getInt("cg-partitions", 1), driverOptions.getInt("cg-workers", 0));
+        if (driverOptions.has("prewarm-ir")) {
+            session.setPrewarmWorkers(driverOptions.getInt("prewarm-workers", Runtime.getRuntime().availableProcessors()));
+        }
+        if (driverOptions.has("cache-dir")) {
+            session.setCache(new SliceCache(new File(driverOptions.getString("cache-dir", null))), driverOptions.has("incremental"));
+        }
+        session.setReportEdges(!driverOptions.has("no-cg-edges"));
+        return session;
+    }
+
+    public void setExclusions(File exclusions) {
+        this.exclusions = exclusions;
+    }
+
+    // JDK classes from a local snapshot that leaves out excluded classes, null for the configured JDK
+    public void setSnapshot(PrimordialSnapshot snapshot) {
+        this.snapshot = snapshot;
+        if (snapshot != null && log != null) {
+            snapshot.setLog(log);
+        }
+    }
+
+    public void setCallGraphScope(String cgScope) {
+        if (!CG_SCOPES.contains(cgScope)) {
+            throw new IllegalArgumentException("Unknown call graph scope " + cgScope);
+        }
+        this.cgScope = cgScope;
+    }
+
+    public void setSliceKind(String sliceKind) {
+        if (!SLICE_KINDS.contains(sliceKind)) {
+            throw new IllegalArgumentException("Unknown slice kind " + sliceKind);
+        }
+        this.sliceKind = sliceKind;
+    }
+
+    // ignored for thin slices, which always walk one graph per seed
+    public void setSliceMode(String sliceMode) {
+        if (!SLICE_MODES.contains(sliceMode)) {
+            throw new IllegalArgumentException("Unknown slice mode " + sliceMode);
+        }
+        this.sliceMode = sliceMode;
+    }
+
+    public void setDataOptions(DataDependenceOptions dataOptions) {
+        this.dataOptions = dataOptions;
+    }
+
+    public void setControlOptions(ControlDependenceOptions controlOptions) {
+        this.controlOptions = controlOptions;
+    }
+
+    // threads and SDG sharing of parallel mode
+    public void setWorkers(int workers, boolean perWorkerSdg) {
+        this.workers = workers;
+        this.perWorkerSdg = perWorkerSdg;
+    }
+
+    public void setPrewarmWorkers(int prewarmWorkers) {
+        this.prewarmWorkers = prewarmWorkers;
+    }
+
+    /**
+     * Split the entrypoints into groups and build a call graph for each group concurrently
+     * @param partitions number of groups, 1 for a single call graph
+     * @param workers threads building them, 0 for one per partition up to the number of processors
+     */
+    public void setCallGraphPartitions(int partitions, int workers) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("need at least one partition, got " + partitions);
+        }
+        if (partitions > 1 && analysis.equals(AdaptivePrecision.ANALYSIS)) {
+            throw new IllegalArgumentException(analysis + " refines one call graph, it cannot be partitioned");
+        }
+        this.partitions = partitions;
+        this.partitionWorkers = workers;
+    }
+
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    // incremental reuses the slice of a rebuilt jar when its changes miss the previous call graph
+    public void setCache(SliceCache cache, boolean incremental) {
+        this.cache = cache;
+        this.incremental = incremental;
+        if (cache != null && log != null) {
+            cache.setLog(log);
+        }
+    }
+
+    public void setReportEdges(boolean reportEdges) {
+        this.reportEdges = reportEdges;
+    }
+
+    // progress lines for a console, null (the default) for none, including the snapshot's and the cache's
+    public void setLog(PrintStream log) {
+        this.log = log;
+        if (snapshot != null) {
+            snapshot.setLog(log);
+        }
+        if (cache != null) {
+            cache.setLog(log);
+        }
+    }
+
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public String getAppJar() {
+        return appJar;
+    }
+
+    public String getAnalysis() {
+        return analysis;
+    }
+
+    public File getExclusions() {
+        if (exclusions == null) {
+            exclusions = SimpleSlicer.getExclusionsFile();
+        }
+        return exclusions;
+    }
+
+    public String getCallGraphScope() {
+        return cgScope;
+    }
+
+    public String getSliceKind() {
+        return sliceKind;
+    }
+
+    public String getSliceMode() {
+        return sliceMode;
+    }
+
+    public boolean isThin() {
+        return sliceKind.equals("thin");
+    }
+
+    // data and control flow dependencies (for reachability) in slicing
+    public DataDependenceOptions getDataOptions() {
+        if (dataOptions != null) {
+            return dataOptions;
+        }
+        return isThin() ? DataDependenceOptions.NO_BASE_NO_HEAP : DataDependenceOptions.FULL;
+    }
+
+    public ControlDependenceOptions getControlOptions() {
+        if (controlOptions != null) {
+            return controlOptions;
+        }
+        return isThin() ? ControlDependenceOptions.NONE : ControlDependenceOptions.FULL;
+    }
+
+    public RunMetrics getMetrics() {
+        return metrics;
+    }
+
+    // identifies the result in the slice cache, together with the jar, analysis and exclusions,
+    // thin slices leave the mode out as they ignore it
+    public String getQuery() {
+        return criteria.describe() + " " + (isThin() ? "" : sliceMode + " ") + sliceKind + " " + getDataOptions() + " "
+                + getControlOptions() + " " + cgScope + (partitions > 1 ? " partitions=" + partitions : "");
+    }
+
+    /**
+     * A previous result for the same query on an unchanged jar, or with incremental
+     * caching on a rebuilt jar whose changes miss the previous call graph
+     * @return the cached slice, null without a cache or on a miss
+     * @throws IOException
+     */
+    public CachedSlice lookupCached() throws IOException {
+        if (cache == null) {
+            return null;
+        }
+        metrics.begin("cache-lookup");
+        String cacheKey = SliceCache.makeKey(appJar, analysis, getExclusions());
+        CachedSlice cached = cache.lookup(cacheKey, getQuery());
+        if (cached == null && incremental) {
+            cached = cache.lookupIncremental(cacheKey, appJar, analysis, getExclusions(), getQuery(),
+                    new JarManifest.CallMatcher() {
+                        @Override
+                        public boolean matches(String selector) {
+                            return criteria.matchesCall(selector);
+                        }
+                    });
+        }
+        metrics.end();
+        if (cached != null) {
+            metrics.setAttribute("cached", true);
+            metrics.count("seeds", cached.getSeeds().size());
+            metrics.count("slice_statements", cached.getStatements().size());
+            metrics.setSliceSizes(cached.getSliceSizes());
+        }
+        return cached;
+    }
+
+    /**
+     * Scope and class hierarchy of the jar
+     * @return
+     * @throws IOException
+     * @throws ClassHierarchyException
+     */
+    public ClassHierarchy getClassHierarchy() throws IOException, ClassHierarchyException {
+        if (cha == null) {
+            metrics.begin("scope");
+            scope = snapshot != null
+                    ? snapshot.makeScope(appJar, getExclusions())
+                    : AnalysisScopeReader.makeJavaBinaryAnalysisScope(appJar, getExclusions());
+
+            // create class hierarchy, wala needs to know the lay of the land
+            metrics.begin("class-hierarchy");
+            log("Building hierarchy");
+            ClassHierarchy hierarchy = ClassHierarchy.make(scope);
+            Iterable<Entrypoint> entrypoints = Util.makeMainEntrypoints(scope, hierarchy);
+            options = new AnalysisOptions(scope, entrypoints);
+            criteria.resolve(this, hierarchy);
+            metrics.end();
+            cha = hierarchy;
+        }
+        return cha;
+    }
+
+    /**
+     * Call graph of the jar, within the call graph budget
+     * @return the call graph, partial if the budget ran out
+     * @throws IOException
+     * @throws ClassHierarchyException
+     * @throws CancelException
+     * @throws InterruptedException
+     */
+    public CallGraph getCallGraph() throws IOException, ClassHierarchyException, CancelException, InterruptedException {
+        buildCallGraph();
+        checkUnpartitioned();
+        return cg;
+    }
+
+    /**
+     * Call graphs of the entrypoint partitions
+     * @return the partitions, null unless more than one was asked for
+     * @throws IOException
+     * @throws ClassHierarchyException
+     * @throws CancelException
+     * @throws InterruptedException
+     */
+    public List<PartitionedCallGraph.Partition> getPartitions() throws IOException, ClassHierarchyException, CancelException, InterruptedException {
+        buildCallGraph();
+        return cgPartitions;
+    }
+
+    private void checkUnpartitioned() {
+        if (cgPartitions != null) {
+            throw new IllegalStateException("the call graph is split into " + cgPartitions.size()
+                    + " partitions, see getPartitions()");
+        }
+    }
+
+    private void buildCallGraph() throws IOException, ClassHierarchyException, CancelException, InterruptedException {
+        if (cg == null && cgPartitions == null) {
+            getClassHierarchy();
+
+            // reduced scope: only entrypoints and calls that can lead to the criteria, found from the class hierarchy
+            CallRegion region = null;
+            if (cgScope.equals("reduced")) {
+                metrics.begin("region");
+                region = criteria.region(cha);
+                log(region);
+                metrics.count("region_methods", region.size());
+            }
+
+            // IR of application methods built in parallel, before the call graph builder asks for it
+            AnalysisCache analysisCache = new AnalysisCache();
+            if (prewarmWorkers > 0) {
+                metrics.begin("prewarm-ir");
+                prewarmer = new IRPrewarmer();
+                analysisCache = prewarmer.makeCache();
+                int prewarmed = prewarmer.prewarm(cha, options.getSSAOptions(), prewarmWorkers);
+                log("Prewarmed IR of " + prewarmed + " application methods on " + prewarmWorkers + " workers");
+                metrics.count("prewarmed_methods", prewarmed);
+            }
+
+            if (partitions > 1) {
+                buildPartitions(region, analysisCache);
+                return;
+            }
+
+            log("Building call graph");
+            boolean adaptive = analysis.equals(AdaptivePrecision.ANALYSIS);
+            metrics.begin(adaptive ? "prepass" : "call-graph");
+            CallGraphBuilder builder = SimpleSlicer.makeCallGraphBuilder(adaptive ? "0cfa" : analysis, options, analysisCache, cha, scope);
+            if (region != null) {
+                // after making the builder, which installs its own selectors
+                region.restrict(options);
+            }
+            if (adaptive) {
+                // 0-CFA first, then context sensitivity only for the methods its slice passes through
+                CallGraph prepass = makeCallGraph(builder);
+                List<Statement> prepassSeeds = criteria.findSeeds(new CallIndex(prepass));
+                Set<IMethod> refined = AdaptivePrecision.findSliceMethods(
+                        prepass, builder.getPointerAnalysis(), prepassSeeds, getDataOptions(), getControlOptions());
+                log("Refining " + refined.size() + " methods the 0-CFA slice passes through");
+                metrics.count("refined_methods", refined.size());
+                metrics.begin("call-graph");
+                builder = AdaptivePrecision.makeRefinedBuilder(refined, options, analysisCache, cha, scope);
+                if (region != null) {
+                    region.restrict(options);
+                }
+            }
+            CallGraph callGraph = makeCallGraph(builder);
+            pa = builder.getPointerAnalysis();
+            if (prewarmer != null) {
+                log("Prewarmed IR: " + prewarmer.getHits() + " used, " + prewarmer.getUnused()
+                        + " never asked for, " + prewarmer.getEvicted() + " evicted before use");
+            }
+            // one pass over the call graph, so seed lookups don't scan it
+            metrics.begin("call-index");
+            index = new CallIndex(callGraph);
+            metrics.end();
+            cg = callGraph;
+        }
+    }
+
+    // groups of entrypoints, each with its own call graph built on a worker
+    private void buildPartitions(CallRegion region, AnalysisCache analysisCache)
+            throws ClassHierarchyException, CancelException, InterruptedException {
+        List<List<Entrypoint>> groups = PartitionedCallGraph.partition(
+                region != null ? region.restrictEntrypoints(options.getEntrypoints()) : options.getEntrypoints(), partitions);
+        int poolSize = partitionWorkers > 0
+                ? partitionWorkers : Math.min(groups.size(), Runtime.getRuntime().availableProcessors());
+        log("Building call graphs of " + groups.size() + " entrypoint partitions on " + poolSize + " workers");
+        metrics.begin("call-graph");
+        cgPartitions = PartitionedCallGraph.build(analysis, scope, cha, analysisCache, groups,
+                region != null ? criteria : null, poolSize, budget);
+        for (PartitionedCallGraph.Partition partition : cgPartitions) {
+            metrics.recordBudget(partition.getMonitor());
+            log(partition);
+        }
+        metrics.count("cg_partitions", cgPartitions.size());
+        if (prewarmer != null) {
+            // only the first partition reads the prewarmed cache
+            log("Prewarmed IR: " + prewarmer.getHits() + " used, " + prewarmer.getUnused()
+                    + " never asked for, " + prewarmer.getEvicted() + " evicted before use");
+        }
+        metrics.end();
+    }
+
+    // one call graph pass within the call graph budget
+    private CallGraph makeCallGraph(CallGraphBuilder builder) throws CancelException {
+        Budget.Monitor monitor = budget.startCallGraph();
+        CallGraph result = Budget.makeCallGraph(builder, options, monitor);
+        metrics.recordBudget(monitor);
+        if (monitor.getTruncation() != null) {
+            log("Call graph truncated (" + monitor.getTruncation() + ") at " + result.getNumberOfNodes() + " nodes");
+        }
+        return result;
+    }
+
+    public PointerAnalysis<InstanceKey> getPointerAnalysis() throws IOException, ClassHierarchyException, CancelException, InterruptedException {
+        buildCallGraph();
+        checkUnpartitioned();
+        return pa;
+    }
+
+    public CallIndex getCallIndex() throws IOException, ClassHierarchyException, CancelException, InterruptedException {
+        buildCallGraph();
+        checkUnpartitioned();
+        return index;
+    }
+
+    /**
+     * Return sites matching the criteria, the seeds of the slices
+     * @return
+     * @throws IOException
+     * @throws ClassHierarchyException
+     * @throws CancelException
+     * @throws InterruptedException
+     */
+    public List<Statement> getSeeds() throws IOException, ClassHierarchyException, CancelException, InterruptedException {
+        if (seeds == null) {
+            buildCallGraph();
+            metrics.begin("seeds");
+            if (cgPartitions == null) {
+                seeds = criteria.findSeeds(index);
+            } else {
+                // a call site several partitions reach is one seed, matched by method and instruction
+                partitionSeeds = new ArrayList<>();
+                Map<StatementKey, Statement> merged = new LinkedHashMap<>();
+                for (PartitionedCallGraph.Partition partition : cgPartitions) {
+                    List<Statement> found = criteria.appearsIn(partition.getCallIndex())
+                            ? criteria.findSeeds(partition.getCallIndex()) : Collections.<Statement>emptyList();
+                    partitionSeeds.add(found);
+                    for (Statement seed : found) {
+                        StatementKey key = StatementKey.of(seed);
+                        if (!merged.containsKey(key)) {
+                            merged.put(key, seed);
+                        }
+                    }
+                }
+                seeds = new ArrayList<>(merged.values());
+            }
+            metrics.count("seeds", seeds.size());
+            metrics.end();
+        }
+        return seeds;
+    }
+
+    /**
+     * Forward slices of all seeds, computed as they are iterated
+     * @return
+     * @throws IOException
+     * @throws ClassHierarchyException
+     * @throws CancelException
+     * @throws InterruptedException
+     */
+    public Slices slice() throws IOException, ClassHierarchyException, CancelException, InterruptedException {
+        if (slices == null) {
+            slices = new Slices(getSeeds());
+        }
+        return slices;
+    }
+
+    /**
+     * Store the slices for later queries, unless a budget cut anything short
+     * @return whether the result was stored
+     * @throws IOException
+     */
+    public boolean store() throws IOException {
+        if (cache == null || slices == null || metrics.isTruncated()) {
+            return false;
+        }
+        SliceSet sliceSet = slices.getSliceSet();
+        metrics.begin("cache-store");
+        String cacheKey = SliceCache.makeKey(appJar, analysis, getExclusions());
+        // neither a reduced nor a partitioned call graph describes the whole jar
+        if (incremental && cgScope.equals("full") && cgPartitions == null) {
+            cache.storeIncremental(cacheKey, appJar, analysis, getExclusions(), cg);
+        }
+        cache.store(cacheKey, getQuery(), seeds, sliceSet.getSliceSizes(), sliceSet.getStatements());
+        metrics.end();
+        return true;
+    }
+
+    /**
+     * Write the run's metrics with the sizes of whatever stages were built
+     * @param file
+     * @throws IOException
+     */
+    public void writeReport(File file) throws IOException {
+        if (cg != null) {
+            metrics.countAnalysis(cha, Collections.singletonList(cg), Collections.singletonList(pa), reportEdges);
+        } else if (cgPartitions != null) {
+            List<CallGraph> cgs = new ArrayList<>();
+            List<PointerAnalysis<InstanceKey>> pas = new ArrayList<>();
+            for (PartitionedCallGraph.Partition partition : cgPartitions) {
+                cgs.add(partition.getCallGraph());
+                pas.add(partition.getPointerAnalysis());
+            }
+            metrics.countAnalysis(cha, cgs, pas, reportEdges);
+        }
+        if (prewarmer != null) {
+            metrics.count("prewarm_hits", prewarmer.getHits());
+            metrics.count("prewarm_evicted", prewarmer.getEvicted());
+        }
+        metrics.write(file);
+    }
+
+    private void log(Object message) {
+        if (log != null) {
+            log.println(message);
+        }
+    }
+
+    /**
+     * What to slice from: the return sites of calls picked out from the class
+     * hierarchy and call graph
+     */
+    public static abstract class Criteria {
+
+        // look up anything that needs the class hierarchy, once it exists
+        void resolve(SlicingSession session, ClassHierarchy cha) {
+        }
+
+        // whether a call graph can hold seeds at all, false for a partition that never reaches the criteria
+        boolean appearsIn(CallIndex index) {
+            return true;
+        }
+
+        // methods on paths to the criteria, for a reduced call graph
+        abstract CallRegion region(ClassHierarchy cha);
+
+        abstract List<Statement> findSeeds(CallIndex index);
+
+        // part of the cache query
+        abstract String describe();
+
+        // whether a call with this selector (e.g. bye(Ljava/lang/String;)V) may be one the seeds are found at
+        abstract boolean matchesCall(String selector);
+
+        /**
+         * The return site of the first call to callee in caller
+         * @param caller
+         * @param callee
+         * @return
+         */
+        public static Criteria callerCallee(final String caller, final String callee) {
+            final MethodReference callerRef = StringStuff.makeMethodReference(caller);
+            final MethodReference calleeRef = StringStuff.makeMethodReference(callee);
+            return new Criteria() {
+                @Override
+                boolean appearsIn(CallIndex index) {
+                    return !index.getNodes(callerRef).isEmpty();
+                }
+
+                @Override
+                CallRegion region(ClassHierarchy cha) {
+                    return CallRegion.aroundCallers(cha, Collections.singleton(callerRef));
+                }
+
+                @Override
+                List<Statement> findSeeds(CallIndex index) {
+                    return Collections.singletonList(SimpleSlicer.findReturnSite(index, callerRef, calleeRef));
+                }
+
+                @Override
+                String describe() {
+                    return "SimpleSlicer " + caller + " " + callee;
+                }
+
+                @Override
+                boolean matchesCall(String selector) {
+                    return selector.equals(calleeRef.getSelector().toString());
+                }
+            };
+        }
+
+        /**
+         * The return sites of all calls to callee
+         * @param callee
+         * @return
+         */
+        public static Criteria callee(final String callee) {
+            final MethodReference calleeRef = StringStuff.makeMethodReference(callee);
+            return new Criteria() {
+                @Override
+                boolean appearsIn(CallIndex index) {
+                    return !index.getNodes(calleeRef).isEmpty();
+                }
+
+                @Override
+                CallRegion region(ClassHierarchy cha) {
+                    return CallRegion.aroundCallees(cha, Collections.singleton(calleeRef));
+                }
+
+                @Override
+                List<Statement> findSeeds(CallIndex index) {
+                    return SimpleSlicerUsingCallee.findReturnSites(index, calleeRef);
+                }
+
+                @Override
+                String describe() {
+                    return "SimpleSlicerUsingCallee " + callee;
+                }
+
+                @Override
+                boolean matchesCall(String selector) {
+                    return selector.equals(calleeRef.getSelector().toString());
+                }
+            };
+        }
+
+        /**
+         * The return sites of all application calls to methods matching a taint source catalog
+         * @param catalog
+         * @return
+         */
+        public static Criteria sources(final SourceCatalog catalog) {
+            return new Criteria() {
+                private Set<MethodReference> sources;
+
+                @Override
+                void resolve(SlicingSession session, ClassHierarchy cha) {
+                    // collecting any methods that implement taint sources, all catalog rules in one pass
+                    session.log("Collecting taint source implementors");
+                    sources = catalog.match(cha);
+                    session.log("Matched " + sources.size() + " methods with " + catalog);
+                    session.metrics.count("source_methods", sources.size());
+                }
+
+                @Override
+                CallRegion region(ClassHierarchy cha) {
+                    return CallRegion.aroundCallees(cha, sources);
+                }
+
+                @Override
+                List<Statement> findSeeds(CallIndex index) {
+                    return SliceFromSources.findReturnSites(index, sources);
+                }
+
+                @Override
+                String describe() {
+                    return "SliceFromSources " + catalog.getDigest();
+                }
+
+                @Override
+                boolean matchesCall(String selector) {
+                    return catalog.mayMatch(selector);
+                }
+            };
+        }
+    }
+
+    /**
+     * The forward slice of one seed
+     */
+    public static class Slice {
+        private final int index;
+        private final Statement seed;
+        private final Collection<Statement> statements;
+        private final boolean truncated;
+
+        public Slice(int index, Statement seed, Collection<Statement> statements, boolean truncated) {
+            this.index = index;
+            this.seed = seed;
+            this.statements = statements;
+            this.truncated = truncated;
+        }
+
+        // position of the seed in the session's seeds
+        public int getIndex() {
+            return index;
+        }
+
+        public Statement getSeed() {
+            return seed;
+        }
+
+        public Collection<Statement> getStatements() {
+            return statements;
+        }
+
+        // cut short by the slice budget
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+
+    /**
+     * The slices of all seeds in seed order. Iterating computes what has not been
+     * computed yet; the totals below compute everything first. Over a partitioned
+     * call graph all slices are computed on the first step, each partition's seeds
+     * in the session's mode, and a seed reached in several partitions gets the
+     * union of its slices there.
+     */
+    public class Slices implements Iterable<Slice> {
+        private final List<Statement> seeds;
+        private final List<Slice> computed = new ArrayList<>();
+        // each slice as a bitset over distinct statements, so overlaps are counted once
+        private SliceSet sliceSet;
+        private Budget.Monitor sliceMonitor;
+        private MultiSeedSlice multiSlice;
+        private ThinForwardSlicer thinSlicer;
+        private long statementsBuilt;
+        private boolean done;
+
+        Slices(List<Statement> seeds) {
+            this.seeds = seeds;
+        }
+
+        public List<Statement> getSeeds() {
+            return seeds;
+        }
+
+        @Override
+        public Iterator<Slice> iterator() {
+            return new Iterator<Slice>() {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return next < seeds.size();
+                }
+
+                @Override
+                public Slice next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    try {
+                        computeUpTo(next);
+                    } catch (Exception e) {
+                        throw new RuntimeException("failed to slice from seed " + next, e);
+                    }
+                    return computed.get(next++);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        // all slices, as one set of distinct statements
+        public SliceSet getSliceSet() {
+            try {
+                computeUpTo(seeds.size() - 1);
+            } catch (Exception e) {
+                throw new RuntimeException("failed to slice", e);
+            }
+            return sliceSet;
+        }
+
+        // distinct statements in all slices
+        public int size() {
+            return getSliceSet().size();
+        }
+
+        public int getTruncatedCount() {
+            return getSliceSet().getTruncatedCount();
+        }
+
+        // why slices were cut short, null if none were
+        public String getTruncation() {
+            getSliceSet();
+            return sliceMonitor.getTruncation();
+        }
+
+        // per-statement seed sets of a multi-seed pass, null in the other modes
+        public MultiSeedSlice getMultiSeedSlice() {
+            getSliceSet();
+            return multiSlice;
+        }
+
+        // statements in the dependence graphs built for the slices
+        public long getStatementsBuilt() {
+            getSliceSet();
+            return statementsBuilt;
+        }
+
+        private void computeUpTo(int seedIndex) throws Exception {
+            if (sliceMonitor == null) {
+                start();
+            }
+            while (computed.size() <= seedIndex) {
+                int i = computed.size();
+                Budget.Monitor solve = sliceMonitor.startSolve();
+                Collection<Statement> slice;
+                if (thinSlicer != null) {
+                    slice = thinSlicer.computeForwardSlice(seeds.get(i), solve);
+                } else {
+                    log("===> Computing slice");
+                    SDG sdg = new SDG(cg, pa, getDataOptions(), getControlOptions());
+                    slice = MultiSeedSlicer.computeForwardSlice(sdg, seeds.get(i), solve);
+                    statementsBuilt += RunMetrics.countBuiltStatements(sdg);
+                    log("===> Done with slice");
+                }
+                sliceSet.add(i, slice);
+                if (solve.getTruncation() != null) {
+                    sliceSet.markTruncated(i);
+                }
+                // the slice set's bit-set view, the raw statement set can go
+                computed.add(new Slice(i, seeds.get(i), sliceSet.getSlice(i), sliceSet.isTruncated(i)));
+            }
+            if (computed.size() == seeds.size()) {
+                finish();
+            }
+        }
+
+        // the slice phase starts with the first slice asked for, bulk modes compute all of them here
+        private void start() throws Exception {
+            metrics.begin("slice");
+            sliceMonitor = budget.startSlice();
+            if (cgPartitions != null) {
+                computePartitions();
+            } else if (isThin()) {
+                // one thin dependence graph, walked from each seed in turn
+                log("===> Computing thin slices for " + seeds.size() + " seeds");
+                thinSlicer = new ThinForwardSlicer(cg, pa, getDataOptions(), getControlOptions());
+                statementsBuilt = RunMetrics.countBuiltStatements(thinSlicer.getSDG());
+                sliceSet = new SliceSet(seeds);
+            } else if (sliceMode.equals("multi-seed")) {
+                // single SDG and a single tabulation pass for all seeds
+                log("===> Computing slice for " + seeds.size() + " seeds");
+                MultiSeedSlicer slicer = new MultiSeedSlicer(cg, pa, getDataOptions(), getControlOptions());
+                Budget.Monitor solve = sliceMonitor.startSolve();
+                multiSlice = slicer.computeForwardSlice(seeds, solve);
+                sliceSet = multiSlice.toSliceSet();
+                for (int i = 0; i < seeds.size(); i++) {
+                    if (solve.getTruncation() != null) {
+                        sliceSet.markTruncated(i);
+                    }
+                    computed.add(new Slice(i, seeds.get(i), sliceSet.getSlice(i), sliceSet.isTruncated(i)));
+                }
+                statementsBuilt = RunMetrics.countBuiltStatements(slicer.getSDG());
+                log("===> Done with slice");
+            } else if (sliceMode.equals("parallel")) {
+                // seeds fanned out over a thread pool, merged back in seed order
+                log("===> Computing slices on " + workers + " workers");
+                ParallelSlicer slicer = new ParallelSlicer(cg, pa, getDataOptions(), getControlOptions(), workers, perWorkerSdg);
+                List<Collection<Statement>> perSeed = slicer.computeForwardSlices(seeds, sliceMonitor);
+                BitSet truncated = slicer.getTruncatedSeeds();
+                sliceSet = new SliceSet(seeds);
+                for (int i = 0; i < perSeed.size(); i++) {
+                    sliceSet.add(i, perSeed.get(i));
+                    perSeed.set(i, null);
+                    if (truncated.get(i)) {
+                        sliceSet.markTruncated(i);
+                    }
+                    computed.add(new Slice(i, seeds.get(i), sliceSet.getSlice(i), truncated.get(i)));
+                }
+                statementsBuilt = slicer.getStatementsBuilt();
+                log("===> Done with slices");
+            } else {
+                sliceSet = new SliceSet(seeds);
+            }
+        }
+
+        // every partition sliced on its own, statements matched across partitions by StatementKey
+        private void computePartitions() throws Exception {
+            Map<StatementKey, Integer> seedIndex = new HashMap<>();
+            List<Set<Statement>> merged = new ArrayList<>();
+            for (int i = 0; i < seeds.size(); i++) {
+                seedIndex.put(StatementKey.of(seeds.get(i)), i);
+                merged.add(new LinkedHashSet<Statement>());
+            }
+            Map<StatementKey, Statement> canonical = new HashMap<>();
+            BitSet truncated = new BitSet();
+            for (int p = 0; p < cgPartitions.size(); p++) {
+                List<Statement> found = partitionSeeds.get(p);
+                if (found.isEmpty()) {
+                    continue;
+                }
+                log("===> Computing slices for " + found.size() + " seeds in partition " + p);
+                PartitionedCallGraph.Partition partition = cgPartitions.get(p);
+                BitSet partitionTruncated = new BitSet();
+                List<Collection<Statement>> perSeed = computeAll(
+                        partition.getCallGraph(), partition.getPointerAnalysis(), found, partitionTruncated);
+                for (int i = 0; i < found.size(); i++) {
+                    int k = seedIndex.get(StatementKey.of(found.get(i)));
+                    for (Statement s : perSeed.get(i)) {
+                        StatementKey key = StatementKey.of(s);
+                        Statement same = canonical.get(key);
+                        if (same == null) {
+                            canonical.put(key, s);
+                            same = s;
+                        }
+                        merged.get(k).add(same);
+                    }
+                    if (partitionTruncated.get(i)) {
+                        truncated.set(k);
+                    }
+                }
+            }
+            sliceSet = new SliceSet(seeds);
+            for (int k = 0; k < seeds.size(); k++) {
+                sliceSet.add(k, merged.get(k));
+                if (truncated.get(k)) {
+                    sliceSet.markTruncated(k);
+                }
+                computed.add(new Slice(k, seeds.get(k), sliceSet.getSlice(k), truncated.get(k)));
+            }
+            log("===> Done with slices");
+        }
+
+        // all slices of one partition's seeds in the session's slice kind and mode
+        private List<Collection<Statement>> computeAll(CallGraph partCg, PointerAnalysis<InstanceKey> partPa,
+                                                       List<Statement> partSeeds, BitSet truncated) throws Exception {
+            List<Collection<Statement>> result = new ArrayList<>();
+            if (isThin()) {
+                ThinForwardSlicer slicer = new ThinForwardSlicer(partCg, partPa, getDataOptions(), getControlOptions());
+                for (int i = 0; i < partSeeds.size(); i++) {
+                    Budget.Monitor solve = sliceMonitor.startSolve();
+                    result.add(slicer.computeForwardSlice(partSeeds.get(i), solve));
+                    if (solve.getTruncation() != null) {
+                        truncated.set(i);
+                    }
+                }
+                statementsBuilt += RunMetrics.countBuiltStatements(slicer.getSDG());
+            } else if (sliceMode.equals("multi-seed")) {
+                MultiSeedSlicer slicer = new MultiSeedSlicer(partCg, partPa, getDataOptions(), getControlOptions());
+                Budget.Monitor solve = sliceMonitor.startSolve();
+                MultiSeedSlice slice = slicer.computeForwardSlice(partSeeds, solve);
+                for (int i = 0; i < partSeeds.size(); i++) {
+                    result.add(slice.getSlice(i));
+                }
+                if (solve.getTruncation() != null) {
+                    truncated.set(0, partSeeds.size());
+                }
+                statementsBuilt += RunMetrics.countBuiltStatements(slicer.getSDG());
+            } else if (sliceMode.equals("parallel")) {
+                ParallelSlicer slicer = new ParallelSlicer(partCg, partPa, getDataOptions(), getControlOptions(), workers, perWorkerSdg);
+                result.addAll(slicer.computeForwardSlices(partSeeds, sliceMonitor));
+                truncated.or(slicer.getTruncatedSeeds());
+                statementsBuilt += slicer.getStatementsBuilt();
+            } else {
+                for (int i = 0; i < partSeeds.size(); i++) {
+                    SDG sdg = new SDG(partCg, partPa, getDataOptions(), getControlOptions());
+                    Budget.Monitor solve = sliceMonitor.startSolve();
+                    result.add(MultiSeedSlicer.computeForwardSlice(sdg, partSeeds.get(i), solve));
+                    if (solve.getTruncation() != null) {
+                        truncated.set(i);
+                    }
+                    statementsBuilt += RunMetrics.countBuiltStatements(sdg);
+                }
+            }
+            return result;
+        }
+
+        private void finish() {
+            if (done) {
+                return;
+            }
+            done = true;
+            if (thinSlicer != null) {
+                log("===> Done with slices");
+                thinSlicer = null;
+            }
+            metrics.recordBudget(sliceMonitor);
+            metrics.end();
+            metrics.count("sdg_statements", statementsBuilt);
+            metrics.count("slice_statements", sliceSet.size());
+            metrics.setSliceSizes(sliceSet.getSliceSizes());
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package slicing;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.types.TypeName;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Catalog of taint sources, matched against a class hierarchy in one traversal.
+ *
+ * Each line of a catalog file is a rule
+ *   <base-type> <method-name-prefix> <return-type>
+ * e.g. "Ljava/io/InputStream read I". A rule matches every method (declared or
+ * inherited) of every concrete class that extends or implements the base type,
+ * whose name starts with the prefix and whose return type is the given one. Use *
+ * for any name or any return type. Lines starting with # are comments.
+ *
+ * Rules are indexed by base type. A single pass over the hierarchy works out,
+ * for each class, which rules apply to it. This is memoized along the superclass
+ * chain. Methods are only scanned for concrete classes that at least one rule
+ * applies to. Each rule therefore costs nothing extra on top of one traversal,
+ * unlike one computeSubClasses walk per source.
+ */
+public class SourceCatalog {
+
+    private static final String ANY = "*";
+
+    private static class Rule {
+        final String baseType;
+        final String namePrefix;
+        final String returnType;
+
+        Rule(String baseType, String namePrefix, String returnType) {
+            this.baseType = baseType;
+            this.namePrefix = namePrefix;
+            this.returnType = returnType;
+        }
+
+        boolean matches(IMethod method) {
+            return matches(method.getName().toString(), method.getReturnType().getName().toString());
+        }
+
+        boolean matches(String name, String type) {
+            return (namePrefix.equals(ANY) || name.startsWith(namePrefix))
+                    && (returnType.equals(ANY) || type.equals(returnType));
+        }
+
+        @Override
+        public String toString() {
+            return baseType + " " + namePrefix + " " + returnType;
+        }
+    }
+
+    private final List<Rule> rules;
+    // base type name (as in TypeName.toString()) to the rules rooted there
+    private final Map<String, List<Rule>> byBaseType = new HashMap<>();
+
+    private SourceCatalog(List<Rule> rules) {
+        this.rules = rules;
+        for (Rule r : rules) {
+            List<Rule> l = byBaseType.get(r.baseType);
+            if (l == null) {
+                l = new ArrayList<>();
+                byBaseType.put(r.baseType, l);
+            }
+            l.add(r);
+        }
+    }
+
+    /**
+     * Catalog bundled with the slicer (sources.txt)
+     * @return
+     * @throws IOException
+     */
+    public static SourceCatalog defaultCatalog() throws IOException {
+        try (InputStream in = SourceCatalog.class.getClassLoader().getResourceAsStream("sources.txt")) {
+            if (in == null) {
+                throw new FileNotFoundException("sources.txt resource");
+            }
+            return parse(in, "sources.txt");
+        }
+    }
+
+    /**
+     * Read a catalog file
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static SourceCatalog load(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return parse(in, file.getPath());
+        }
+    }
+
+    private static SourceCatalog parse(InputStream stream, String name) throws IOException {
+        List<Rule> rules = new ArrayList<>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        String line;
+        int number = 0;
+        while ((line = in.readLine()) != null) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            if (parts.length != 3 || !parts[0].startsWith("L")) {
+                throw new IOException(name + ":" + number + ": expected <base-type> <method-name-prefix> <return-type>");
+            }
+            // TypeName.toString() has no trailing ; for class types
+            String base = parts[0].endsWith(";") ? parts[0].substring(0, parts[0].length() - 1) : parts[0];
+            String ret = parts[2].endsWith(";") ? parts[2].substring(0, parts[2].length() - 1) : parts[2];
+            rules.add(new Rule(base, parts[1], ret));
+        }
+        return new SourceCatalog(rules);
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    // content hash of the rules, for cache keys
+    public String getDigest() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Rule r : rules) {
+                digest.update(r.toString().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b & 0xff));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * All source methods in a class hierarchy
+     * @param cha
+     * @return
+     */
+    public Set<MethodReference> match(IClassHierarchy cha) {
+        Set<MethodReference> methods = new HashSet<>();
+        Map<IClass, List<Rule>> memo = new HashMap<>();
+        for (IClass klass : cha) {
+            // we only collect method references for concrete classes
+            if (klass.isAbstract() || klass.isInterface()) {
+                continue;
+            }
+            List<Rule> applicable = rulesFor(klass, memo);
+            if (applicable.isEmpty()) {
+                continue;
+            }
+            for (IMethod method : klass.getAllMethods()) {
+                for (Rule r : applicable) {
+                    if (r.matches(method)) {
+                        methods.add(method.getReference());
+                        break;
+                    }
+                }
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * Whether a call to a method with this selector (name and descriptor, e.g.
+     * read()I) could be a source. The base type is ignored, as it can only be
+     * checked against a class hierarchy
+     * @param selector
+     * @return
+     */
+    public boolean mayMatch(String selector) {
+        int paren = selector.indexOf('(');
+        int close = selector.lastIndexOf(')');
+        if (paren < 0 || close < paren) {
+            return false;
+        }
+        String name = selector.substring(0, paren);
+        String type = selector.substring(close + 1);
+        if (type.endsWith(";")) {
+            type = type.substring(0, type.length() - 1);
+        }
+        for (Rule r : rules) {
+            if (r.matches(name, type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // rules rooted at the class, its superclasses or any interface it implements
+    private List<Rule> rulesFor(IClass klass, Map<IClass, List<Rule>> memo) {
+        List<Rule> cached = memo.get(klass);
+        if (cached != null) {
+            return cached;
+        }
+        List<Rule> result = new ArrayList<>();
+        addOwn(klass.getName(), result);
+        IClass superclass = klass.getSuperclass();
+        if (superclass != null) {
+            for (Rule r : rulesFor(superclass, memo)) {
+                if (!result.contains(r)) {
+                    result.add(r);
+                }
+            }
+        }
+        if (!byBaseType.isEmpty()) {
+            for (IClass i : klass.getAllImplementedInterfaces()) {
+                addOwn(i.getName(), result);
+            }
+        }
+        memo.put(klass, result);
+        return result;
+    }
+
+    private void addOwn(TypeName name, List<Rule> result) {
+        List<Rule> own = byBaseType.get(name.toString());
+        if (own != null) {
+            for (Rule r : own) {
+                if (!result.contains(r)) {
+                    result.add(r);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Source catalog of " + rules.size() + " rules over " + byBaseType.size() + " base types";
+    }
+}
@@ -0,0 +1,81 @@
+package slicing;
+
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.slicer.*;
+import com.ibm.wala.types.MethodReference;
+
+/**
+ * Identity of a statement that holds across call graphs built from the same scope,
+ * used to merge the slices of a partitioned call graph. Each partition has its own
+ * class hierarchy, so its CGNodes and statements never equal another partition's;
+ * method references are interned and do. A statement is its method, context, kind,
+ * instruction index and value number, with the heap location for heap statements.
+ */
+final class StatementKey {
+
+    private final MethodReference method;
+    // contexts hold objects of their partition's hierarchy, their text is compared instead
+    private final String context;
+    private final Statement.Kind kind;
+    private final int index;
+    private final int valueNumber;
+    private final String location;
+
+    private StatementKey(MethodReference method, String context, Statement.Kind kind, int index, int valueNumber,
+                         String location) {
+        this.method = method;
+        this.context = context;
+        this.kind = kind;
+        this.index = index;
+        this.valueNumber = valueNumber;
+        this.location = location;
+    }
+
+    public static StatementKey of(Statement s) {
+        CGNode node = s.getNode();
+        int index = -1;
+        int valueNumber = s instanceof ValueNumberCarrier ? ((ValueNumberCarrier) s).getValueNumber() : -1;
+        String location = null;
+        if (s instanceof StatementWithInstructionIndex) {
+            index = ((StatementWithInstructionIndex) s).getInstructionIndex();
+        } else if (s instanceof PhiStatement) {
+            valueNumber = ((PhiStatement) s).getPhi().getDef();
+        } else if (s instanceof PiStatement) {
+            valueNumber = ((PiStatement) s).getPi().getDef();
+        } else if (s instanceof GetCaughtExceptionStatement) {
+            valueNumber = ((GetCaughtExceptionStatement) s).getInstruction().getDef();
+        } else if (s instanceof HeapStatement) {
+            if (s instanceof HeapStatement.HeapParamCaller) {
+                index = ((HeapStatement.HeapParamCaller) s).getCallIndex();
+            } else if (s instanceof HeapStatement.HeapReturnCaller) {
+                index = ((HeapStatement.HeapReturnCaller) s).getCallIndex();
+            }
+            location = ((HeapStatement) s).getLocation().toString();
+        }
+        return new StatementKey(node.getMethod().getReference(), node.getContext().toString(), s.getKind(),
+                index, valueNumber, location);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StatementKey)) {
+            return false;
+        }
+        StatementKey other = (StatementKey) o;
+        return method.equals(other.method) && kind == other.kind && index == other.index
+                && valueNumber == other.valueNumber && context.equals(other.context)
+                && (location == null ? other.location == null : location.equals(other.location));
+    }
+
+    @Override
+    public int hashCode() {
+        int h = method.hashCode();
+        h = 31 * h + kind.hashCode();
+        h = 31 * h + index;
+        h = 31 * h + valueNumber;
+        return h;
+    }
+}
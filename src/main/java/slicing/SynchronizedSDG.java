@@ -0,0 +1,173 @@
+package slicing;
+
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.ipa.slicer.ISDG;
+import com.ibm.wala.ipa.slicer.PDG;
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.util.intset.IntSet;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * ISDG view that serializes every call into an underlying (lazily built) SDG so
+ * that several slicing threads can share it.
+ *
+ * WALA builds PDGs and dependence edges on demand and caches them in unsynchronized
+ * maps, and building them pulls IR out of the shared AnalysisCache. All of that
+ * happens under one lock here. PDGs handed out are fully populated first, since the
+ * slice supergraph reads them directly, and iterators are copied so that nothing
+ * lazy escapes the lock.
+ */
+public class SynchronizedSDG implements ISDG {
+
+    private final ISDG sdg;
+
+    public SynchronizedSDG(ISDG sdg) {
+        this.sdg = sdg;
+    }
+
+    private static <T> Iterator<T> copy(Iterator<? extends T> it) {
+        List<T> items = new ArrayList<>();
+        while (it.hasNext()) {
+            items.add(it.next());
+        }
+        return items.iterator();
+    }
+
+    @Override
+    public synchronized ControlDependenceOptions getCOptions() {
+        return sdg.getCOptions();
+    }
+
+    @Override
+    public synchronized PDG getPDG(CGNode node) {
+        PDG pdg = sdg.getPDG(node);
+        // forces PDG.populate() while we hold the lock
+        pdg.getNumberOfNodes();
+        return pdg;
+    }
+
+    @Override
+    public synchronized Iterator<? extends Statement> iterateLazyNodes() {
+        return copy(sdg.iterateLazyNodes());
+    }
+
+    @Override
+    public synchronized IClassHierarchy getClassHierarchy() {
+        return sdg.getClassHierarchy();
+    }
+
+    @Override
+    public synchronized void removeNodeAndEdges(Statement n) {
+        sdg.removeNodeAndEdges(n);
+    }
+
+    @Override
+    public synchronized Iterator<Statement> iterator() {
+        return copy(sdg.iterator());
+    }
+
+    @Override
+    public synchronized int getNumberOfNodes() {
+        return sdg.getNumberOfNodes();
+    }
+
+    @Override
+    public synchronized void addNode(Statement n) {
+        sdg.addNode(n);
+    }
+
+    @Override
+    public synchronized void removeNode(Statement n) {
+        sdg.removeNode(n);
+    }
+
+    @Override
+    public synchronized boolean containsNode(Statement n) {
+        return sdg.containsNode(n);
+    }
+
+    @Override
+    public synchronized int getNumber(Statement n) {
+        return sdg.getNumber(n);
+    }
+
+    @Override
+    public synchronized Statement getNode(int number) {
+        return sdg.getNode(number);
+    }
+
+    @Override
+    public synchronized int getMaxNumber() {
+        return sdg.getMaxNumber();
+    }
+
+    @Override
+    public synchronized Iterator<Statement> iterateNodes(IntSet s) {
+        return copy(sdg.iterateNodes(s));
+    }
+
+    @Override
+    public synchronized Iterator<Statement> getPredNodes(Statement n) {
+        return copy(sdg.getPredNodes(n));
+    }
+
+    @Override
+    public synchronized int getPredNodeCount(Statement n) {
+        return sdg.getPredNodeCount(n);
+    }
+
+    @Override
+    public synchronized Iterator<Statement> getSuccNodes(Statement n) {
+        return copy(sdg.getSuccNodes(n));
+    }
+
+    @Override
+    public synchronized int getSuccNodeCount(Statement n) {
+        return sdg.getSuccNodeCount(n);
+    }
+
+    @Override
+    public synchronized void addEdge(Statement src, Statement dst) {
+        sdg.addEdge(src, dst);
+    }
+
+    @Override
+    public synchronized void removeEdge(Statement src, Statement dst) {
+        sdg.removeEdge(src, dst);
+    }
+
+    @Override
+    public synchronized void removeAllIncidentEdges(Statement node) {
+        sdg.removeAllIncidentEdges(node);
+    }
+
+    @Override
+    public synchronized void removeIncomingEdges(Statement node) {
+        sdg.removeIncomingEdges(node);
+    }
+
+    @Override
+    public synchronized void removeOutgoingEdges(Statement node) {
+        sdg.removeOutgoingEdges(node);
+    }
+
+    @Override
+    public synchronized boolean hasEdge(Statement src, Statement dst) {
+        return sdg.hasEdge(src, dst);
+    }
+
+    @Override
+    public synchronized IntSet getSuccNodeNumbers(Statement node) {
+        return sdg.getSuccNodeNumbers(node);
+    }
+
+    @Override
+    public synchronized IntSet getPredNodeNumbers(Statement node) {
+        return sdg.getPredNodeNumbers(node);
+    }
+}
@@ -0,0 +1,100 @@
+package slicing;
+
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
+import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
+import com.ibm.wala.ipa.callgraph.propagation.PointerKey;
+import com.ibm.wala.ipa.modref.ModRef;
+import com.ibm.wala.ipa.slicer.ISDG;
+import com.ibm.wala.ipa.slicer.SDG;
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.ipa.slicer.thin.CISDG;
+import com.ibm.wala.ipa.slicer.thin.CISlicer;
+
+import java.util.*;
+
+/**
+ * Forward thin slicer: follows the statements that use the values a seed
+ * produces, through locals, parameters, returns and the heap, but not the
+ * statements whose execution merely depends on them. As in thin slicing, a value
+ * used only as the base pointer of a field access or call is not followed, which
+ * is what NO_BASE_NO_HEAP leaves out.
+ *
+ * This is the dependence graph of WALA's context-insensitive thin slicer. The SDG
+ * is built without heap dependences and each heap read is instead linked directly
+ * to every write of the same pointer keys, found from mod/ref. WALA only walks that
+ * graph backwards. Here it is walked forwards from the seeds. There is no
+ * tabulation and no call/return matching, so a slice is a plain reachability
+ * search over one graph that all seeds share.
+ */
+public class ThinForwardSlicer {
+
+    private final SDG sdg;
+    private final ISDG graph;
+
+    /**
+     * Build the thin dependence graph, in thin slicing with NO_BASE_NO_HEAP and no control dependences
+     * @param cg
+     * @param pa
+     * @param dataOptions must ignore heap dependences, the heap is tracked through mod/ref instead
+     * @param controlOptions
+     */
+    public ThinForwardSlicer(CallGraph cg,
+                             PointerAnalysis<InstanceKey> pa,
+                             DataDependenceOptions dataOptions,
+                             ControlDependenceOptions controlOptions) {
+        if (!dataOptions.isIgnoreHeap()) {
+            throw new IllegalArgumentException("thin slices track the heap through mod/ref, data dependences "
+                    + dataOptions + " include heap dependences, use e.g. NO_BASE_NO_HEAP");
+        }
+        ModRef modRef = ModRef.make();
+        this.sdg = new SDG(cg, pa, modRef, dataOptions, controlOptions, null);
+        Map<Statement, Set<PointerKey>> mod = CISlicer.scanForMod(sdg, pa, modRef);
+        Map<Statement, Set<PointerKey>> ref = CISlicer.scanForRef(sdg, pa, modRef);
+        // CISDG's constructor is protected, WALA only builds it inside CISlicer
+        this.graph = new CISDG(sdg, mod, ref) {
+        };
+    }
+
+    // the SDG without heap dependences, the thin graph adds the heap edges from writes to reads on top
+    public SDG getSDG() {
+        return sdg;
+    }
+
+    // the SDG plus the heap edges from writes to reads
+    public ISDG getGraph() {
+        return graph;
+    }
+
+    /**
+     * Forward thin slice of a single seed, stopping early if the monitor's budget runs out
+     * @param seed
+     * @param monitor monitor for this pass, null for no budget
+     * @return
+     */
+    public Collection<Statement> computeForwardSlice(Statement seed, Budget.Monitor monitor) {
+        Set<Statement> reached = new HashSet<>();
+        Deque<Statement> worklist = new ArrayDeque<>();
+        reached.add(seed);
+        worklist.add(seed);
+        while (!worklist.isEmpty()) {
+            if (monitor != null && monitor.isCanceled()) {
+                monitor.stopped();
+                break;
+            }
+            Statement s = worklist.poll();
+            for (Iterator<Statement> it = graph.getSuccNodes(s); it.hasNext(); ) {
+                Statement succ = it.next();
+                if (reached.add(succ)) {
+                    worklist.add(succ);
+                    if (monitor != null) {
+                        monitor.reached();
+                    }
+                }
+            }
+        }
+        return reached;
+    }
+}
@@ -0,0 +1,36 @@
+package samples;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The Example.java from the README, with two more calls to bye and a taint source.
+ */
+public class Example {
+    public static String hi(String nm) {
+        return "hi " + nm;
+    }
+
+    public static String bye(String nm) {
+        return "bye " + nm;
+    }
+
+    public static String other(String nm) {
+        String dummy = bye("nope");
+        return bye(nm);
+    }
+
+    static int readOne(InputStream in) throws IOException {
+        int c = in.read();
+        return c + 1;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String myHi = hi("you");
+        String myBye = bye("you");
+        String complete = myBye + "!";
+        String dummy = other("me");
+        int r = readOne(new ByteArrayInputStream(new byte[4]));
+    }
+}
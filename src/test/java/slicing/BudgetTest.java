@@ -0,0 +1,122 @@
+package slicing;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BudgetTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeBudget() {
+        new Budget(0, -1, 0);
+    }
+
+    @Test
+    public void optionsAreSecondsAndStatements() throws Exception {
+        Budget budget = Budget.fromOptions(DriverOptions.parse(new String[]{
+                "--cg-time-budget=0.05", "--slice-statement-budget=3"}));
+        assertFalse(budget.startCallGraph().isUnlimited());
+        Budget.Monitor solve = budget.startSlice().startSolve();
+        for (int i = 0; i < 3; i++) {
+            solve.reached();
+        }
+        assertFalse(solve.isCanceled());
+
+        assertTrue(Budget.fromOptions(DriverOptions.empty()).startCallGraph().isUnlimited());
+        try {
+            Budget.fromOptions(DriverOptions.parse(new String[]{"--slice-time-budget=soon"}));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("--slice-time-budget"));
+        }
+    }
+
+    @Test
+    public void unlimitedNeverCancels() {
+        Budget.Monitor slice = Budget.unlimited().startSlice();
+        Budget.Monitor solve = slice.startSolve();
+        for (int i = 0; i < 100000; i++) {
+            solve.reached();
+        }
+        assertTrue(slice.isUnlimited() && solve.isUnlimited());
+        assertFalse(solve.isCanceled());
+        assertNull(slice.getTruncation());
+    }
+
+    @Test
+    public void statementBudgetIsPerSolve() {
+        Budget.Monitor slice = new Budget(0, 0, 2).startSlice();
+        Budget.Monitor first = slice.startSolve();
+        first.reached();
+        first.reached();
+        assertFalse(first.isCanceled());
+        first.reached();
+        assertTrue(first.isCanceled());
+        assertEquals("statement budget of 2 exceeded", first.getCancelMessage());
+
+        // a new pass counts from zero, and the phase itself goes on
+        Budget.Monitor second = slice.startSolve();
+        second.reached();
+        assertFalse(second.isCanceled());
+        assertFalse(slice.isCanceled());
+    }
+
+    @Test
+    public void truncationIsReportedToThePhase() {
+        Budget.Monitor slice = new Budget(0, 0, 1).startSlice();
+        Budget.Monitor solve = slice.startSolve();
+        solve.reached();
+        assertNull(solve.getTruncation());
+        solve.reached();
+        // canceling alone is not truncation, WALA has to actually stop
+        assertNull(slice.getTruncation());
+        solve.stopped();
+        assertEquals("statement budget of 1 exceeded", solve.getTruncation());
+        assertEquals("statement budget of 1 exceeded", slice.getTruncation());
+
+        // the phase keeps the first reason
+        Budget.Monitor other = slice.startSolve();
+        other.cancel();
+        other.stopped();
+        assertEquals("canceled", other.getTruncation());
+        assertEquals("statement budget of 1 exceeded", slice.getTruncation());
+    }
+
+    @Test
+    public void timeBudgetCancelsThePhaseAndItsPasses() throws Exception {
+        Budget.Monitor slice = new Budget(0, 20, 0).startSlice();
+        Budget.Monitor solve = slice.startSolve();
+        assertFalse(solve.isCanceled());
+        Thread.sleep(50);
+        assertTrue(solve.isCanceled());
+        assertEquals("time budget of 20 ms exceeded", solve.getCancelMessage());
+        assertTrue(slice.startSolve().isCanceled());
+    }
+
+    @Test
+    public void statementBudgetTruncatesLargeSlices() throws Exception {
+        int[] full = SampleJar.exampleSession().slice().getSliceSet().getSliceSizes();
+        SlicingSession session = new SlicingSession(SampleJar.write(SampleJar.EXAMPLE), "0cfa",
+                SlicingSession.Criteria.callee(SampleJar.BYE));
+        session.setSliceMode("per-seed");
+        session.setBudget(new Budget(0, 0, 5));
+        SlicingSession.Slices slices = session.slice();
+        assertEquals(full.length, slices.getSeeds().size());
+
+        int expected = 0;
+        for (SlicingSession.Slice slice : slices) {
+            int size = full[slice.getIndex()];
+            // a pass only stops once it reaches more statements than the budget
+            assertEquals(size > 5, slice.isTruncated());
+            if (slice.isTruncated()) {
+                expected++;
+                assertTrue(slice.getStatements().size() < size);
+            } else {
+                assertEquals(size, slice.getStatements().size());
+            }
+        }
+        assertTrue(expected > 0);
+        assertEquals(expected, slices.getTruncatedCount());
+        assertEquals("statement budget of 5 exceeded", slices.getTruncation());
+    }
+}
@@ -0,0 +1,87 @@
+package slicing;
+
+import com.ibm.wala.classLoader.CallSiteReference;
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.callgraph.CallGraph;
+import com.ibm.wala.ipa.slicer.NormalStatement;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.ssa.SSAAbstractInvokeInstruction;
+import com.ibm.wala.ssa.SSAInstruction;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.util.collections.Iterator2Iterable;
+import com.ibm.wala.util.strings.StringStuff;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CallIndexTest {
+
+    private static CallGraph cg;
+    private static CallIndex index;
+
+    @BeforeClass
+    public static void buildIndex() throws Exception {
+        SlicingSession session = SampleJar.exampleSession();
+        cg = session.getCallGraph();
+        index = new CallIndex(cg);
+    }
+
+    @Test
+    public void nodesAndCallersMatchCallGraphScan() {
+        for (CGNode n : cg) {
+            MethodReference method = n.getMethod().getReference();
+            assertTrue(index.getNodes(method).contains(n));
+
+            Set<CGNode> expected = new HashSet<>();
+            for (CGNode m : cg) {
+                for (CGNode target : Iterator2Iterable.make(cg.getSuccNodes(m))) {
+                    if (target.getMethod().getReference().equals(method)) {
+                        expected.add(m);
+                    }
+                }
+            }
+            assertEquals(method.toString(), expected, index.getCallers(method));
+        }
+    }
+
+    @Test
+    public void callSitesMatchInstructionScan() {
+        for (CGNode caller : cg) {
+            if (caller.getIR() == null) {
+                continue;
+            }
+            SSAInstruction[] instructions = caller.getIR().getInstructions();
+            Map<MethodReference, List<Statement>> declared = new HashMap<>();
+            for (int i = 0; i < instructions.length; i++) {
+                if (instructions[i] instanceof SSAAbstractInvokeInstruction) {
+                    CallSiteReference site = ((SSAAbstractInvokeInstruction) instructions[i]).getCallSite();
+                    if (!declared.containsKey(site.getDeclaredTarget())) {
+                        declared.put(site.getDeclaredTarget(), new ArrayList<Statement>());
+                    }
+                    declared.get(site.getDeclaredTarget()).add(new NormalStatement(caller, i));
+                }
+            }
+            for (Map.Entry<MethodReference, List<Statement>> e : declared.entrySet()) {
+                assertEquals(caller + " -> " + e.getKey(), e.getValue(),
+                        index.getCallsByDeclaredTarget(caller, e.getKey()));
+            }
+        }
+    }
+
+    @Test
+    public void resolvedTargetsFindTheCallsToBye() {
+        MethodReference bye = StringStuff.makeMethodReference(SampleJar.BYE);
+        int calls = 0;
+        for (CGNode caller : index.getCallers(bye)) {
+            List<Statement> sites = index.getCallsByResolvedTarget(caller, bye);
+            assertEquals(index.getCallsByDeclaredTarget(caller, bye), sites);
+            calls += sites.size();
+        }
+        assertEquals("calls to bye in main and other", 3, calls);
+        assertTrue(index.getNodes(StringStuff.makeMethodReference("samples.Example.nope()V")).isEmpty());
+    }
+}
@@ -0,0 +1,77 @@
+package slicing;
+
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DriverOptionsTest {
+
+    private static DriverOptions parse(String... args) {
+        return DriverOptions.parse(args);
+    }
+
+    @Test
+    public void positionalAndFlags() {
+        DriverOptions options = parse("example.jar", "--incremental", "--workers=4", "0cfa", "--output=a=b");
+        assertEquals(Arrays.asList("example.jar", "0cfa"), options.getPositional());
+        assertTrue(options.has("incremental"));
+        assertEquals(4, options.getInt("workers", 1));
+        assertEquals(1, options.getInt("jobs", 1));
+        assertEquals("a=b", options.getString("output", null));
+    }
+
+    @Test
+    public void enumIgnoresCase() {
+        DriverOptions options = parse("--data-deps=no_base_no_heap", "--control-deps=NONE");
+        assertEquals(DataDependenceOptions.NO_BASE_NO_HEAP,
+                options.getEnum("data-deps", DataDependenceOptions.class, DataDependenceOptions.FULL));
+        assertEquals(ControlDependenceOptions.NONE,
+                options.getEnum("control-deps", ControlDependenceOptions.class, ControlDependenceOptions.FULL));
+        assertEquals(DataDependenceOptions.FULL,
+                parse().getEnum("data-deps", DataDependenceOptions.class, DataDependenceOptions.FULL));
+    }
+
+    @Test
+    public void unknownEnumNamesTheFlagAndChoices() {
+        try {
+            parse("--control-deps=some").getEnum("control-deps", ControlDependenceOptions.class, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("--control-deps expects one of ["));
+            assertTrue(e.getMessage().contains("NO_EXCEPTIONAL_EDGES"));
+            assertTrue(e.getMessage().endsWith("but got some"));
+        }
+    }
+
+    @Test
+    public void enumListSplitsOnCommas() {
+        List<DataDependenceOptions> defaults = Collections.singletonList(DataDependenceOptions.FULL);
+        assertEquals(Arrays.asList(DataDependenceOptions.NO_HEAP, DataDependenceOptions.NO_BASE_PTRS),
+                parse("--data=no_heap, No_Base_Ptrs").getEnumList("data", DataDependenceOptions.class, defaults));
+        assertSame(defaults, parse().getEnumList("data", DataDependenceOptions.class, defaults));
+        try {
+            parse("--data=full,,no_heap").getEnumList("data", DataDependenceOptions.class, defaults);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("--data expects one of"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void intFlagMustBeAnInteger() {
+        parse("--workers=many").getInt("workers", 1);
+    }
+
+    @Test
+    public void setOverridesParsedFlags() {
+        DriverOptions options = parse("--slice-mode=per-seed").set("slice-mode", "multi-seed");
+        assertEquals("multi-seed", options.getString("slice-mode", null));
+        assertTrue(DriverOptions.empty().set("incremental", "true").has("incremental"));
+    }
+}
@@ -0,0 +1,132 @@
+package slicing;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class JarManifestTest {
+
+    private static final String BYE = "Prog.bye(Ljava/lang/String;)Ljava/lang/String;";
+    private static final String PROG =
+            "public class Prog {\n" +
+            "    static String bye(String s) { return \"bye \" + s; }\n" +
+            "    static String unused(String s) { return s; }\n" +
+            "    public static void main(String[] args) { String x = bye(\"you\"); }\n" +
+            "}\n";
+    private static final String OTHER =
+            "public class Other {\n" +
+            "    static int twice(int x) { return 2 * x; }\n" +
+            "}\n";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final JarManifest.CallMatcher CALLS_BYE = new JarManifest.CallMatcher() {
+        @Override
+        public boolean matches(String selector) {
+            return selector.equals("bye(Ljava/lang/String;)Ljava/lang/String;");
+        }
+    };
+
+    private JarManifest manifest(String... sources) throws Exception {
+        File jar = tmp.newFile();
+        SampleJar.compile(jar, sources);
+        return JarManifest.read(jar);
+    }
+
+    @Test
+    public void unchangedJarHasNoChanges() throws Exception {
+        JarManifest before = manifest(PROG, OTHER);
+        JarManifest after = manifest(PROG, OTHER);
+        assertTrue(before.changedClasses(after).isEmpty());
+        assertTrue(before.changedMethods(after).isEmpty());
+        assertTrue(before.addedClasses(after).isEmpty());
+    }
+
+    @Test
+    public void changedBodyChangesOnlyThatMethod() throws Exception {
+        JarManifest before = manifest(PROG, OTHER);
+        JarManifest after = manifest(PROG.replace("return s;", "return s + \"!\";"), OTHER);
+        assertEquals(Collections.singleton("Prog.unused(Ljava/lang/String;)Ljava/lang/String;"),
+                before.changedMethods(after));
+        assertTrue(before.changedClasses(after).isEmpty());
+    }
+
+    @Test
+    public void addedMethodChangesItsClass() throws Exception {
+        JarManifest before = manifest(PROG, OTHER);
+        JarManifest after = manifest(PROG, OTHER.replace("}\n}", "}\n    static int thrice(int x) { return 3 * x; }\n}"));
+        assertEquals(Collections.singleton("Other"), before.changedClasses(after));
+        assertEquals(Collections.singleton("Other.thrice(I)I"), before.changedMethods(after));
+        assertTrue(before.addedClasses(after).isEmpty());
+    }
+
+    @Test
+    public void addedAndRemovedClasses() throws Exception {
+        JarManifest before = manifest(PROG);
+        JarManifest after = manifest(PROG, OTHER);
+        assertEquals(Collections.singleton("Other"), before.addedClasses(after));
+        assertTrue(before.changedClasses(after).contains("Other"));
+        assertTrue(after.addedClasses(before).isEmpty());
+        assertTrue(after.changedClasses(before).contains("Other"));
+    }
+
+    @Test
+    public void mainAndCalls() throws Exception {
+        JarManifest manifest = manifest(PROG, OTHER);
+        assertTrue(manifest.declaresMain("Prog"));
+        assertFalse(manifest.declaresMain("Other"));
+        assertTrue(manifest.calls("Prog.main([Ljava/lang/String;)V", CALLS_BYE));
+        assertFalse(manifest.calls("Prog.unused(Ljava/lang/String;)Ljava/lang/String;", CALLS_BYE));
+    }
+
+    @Test
+    public void writeAndLoadKeepHashes() throws Exception {
+        JarManifest read = manifest(PROG, OTHER);
+        File file = tmp.newFile("manifest.tsv");
+        read.write(file);
+        JarManifest loaded = JarManifest.load(file);
+        assertTrue(loaded.changedClasses(read).isEmpty());
+        assertTrue(loaded.changedMethods(read).isEmpty());
+        assertTrue(loaded.declaresMain("Prog"));
+        // calls are not written out
+        assertFalse(loaded.calls("Prog.main([Ljava/lang/String;)V", CALLS_BYE));
+    }
+
+    @Test
+    public void incrementalReuseOnlyForChangesThatCannotReachTheCallGraph() throws Exception {
+        File jar = tmp.newFile("prog.jar");
+        SliceCache cache = new SliceCache(tmp.newFolder("cache"));
+        SampleJar.compile(jar, PROG, OTHER);
+        SlicingSession first = session(jar, cache);
+        assertNull(first.lookupCached());
+        assertEquals(1, first.slice().size());
+        assertTrue(first.store());
+
+        // a new entrypoint
+        SampleJar.compile(jar, PROG, OTHER.replace("}\n}", "}\n    public static void main(String[] args) { }\n}"));
+        assertNull(session(jar, cache).lookupCached());
+        // a new class, which could be a dispatch target
+        SampleJar.compile(jar, PROG, OTHER, "class Extra { }\n");
+        assertNull(session(jar, cache).lookupCached());
+        // a new call to the criteria outside the call graph
+        SampleJar.compile(jar, PROG.replace("return s;", "return bye(s);"), OTHER);
+        assertNull(session(jar, cache).lookupCached());
+        // a change in a method nothing calls
+        SampleJar.compile(jar, PROG.replace("return s;", "return s + \"!\";"), OTHER);
+        CachedSlice reused = session(jar, cache).lookupCached();
+        assertNotNull(reused);
+        assertEquals(1, reused.getSeeds().size());
+    }
+
+    private static SlicingSession session(File jar, SliceCache cache) {
+        SlicingSession session = new SlicingSession(jar.getPath(), "0cfa", SlicingSession.Criteria.callee(BYE));
+        session.setCache(cache, true);
+        return session;
+    }
+}
@@ -0,0 +1,52 @@
+package slicing;
+
+import com.ibm.wala.ipa.slicer.SDG;
+import com.ibm.wala.ipa.slicer.Slicer;
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MultiSeedSlicerTest {
+
+    private static SlicingSession session;
+
+    @BeforeClass
+    public static void buildCallGraph() throws Exception {
+        session = SampleJar.exampleSession();
+    }
+
+    @Test
+    public void multiSeedSlicesMatchPerSeedSlices() throws Exception {
+        List<Statement> seeds = session.getSeeds();
+        assertEquals("calls to bye in main and other", 3, seeds.size());
+
+        MultiSeedSlicer slicer = new MultiSeedSlicer(session.getCallGraph(), session.getPointerAnalysis(),
+                DataDependenceOptions.FULL, ControlDependenceOptions.FULL);
+        MultiSeedSlice multi = slicer.computeForwardSlice(seeds);
+        SDG sdg = new SDG(session.getCallGraph(), session.getPointerAnalysis(),
+                DataDependenceOptions.FULL, ControlDependenceOptions.FULL);
+        for (int i = 0; i < seeds.size(); i++) {
+            HashSet<Statement> expected = new HashSet<>(Slicer.computeForwardSlice(sdg, seeds.get(i)));
+            assertTrue(expected.contains(seeds.get(i)));
+            assertEquals("slice of seed " + i, expected, new HashSet<>(multi.getSlice(i)));
+        }
+    }
+
+    @Test
+    public void singleSeedSliceMatchesWala() throws Exception {
+        SDG sdg = new SDG(session.getCallGraph(), session.getPointerAnalysis(),
+                DataDependenceOptions.FULL, ControlDependenceOptions.FULL);
+        for (Statement seed : session.getSeeds()) {
+            assertEquals(new HashSet<>(Slicer.computeForwardSlice(sdg, seed)),
+                    new HashSet<>(MultiSeedSlicer.computeForwardSlice(sdg, seed, null)));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package slicing;
+
+import com.ibm.wala.ipa.slicer.SDG;
+import com.ibm.wala.ipa.slicer.Slicer;
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelSlicerTest {
+
+    @Test
+    public void sharedSdgSlicesMatchSequentialSlices() throws Exception {
+        checkAgainstSequential(false);
+    }
+
+    @Test
+    public void perWorkerSdgSlicesMatchSequentialSlices() throws Exception {
+        checkAgainstSequential(true);
+    }
+
+    private static void checkAgainstSequential(boolean perWorkerSdg) throws Exception {
+        SlicingSession session = SampleJar.exampleSession();
+        List<Statement> seeds = session.getSeeds();
+        ParallelSlicer slicer = new ParallelSlicer(session.getCallGraph(), session.getPointerAnalysis(),
+                DataDependenceOptions.FULL, ControlDependenceOptions.FULL, 2, perWorkerSdg);
+        List<Collection<Statement>> slices = slicer.computeForwardSlices(seeds);
+
+        assertEquals(seeds.size(), slices.size());
+        assertTrue(slicer.getTruncatedSeeds().isEmpty());
+        assertTrue(slicer.getStatementsBuilt() > 0);
+        SDG sdg = new SDG(session.getCallGraph(), session.getPointerAnalysis(),
+                DataDependenceOptions.FULL, ControlDependenceOptions.FULL);
+        for (int i = 0; i < seeds.size(); i++) {
+            assertEquals("slice of seed " + i, new HashSet<>(Slicer.computeForwardSlice(sdg, seeds.get(i))),
+                    new HashSet<>(slices.get(i)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroWorkers() throws Exception {
+        SlicingSession session = SampleJar.exampleSession();
+        new ParallelSlicer(session.getCallGraph(), session.getPointerAnalysis(),
+                DataDependenceOptions.FULL, ControlDependenceOptions.FULL, 0, false);
+    }
+}
@@ -0,0 +1,168 @@
+package slicing;
+
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.slicer.NormalStatement;
+import com.ibm.wala.ipa.slicer.Slicer.ControlDependenceOptions;
+import com.ibm.wala.ipa.slicer.Slicer.DataDependenceOptions;
+import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.util.graph.Graph;
+import com.ibm.wala.util.graph.impl.SlowSparseNumberedGraph;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ReachabilityIndexTest {
+
+    // any node, statements only need to be distinct
+    private static CGNode node;
+
+    @BeforeClass
+    public static void pickNode() throws Exception {
+        node = SampleJar.exampleSession().getCallGraph().getFakeRootNode();
+    }
+
+    private static List<Statement> statements(int n) {
+        List<Statement> result = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            result.add(new NormalStatement(node, i));
+        }
+        return result;
+    }
+
+    // plain depth-first search over the graph
+    private static Set<Statement> dfs(Graph<Statement> graph, Collection<Statement> seeds) {
+        Set<Statement> reached = new HashSet<>(seeds);
+        Deque<Statement> stack = new ArrayDeque<>(seeds);
+        while (!stack.isEmpty()) {
+            for (Iterator<Statement> it = graph.getSuccNodes(stack.pop()); it.hasNext(); ) {
+                Statement next = it.next();
+                if (reached.add(next)) {
+                    stack.push(next);
+                }
+            }
+        }
+        return reached;
+    }
+
+    private static Graph<Statement> randomGraph(Random random, List<Statement> nodes, double density) {
+        Graph<Statement> graph = SlowSparseNumberedGraph.make();
+        for (Statement s : nodes) {
+            graph.addNode(s);
+        }
+        for (Statement from : nodes) {
+            for (Statement to : nodes) {
+                if (random.nextDouble() < density) {
+                    graph.addEdge(from, to);
+                }
+            }
+        }
+        return graph;
+    }
+
+    private static void assertMatchesDfs(Graph<Statement> graph, List<Statement> nodes, Random random) {
+        ReachabilityIndex index = ReachabilityIndex.build(graph);
+        assertEquals(nodes.size(), index.getStatementCount());
+        for (int i = 0; i < nodes.size(); i++) {
+            Statement from = nodes.get(i);
+            Set<Statement> expected = dfs(graph, Collections.singleton(from));
+            assertEquals(expected, new HashSet<>(index.forwardSlice(Collections.singleton(from))));
+            for (int j = 0; j < nodes.size(); j++) {
+                // statement numbers, as these statements have no instructions to print
+                assertEquals(i + " -> " + j, expected.contains(nodes.get(j)), index.reaches(from, nodes.get(j)));
+            }
+        }
+        // a few multi-seed queries
+        for (int q = 0; q < 5; q++) {
+            List<Statement> seeds = sample(random, nodes);
+            List<Statement> targets = sample(random, nodes);
+            Set<Statement> expected = dfs(graph, seeds);
+            assertEquals(expected, new HashSet<>(index.forwardSlice(seeds)));
+            List<Statement> reached = new ArrayList<>();
+            for (Statement t : targets) {
+                if (expected.contains(t)) {
+                    reached.add(t);
+                }
+            }
+            assertEquals(reached, index.reached(seeds, targets));
+            assertEquals(!reached.isEmpty(), index.reachesAny(seeds, targets));
+        }
+    }
+
+    private static List<Statement> sample(Random random, List<Statement> nodes) {
+        List<Statement> result = new ArrayList<>();
+        for (Statement s : nodes) {
+            if (random.nextInt(4) == 0) {
+                result.add(s);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void randomGraphsMatchDepthFirstSearch() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            List<Statement> nodes = statements(1 + random.nextInt(30));
+            // from sparse DAG-like graphs to dense ones with large cycles
+            double density = new double[]{0.02, 0.05, 0.1, 0.3}[round % 4];
+            assertMatchesDfs(randomGraph(random, nodes, density), nodes, random);
+        }
+    }
+
+    @Test
+    public void chainsCyclesAndSelfLoops() {
+        List<Statement> s = statements(6);
+        Graph<Statement> graph = SlowSparseNumberedGraph.make();
+        for (Statement x : s) {
+            graph.addNode(x);
+        }
+        // 0 -> 1 -> 2 -> 0 is one component, it leads to 3 -> 4, 5 loops on itself alone
+        graph.addEdge(s.get(0), s.get(1));
+        graph.addEdge(s.get(1), s.get(2));
+        graph.addEdge(s.get(2), s.get(0));
+        graph.addEdge(s.get(2), s.get(3));
+        graph.addEdge(s.get(3), s.get(4));
+        graph.addEdge(s.get(5), s.get(5));
+
+        ReachabilityIndex index = ReachabilityIndex.build(graph);
+        assertEquals(4, index.getComponentCount());
+        assertTrue(index.reaches(s.get(1), s.get(0)));
+        assertTrue(index.reaches(s.get(0), s.get(4)));
+        assertFalse(index.reaches(s.get(4), s.get(3)));
+        assertFalse(index.reaches(s.get(0), s.get(5)));
+        assertTrue(index.reaches(s.get(5), s.get(5)));
+        assertMatchesDfs(graph, s, new Random(1));
+    }
+
+    @Test
+    public void statementsOutsideTheGraph() {
+        List<Statement> s = statements(3);
+        Graph<Statement> graph = SlowSparseNumberedGraph.make();
+        graph.addNode(s.get(0));
+        graph.addNode(s.get(1));
+        graph.addEdge(s.get(0), s.get(1));
+        ReachabilityIndex index = ReachabilityIndex.build(graph);
+        assertFalse(index.contains(s.get(2)));
+        assertTrue(index.reached(Collections.singleton(s.get(0)), Collections.singleton(s.get(2))).isEmpty());
+        try {
+            index.reaches(s.get(2), s.get(0));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void thinIndexGivesTheThinSlice() throws Exception {
+        SlicingSession session = SampleJar.exampleSession();
+        ThinForwardSlicer slicer = new ThinForwardSlicer(session.getCallGraph(), session.getPointerAnalysis(),
+                DataDependenceOptions.NO_BASE_NO_HEAP, ControlDependenceOptions.NONE);
+        ReachabilityIndex index = ReachabilityIndex.build(slicer.getGraph());
+        for (Statement seed : session.getSeeds()) {
+            assertEquals(new HashSet<>(slicer.computeForwardSlice(seed, null)),
+                    new HashSet<>(index.forwardSlice(Collections.singleton(seed))));
+        }
+    }
+}
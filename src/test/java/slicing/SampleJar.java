@@ -0,0 +1,119 @@
+package slicing;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Test programs compiled with the tests, written out to a temporary jar so the
+ * slicer can analyze them. Tests that need several versions of one program
+ * compile them from source instead.
+ */
+public class SampleJar {
+
+    public static final String EXAMPLE = "samples.Example";
+    public static final String BYE = EXAMPLE + ".bye(Ljava/lang/String;)Ljava/lang/String;";
+    public static final String MAIN = EXAMPLE + ".main([Ljava/lang/String;)V";
+
+    private static SlicingSession example;
+
+    /**
+     * 0-CFA session slicing from the calls to Example.bye, shared by the tests
+     * that only read its call graph
+     * @return
+     * @throws Exception
+     */
+    public static synchronized SlicingSession exampleSession() throws Exception {
+        if (example == null) {
+            example = new SlicingSession(write(EXAMPLE), "0cfa", SlicingSession.Criteria.callee(BYE));
+            example.getCallGraph();
+        }
+        return example;
+    }
+
+    /**
+     * Write the class files of some test classes into a fresh jar
+     * @param classNames
+     * @return path to the jar
+     * @throws IOException
+     */
+    public static String write(String... classNames) throws IOException {
+        File jar = File.createTempFile("sample", ".jar");
+        jar.deleteOnExit();
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            for (String className : classNames) {
+                String entry = className.replace('.', '/') + ".class";
+                try (InputStream in = SampleJar.class.getClassLoader().getResourceAsStream(entry)) {
+                    if (in == null) {
+                        throw new FileNotFoundException(entry);
+                    }
+                    addEntry(out, entry, in);
+                }
+            }
+        }
+        return jar.getAbsolutePath();
+    }
+
+    private static final Pattern CLASS_NAME = Pattern.compile("class\\s+(\\w+)");
+
+    /**
+     * Compile classes in the default package and write them into a jar, replacing
+     * whatever it held
+     * @param jar
+     * @param sources one top-level class per source
+     * @throws IOException
+     */
+    public static void compile(File jar, String... sources) throws IOException {
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null) {
+            throw new IllegalStateException("tests need a JDK to compile sample programs");
+        }
+        File dir = File.createTempFile("sample", ".src");
+        dir.delete();
+        dir.mkdirs();
+        List<String> args = new ArrayList<>();
+        args.add("-d");
+        args.add(dir.getPath());
+        for (String source : sources) {
+            Matcher m = CLASS_NAME.matcher(source);
+            if (!m.find()) {
+                throw new IllegalArgumentException("no class in " + source);
+            }
+            File file = new File(dir, m.group(1) + ".java");
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+                out.write(source);
+            }
+            args.add(file.getPath());
+        }
+        if (javac.run(null, null, null, args.toArray(new String[args.size()])) != 0) {
+            throw new IllegalStateException("sample program did not compile");
+        }
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            for (File file : dir.listFiles()) {
+                if (file.getName().endsWith(".class")) {
+                    try (InputStream in = new FileInputStream(file)) {
+                        addEntry(out, file.getName(), in);
+                    }
+                }
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static void addEntry(JarOutputStream out, String entry, InputStream in) throws IOException {
+        out.putNextEntry(new JarEntry(entry));
+        byte[] data = new byte[4096];
+        int read;
+        while ((read = in.read(data)) != -1) {
+            out.write(data, 0, read);
+        }
+        out.closeEntry();
+    }
+}
@@ -0,0 +1,129 @@
+package slicing;
+
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.ipa.slicer.MethodEntryStatement;
+import com.ibm.wala.ipa.slicer.Statement;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SliceSetTest {
+
+    // distinct statements to put in slices
+    private static List<Statement> statements = new ArrayList<>();
+
+    @BeforeClass
+    public static void collectStatements() throws Exception {
+        for (CGNode n : SampleJar.exampleSession().getCallGraph()) {
+            statements.add(new MethodEntryStatement(n));
+            if (statements.size() == 6) {
+                break;
+            }
+        }
+        assertEquals(6, statements.size());
+    }
+
+    private static List<Statement> get(int... indices) {
+        List<Statement> result = new ArrayList<>();
+        for (int i : indices) {
+            result.add(statements.get(i));
+        }
+        return result;
+    }
+
+    // three seeds: {0,1,2}, {1,2,3}, {4}
+    private static SliceSet sample() {
+        SliceSet set = new SliceSet(get(0, 1, 4));
+        set.add(0, get(0, 1, 2));
+        set.add(1, get(1, 2));
+        set.add(1, get(3));
+        set.add(2, get(4));
+        return set;
+    }
+
+    private static Set<Statement> toSet(SliceSet set, BitSet bits) {
+        return new HashSet<>(set.toStatements(bits));
+    }
+
+    @Test
+    public void sharedStatementsAreStoredOnce() {
+        SliceSet set = sample();
+        assertEquals(5, set.size());
+        assertArrayEquals(new int[]{3, 3, 1}, set.getSliceSizes());
+        assertEquals(new HashSet<>(get(0, 1, 2, 3, 4)), new HashSet<>(set.getStatements()));
+        assertEquals(new HashSet<>(get(1, 2, 3)), new HashSet<>(set.getSlice(1)));
+        // adding a statement again changes nothing
+        set.add(0, get(2));
+        assertEquals(3, set.getSliceSize(0));
+        assertEquals(5, set.size());
+    }
+
+    @Test
+    public void containsAndSeedsReaching() {
+        SliceSet set = sample();
+        assertTrue(set.contains(0, statements.get(0)));
+        assertFalse(set.contains(1, statements.get(0)));
+        assertFalse(set.contains(0, statements.get(5)));
+
+        BitSet reaching = set.getSeedsReaching(statements.get(2));
+        assertEquals(2, reaching.cardinality());
+        assertTrue(reaching.get(0) && reaching.get(1));
+        assertTrue(set.getSeedsReaching(statements.get(5)).isEmpty());
+    }
+
+    @Test
+    public void unionAndIntersection() {
+        SliceSet set = sample();
+        assertEquals(new HashSet<>(get(0, 1, 2, 3)), toSet(set, set.union(0, 1)));
+        assertEquals(new HashSet<>(get(0, 1, 2, 3, 4)), toSet(set, set.union(0, 1, 2)));
+        assertEquals(new HashSet<>(get(1, 2)), toSet(set, set.intersection(0, 1)));
+        assertTrue(set.intersection(0, 1, 2).isEmpty());
+        assertTrue(set.intersection().isEmpty());
+        assertTrue(set.union().isEmpty());
+
+        // the result is a copy, changing it leaves the slice alone
+        set.intersection(0).clear();
+        assertEquals(3, set.getSliceSize(0));
+    }
+
+    @Test
+    public void statementNumbersFollowFirstInclusion() {
+        SliceSet set = sample();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(statements.get(i), set.getStatement(i));
+        }
+    }
+
+    @Test
+    public void truncation() {
+        SliceSet set = sample();
+        assertEquals(0, set.getTruncatedCount());
+        set.markTruncated(2);
+        set.markTruncated(2);
+        assertTrue(set.isTruncated(2));
+        assertFalse(set.isTruncated(0));
+        assertEquals(1, set.getTruncatedCount());
+        // a truncated slice keeps what it had
+        assertEquals(1, set.getSliceSize(2));
+    }
+
+    @Test
+    public void statementViewFollowsTheBitSet() {
+        SliceSet set = sample();
+        BitSet bits = new BitSet();
+        Collection<Statement> view = set.toStatements(bits);
+        assertTrue(view.isEmpty());
+        bits.set(3);
+        assertEquals(Collections.singletonList(statements.get(3)), new ArrayList<>(view));
+        Iterator<Statement> it = view.iterator();
+        it.next();
+        try {
+            it.next();
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+    }
+}
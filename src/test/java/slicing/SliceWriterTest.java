@@ -0,0 +1,97 @@
+package slicing;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SliceWriterTest {
+
+    private static SlicingSession.Slices slices;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @BeforeClass
+    public static void slice() throws Exception {
+        slices = SampleJar.exampleSession().slice();
+        assertEquals(3, slices.getSeeds().size());
+    }
+
+    // every slice, with the last one marked truncated
+    private static void writeAll(SliceWriter writer) throws Exception {
+        try (SliceWriter w = writer) {
+            for (SlicingSession.Slice slice : slices) {
+                w.writeSlice(slice.getIndex(), slice.getSeed(), slice.getStatements());
+            }
+            w.markTruncated(slices.getSeeds().size() - 1);
+        }
+    }
+
+    @Test
+    public void ndjsonHasOneLinePerRecord() throws Exception {
+        File ndjson = tmp.newFile("out.ndjson");
+        writeAll(SliceWriter.open(ndjson, "ndjson"));
+
+        List<String> lines = Files.readAllLines(ndjson.toPath(), StandardCharsets.UTF_8);
+        int i = 0;
+        for (SlicingSession.Slice slice : slices) {
+            assertTrue(lines.get(i++).startsWith("{\"seed\": " + slice.getIndex() + ", \"statement\": {\"kind\": "));
+            for (int j = 0; j < slice.getStatements().size(); j++) {
+                assertTrue(lines.get(i++).startsWith("{\"stmt\": " + slice.getIndex() + ", \"kind\": "));
+            }
+            assertEquals("{\"end\": " + slice.getIndex() + ", \"size\": " + slice.getStatements().size() + "}",
+                    lines.get(i++));
+        }
+        assertEquals("{\"truncated\": " + (slices.getSeeds().size() - 1) + "}", lines.get(i++));
+        assertEquals(lines.size(), i);
+    }
+
+    @Test
+    public void binaryConvertsBackToTheSameNdjson() throws Exception {
+        File ndjson = tmp.newFile("out.ndjson");
+        writeAll(SliceWriter.open(ndjson, "ndjson"));
+        File binary = tmp.newFile("out.bin");
+        writeAll(SliceWriter.open(binary, "binary"));
+        File converted = tmp.newFile("converted.ndjson");
+        SliceWriter.convert(binary, converted);
+
+        assertTrue(binary.length() < ndjson.length());
+        assertArrayEquals(Files.readAllBytes(ndjson.toPath()), Files.readAllBytes(converted.toPath()));
+    }
+
+    @Test
+    public void detailTableResetsKeepTheRoundTrip() throws Exception {
+        File ndjson = tmp.newFile("out.ndjson");
+        writeAll(SliceWriter.open(ndjson, "ndjson"));
+        File bounded = tmp.newFile("bounded.bin");
+        writeAll(new SliceWriter.Binary(bounded, 2));
+        File unbounded = tmp.newFile("unbounded.bin");
+        writeAll(SliceWriter.open(unbounded, "binary"));
+        File converted = tmp.newFile("converted.ndjson");
+        SliceWriter.convert(bounded, converted);
+
+        // details are written again after each reset
+        assertTrue(bounded.length() > unbounded.length());
+        assertArrayEquals(Files.readAllBytes(ndjson.toPath()), Files.readAllBytes(converted.toPath()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void statementOutsideASlice() throws Exception {
+        try (SliceWriter w = SliceWriter.open(tmp.newFile(), "ndjson")) {
+            w.write(slices.getSeeds().get(0));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownFormat() throws Exception {
+        SliceWriter.open(tmp.newFile(), "xml");
+    }
+}
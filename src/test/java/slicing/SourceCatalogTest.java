@@ -0,0 +1,125 @@
+package slicing;
+
+import com.ibm.wala.classLoader.IClass;
+import com.ibm.wala.classLoader.IMethod;
+import com.ibm.wala.ipa.cha.ClassHierarchy;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.types.TypeReference;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SourceCatalogTest {
+
+    private static ClassHierarchy cha;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @BeforeClass
+    public static void buildHierarchy() throws Exception {
+        cha = SampleJar.exampleSession().getClassHierarchy();
+    }
+
+    private SourceCatalog catalog(String... lines) throws IOException {
+        File file = tmp.newFile();
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            for (String line : lines) {
+                out.println(line);
+            }
+        }
+        return SourceCatalog.load(file);
+    }
+
+    @Test
+    public void parseSkipsCommentsAndBlankLines() throws Exception {
+        SourceCatalog catalog = catalog("# sources", "", "  Ljava/io/InputStream read I  ", "Ljava/io/Reader * *");
+        assertEquals(2, catalog.size());
+        assertEquals(1, SourceCatalog.defaultCatalog().size());
+    }
+
+    @Test
+    public void trailingSemicolonsAreOptional() throws Exception {
+        assertEquals(catalog("Ljava/util/Properties getProperty Ljava/lang/String;").getDigest(),
+                catalog("Ljava/util/Properties getProperty Ljava/lang/String").getDigest());
+        assertNotEquals(catalog("Ljava/io/InputStream read I").getDigest(),
+                catalog("Ljava/io/InputStream read J").getDigest());
+    }
+
+    @Test
+    public void malformedLinesNameTheirLine() throws Exception {
+        for (String bad : new String[]{"Ljava/io/InputStream read", "java/io/InputStream read I", "La b c d"}) {
+            try {
+                catalog("# ok", "Ljava/io/InputStream read I", bad);
+                fail(bad);
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(":3: "));
+            }
+        }
+    }
+
+    @Test
+    public void mayMatchChecksNameAndReturnType() throws Exception {
+        SourceCatalog catalog = catalog("Ljava/io/InputStream read I", "Ljava/util/Properties getProp Ljava/lang/String;");
+        assertTrue(catalog.mayMatch("read()I"));
+        assertTrue(catalog.mayMatch("readFully([B)I"));
+        assertFalse(catalog.mayMatch("read()J"));
+        assertFalse(catalog.mayMatch("skip(J)J"));
+        assertTrue(catalog.mayMatch("getProperty(Ljava/lang/String;)Ljava/lang/String;"));
+        assertFalse(catalog.mayMatch("getProperty(Ljava/lang/String;)Ljava/lang/Object;"));
+        assertTrue(catalog("Ljava/lang/System * *").mayMatch("anything()V"));
+        assertFalse(catalog.mayMatch("not a selector"));
+    }
+
+    @Test
+    public void matchFindsTheSameMethodsAsASubclassScan() throws Exception {
+        SourceCatalog catalog = catalog("Ljava/io/InputStream read I", "Ljava/lang/CharSequence length I");
+        Set<MethodReference> matched = catalog.match(cha);
+        assertEquals(scan("Ljava/io/InputStream", "read", "I", "Ljava/lang/CharSequence", "length", "I"), matched);
+        Set<String> signatures = new HashSet<>();
+        for (MethodReference m : matched) {
+            signatures.add(m.getSignature());
+        }
+        assertTrue(signatures.contains("java.io.ByteArrayInputStream.read()I"));
+        assertTrue(signatures.contains("java.lang.String.length()I"));
+        assertFalse(signatures.contains("java.io.ByteArrayInputStream.skip(J)J"));
+    }
+
+    @Test
+    public void emptyCatalogMatchesNothing() throws Exception {
+        assertTrue(catalog("# nothing").match(cha).isEmpty());
+    }
+
+    // methods of concrete classes under each JDK base type, rules given as (base, prefix, return type) triples
+    private static Set<MethodReference> scan(String... rules) {
+        Set<MethodReference> result = new HashSet<>();
+        for (IClass klass : cha) {
+            if (klass.isAbstract() || klass.isInterface()) {
+                continue;
+            }
+            for (int r = 0; r < rules.length; r += 3) {
+                IClass base = cha.lookupClass(TypeReference.findOrCreate(ClassLoaderReference.Primordial, rules[r]));
+                boolean under = base.isInterface() ? cha.implementsInterface(klass, base) : cha.isSubclassOf(klass, base);
+                if (!under) {
+                    continue;
+                }
+                for (IMethod m : klass.getAllMethods()) {
+                    if (m.getName().toString().startsWith(rules[r + 1])
+                            && m.getReturnType().getName().toString().equals(rules[r + 2])) {
+                        result.add(m.getReference());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
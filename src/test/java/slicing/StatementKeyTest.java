@@ -0,0 +1,40 @@
+package slicing;
+
+import com.ibm.wala.ipa.slicer.Statement;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class StatementKeyTest {
+
+    private static Map<StatementKey, Statement> keyed(SlicingSession session) throws Exception {
+        Map<StatementKey, Statement> result = new HashMap<>();
+        for (SlicingSession.Slice slice : session.slice()) {
+            for (Statement s : slice.getStatements()) {
+                Statement other = result.put(StatementKey.of(s), s);
+                // distinct statements of one analysis never share a key
+                assertTrue(other == null || other.equals(s));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void keysMatchAcrossSeparateAnalyses() throws Exception {
+        SlicingSession first = SampleJar.exampleSession();
+        SlicingSession second = new SlicingSession(SampleJar.write(SampleJar.EXAMPLE), "0cfa",
+                SlicingSession.Criteria.callee(SampleJar.BYE));
+        Map<StatementKey, Statement> a = keyed(first);
+        Map<StatementKey, Statement> b = keyed(second);
+        assertNotSame(first.getClassHierarchy(), second.getClassHierarchy());
+        assertEquals(a.keySet(), b.keySet());
+
+        List<Statement> seeds = second.getSeeds();
+        for (int i = 0; i < seeds.size(); i++) {
+            assertEquals(StatementKey.of(first.getSeeds().get(i)), StatementKey.of(seeds.get(i)));
+            assertFalse(seeds.get(i).equals(first.getSeeds().get(i)));
+        }
+    }
+}